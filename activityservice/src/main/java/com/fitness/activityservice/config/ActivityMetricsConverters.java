@@ -0,0 +1,82 @@
+package com.fitness.activityservice.config;
+
+import com.fitness.activityservice.model.ActivityMetrics;
+import org.bson.Document;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores {@link ActivityMetrics} as one flat "metrics" document, the same shape the old free-form
+ * map had. Typed fields use short keys, except those a client sent under a legacy alias, which
+ * keep it. Reading accepts the short keys, the typed names and the legacy aliases, so documents
+ * written before the typed model still load.
+ */
+public final class ActivityMetricsConverters {
+
+    private ActivityMetricsConverters() {
+    }
+
+    public static List<Converter<?, ?>> all() {
+        return List.of(MetricsToDocument.INSTANCE, DocumentToMetrics.INSTANCE);
+    }
+
+    @WritingConverter
+    enum MetricsToDocument implements Converter<ActivityMetrics, Document> {
+        INSTANCE;
+
+        @Override
+        public Document convert(ActivityMetrics metrics) {
+            Document document = new Document();
+            putIfPresent(document, metrics, "distanceKm", "dist", metrics.getDistanceKm());
+            putIfPresent(document, metrics, "avgHeartRate", "hrAvg", metrics.getAvgHeartRate());
+            putIfPresent(document, metrics, "maxHeartRate", "hrMax", metrics.getMaxHeartRate());
+            putIfPresent(document, metrics, "paceMinPerKm", "paceKm", metrics.getPaceMinPerKm());
+            putIfPresent(document, metrics, "elevationGainM", "elev", metrics.getElevationGainM());
+            document.putAll(metrics.getOther());
+            return document;
+        }
+
+        private static void putIfPresent(Document document, ActivityMetrics metrics, String name, String shortKey,
+                                         Object value) {
+            if (value != null) {
+                String key = metrics.keyFor(name);
+                document.put(key.equals(name) ? shortKey : key, value);
+            }
+        }
+    }
+
+    @ReadingConverter
+    enum DocumentToMetrics implements Converter<Document, ActivityMetrics> {
+        INSTANCE;
+
+        @Override
+        public ActivityMetrics convert(Document document) {
+            ActivityMetrics metrics = new ActivityMetrics();
+            for (Map.Entry<String, Object> entry : document.entrySet()) {
+                // The short keys only ever hold numbers this converter wrote
+                if (!(entry.getValue() instanceof Number number) || !readShortKey(metrics, entry.getKey(), number)) {
+                    metrics.set(entry.getKey(), entry.getValue());
+                }
+            }
+            return metrics;
+        }
+
+        private static boolean readShortKey(ActivityMetrics metrics, String key, Number value) {
+            switch (key) {
+                case "dist" -> metrics.setDistanceKm(value.doubleValue());
+                case "hrAvg" -> metrics.setAvgHeartRate(value.doubleValue());
+                case "hrMax" -> metrics.setMaxHeartRate(value.doubleValue());
+                case "paceKm" -> metrics.setPaceMinPerKm(value.doubleValue());
+                case "elev" -> metrics.setElevationGainM(value.doubleValue());
+                default -> {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.fitness.activityservice.config;
+
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.StorageMode;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.CollectionOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.timeseries.Granularity;
+import org.springframework.stereotype.Component;
+
+/**
+ * Creates the activity collection in the configured layout before anything writes to it, since
+ * Mongo would otherwise create an ordinary collection on the first insert. An existing collection
+ * is never converted in place; copy it with the storage migration instead.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ActivityStorageInitializer {
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${activity.storage.mode:standard}")
+    private StorageMode storageMode;
+
+    @Value("${activity.outbox.transactional:false}")
+    private boolean transactionalOutbox;
+
+    @PostConstruct
+    public void ensureCollection() {
+        String collection = mongoTemplate.getCollectionName(Activity.class);
+        if (storageMode == StorageMode.TIMESERIES && transactionalOutbox) {
+            throw new IllegalStateException("Time-series collections cannot be written in a transaction; "
+                    + "disable activity.outbox.transactional or use the standard storage mode");
+        }
+
+        StorageMode existing = storageModeOf(mongoTemplate, collection);
+        if (existing == null) {
+            create(mongoTemplate, collection, storageMode);
+            log.info("Created {} activity collection {}", storageMode, collection);
+        } else if (existing != storageMode) {
+            throw new IllegalStateException("Activity collection " + collection + " is " + existing
+                    + " but activity.storage.mode is " + storageMode
+                    + "; migrate it into a new collection and point activity.storage.collection at it");
+        }
+    }
+
+    /**
+     * Returns the layout of the collection, or null if it does not exist.
+     */
+    public static StorageMode storageModeOf(MongoTemplate mongoTemplate, String collection) {
+        Document info = mongoTemplate.getDb()
+                .listCollections()
+                .filter(new Document("name", collection))
+                .first();
+        if (info == null) {
+            return null;
+        }
+        return "timeseries".equals(info.getString("type")) ? StorageMode.TIMESERIES : StorageMode.STANDARD;
+    }
+
+    public static void create(MongoTemplate mongoTemplate, String collection, StorageMode mode) {
+        if (mode == StorageMode.TIMESERIES) {
+            // Users log a handful of activities a day; the hours granularity lets one bucket span
+            // up to 30 days of a user's activities, so buckets stay few and full
+            mongoTemplate.createCollection(collection, CollectionOptions.empty().timeSeries(
+                    CollectionOptions.TimeSeriesOptions.timeSeries("startTime")
+                            .metaField("userId")
+                            .granularity(Granularity.HOURS)));
+        } else {
+            mongoTemplate.createCollection(collection);
+        }
+    }
+}
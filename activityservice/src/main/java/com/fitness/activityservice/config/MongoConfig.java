@@ -1,10 +1,26 @@
 package com.fitness.activityservice.config;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
 import org.springframework.data.mongodb.config.EnableMongoAuditing;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
 
 @Configuration
 @EnableMongoAuditing
 public class MongoConfig {
 
+    @Bean
+    public MongoCustomConversions mongoCustomConversions() {
+        return new MongoCustomConversions(ActivityMetricsConverters.all());
+    }
+
+    // Multi-document transactions need a replica set, so they are opt-in
+    @Bean
+    @ConditionalOnProperty(name = "activity.outbox.transactional", havingValue = "true")
+    public MongoTransactionManager transactionManager(MongoDatabaseFactory databaseFactory) {
+        return new MongoTransactionManager(databaseFactory);
+    }
 }
@@ -0,0 +1,67 @@
+package com.fitness.activityservice.config;
+
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.ActivityRollup;
+import com.fitness.activityservice.model.OutboxEvent;
+import com.fitness.activityservice.model.StorageMode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MongoIndexInitializer {
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${activity.outbox.retention:7d}")
+    private Duration outboxRetention;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        // Keyset pagination sorts on startTime and breaks ties on _id
+        String name = mongoTemplate.indexOps(Activity.class).ensureIndex(new Index()
+                .on("userId", Sort.Direction.ASC)
+                .on("startTime", Sort.Direction.DESC)
+                .on("_id", Sort.Direction.DESC)
+                .named("userId_startTime_id"));
+        log.info("Ensured activity index {}", name);
+
+        String collection = mongoTemplate.getCollectionName(Activity.class);
+        if (ActivityStorageInitializer.storageModeOf(mongoTemplate, collection) == StorageMode.TIMESERIES) {
+            // Time-series collections have no _id index of their own; lookups by id, the outbox
+            // relay's existence check and the id-ordered scan would otherwise read every bucket
+            mongoTemplate.indexOps(Activity.class).ensureIndex(new Index()
+                    .on("_id", Sort.Direction.ASC)
+                    .named("id"));
+        }
+
+        mongoTemplate.indexOps(ActivityRollup.class).ensureIndex(new Index()
+                .on("userId", Sort.Direction.ASC)
+                .on("granularity", Sort.Direction.ASC)
+                .on("bucketStart", Sort.Direction.ASC)
+                .named("userId_granularity_bucketStart"));
+
+        // The relay scans pending events oldest first; sent events expire after the retention period
+        mongoTemplate.indexOps(OutboxEvent.class).ensureIndex(new Index()
+                .on("status", Sort.Direction.ASC)
+                .on("createdAt", Sort.Direction.ASC)
+                .named("status_createdAt"));
+        mongoTemplate.indexOps(OutboxEvent.class).ensureIndex(new Index()
+                .on("claimToken", Sort.Direction.ASC)
+                .sparse()
+                .named("claimToken"));
+        mongoTemplate.indexOps(OutboxEvent.class).ensureIndex(new Index()
+                .on("sentAt", Sort.Direction.ASC)
+                .expire(outboxRetention)
+                .named("sentAt_ttl"));
+    }
+}
@@ -2,6 +2,7 @@ package com.fitness.activityservice.config;
 
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarables;
 import org.springframework.amqp.core.DirectExchange;
 import org.springframework.amqp.core.Queue;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
@@ -23,6 +24,18 @@ public class RabbitMqConfig {
     @Value("${rabbitmq.routing.key}")
     private String routingKey;
 
+    @Value("${rabbitmq.queue.bulk:activity.bulk.queue}")
+    private String bulkQueue;
+
+    @Value("${rabbitmq.routing.bulk:activity.tracking.bulk}")
+    private String bulkRoutingKey;
+
+    @Value("${rabbitmq.queue.replay:activity.replay.queue}")
+    private String replayQueue;
+
+    @Value("${rabbitmq.routing.replay:activity.tracking.replay}")
+    private String replayRoutingKey;
+
     @Bean
     public Queue activityQueue(){
         return new Queue(queue, true);
@@ -38,6 +51,20 @@ public class RabbitMqConfig {
         return BindingBuilder.bind(activityQueue).to(activityExchange).with(routingKey);
     }
 
+    /**
+     * Lanes for traffic that may wait: batch ingestion publishes to the bulk lane, reprocessing to
+     * the replay lane. The AI service drains them with spare capacity, so fresh activities on
+     * {@link #activityQueue()} are not queued behind them.
+     */
+    @Bean
+    public Declarables activityLaneQueues(DirectExchange activityExchange) {
+        Queue bulk = new Queue(bulkQueue, true);
+        Queue replay = new Queue(replayQueue, true);
+        return new Declarables(bulk, replay,
+                BindingBuilder.bind(bulk).to(activityExchange).with(bulkRoutingKey),
+                BindingBuilder.bind(replay).to(activityExchange).with(replayRoutingKey));
+    }
+
     @Bean
     public MessageConverter jsonMessageConverter(){
         return new Jackson2JsonMessageConverter();
@@ -1,18 +1,37 @@
 package com.fitness.activityservice.controller;
 
+import com.fitness.activityservice.dto.ActivityPage;
 import com.fitness.activityservice.dto.ActivityRequest;
 import com.fitness.activityservice.dto.ActivityResponse;
+import com.fitness.activityservice.dto.ActivityStatsResponse;
+import com.fitness.activityservice.dto.BatchActivityResponse;
+import com.fitness.activityservice.model.ActivityType;
+import com.fitness.activityservice.model.ExportFormat;
+import com.fitness.activityservice.model.Granularity;
+import com.fitness.activityservice.service.ActivityExportService;
+import com.fitness.activityservice.service.ActivityRollupService;
 import com.fitness.activityservice.service.ActivityService;
 import lombok.AllArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/activities")
 @AllArgsConstructor
 public class ActivityController {
     private ActivityService activityService;
+    private ActivityRollupService activityRollupService;
+    private ActivityExportService activityExportService;
 
     @PostMapping
     public ResponseEntity<ActivityResponse> trackActivity(@RequestBody ActivityRequest request, @RequestHeader("X-User-ID") String userId) {
@@ -22,9 +41,65 @@ public class ActivityController {
         return ResponseEntity.ok(activityService.trackActivity(request));
     }
 
+    @PostMapping("/batch")
+    public ResponseEntity<BatchActivityResponse> trackActivities(@RequestBody List<ActivityRequest> requests, @RequestHeader("X-User-ID") String userId) {
+        return ResponseEntity.ok(activityService.trackActivities(userId, requests));
+    }
+
+    /**
+     * Returns one page of the user's activities, newest first, as a plain list. Clients must
+     * follow the X-Next-Cursor header, passing it back as cursor, to see older activities.
+     */
     @GetMapping
-    public ResponseEntity<List<ActivityResponse>> getUserActivities(@RequestHeader ("X-User-ID") String userId) {
-        return ResponseEntity.ok(activityService.getUserActivities(userId));
+    public ResponseEntity<List<ActivityResponse>> getUserActivities(
+            @RequestHeader ("X-User-ID") String userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) ActivityType type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        ActivityPage page = activityService.getUserActivities(userId, cursor, limit, type, from, to);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header("X-Next-Cursor", page.getNextCursor());
+        }
+        return response.body(page.getItems());
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<ActivityStatsResponse> getStats(
+            @RequestHeader("X-User-ID") String userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "DAY") Granularity granularity) {
+        return ResponseEntity.ok(activityRollupService.getStats(userId, from, to, granularity));
+    }
+
+    /**
+     * Streams the user's full history as NDJSON or CSV, gzip-compressed when the client accepts it.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportActivities(
+            @RequestHeader("X-User-ID") String userId,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @RequestParam(defaultValue = "NDJSON") ExportFormat format) {
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.contentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("activities." + format.extension())
+                        .build()
+                        .toString());
+        if (!gzip) {
+            return response.body(out -> activityExportService.export(userId, format, out));
+        }
+        return response.header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .body(out -> {
+                    GZIPOutputStream compressed = new GZIPOutputStream(out, 8192);
+                    activityExportService.export(userId, format, compressed);
+                    compressed.finish();
+                });
     }
 
     @GetMapping("/{activityId}")
@@ -0,0 +1,63 @@
+package com.fitness.activityservice.controller;
+
+import com.fitness.activityservice.dto.ActivityPage;
+import com.fitness.activityservice.model.StorageMode;
+import com.fitness.activityservice.service.ActivityRollupService;
+import com.fitness.activityservice.service.ActivityService;
+import com.fitness.activityservice.service.ActivityStorageMigrator;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Operational endpoints. They live outside /api so the gateway does not route them.
+ */
+@RestController
+@RequestMapping("/internal/activities")
+@RequiredArgsConstructor
+public class InternalActivityController {
+    private final ActivityService activityService;
+    private final ActivityRollupService activityRollupService;
+    private final ActivityStorageMigrator activityStorageMigrator;
+
+    @PostMapping("/rollups/rebuild")
+    public ResponseEntity<Void> rebuildRollups(@RequestParam(required = false) String userId) {
+        if (userId != null) {
+            activityRollupService.rebuild(userId);
+            return ResponseEntity.ok().build();
+        }
+        activityRollupService.rebuildAll();
+        return ResponseEntity.accepted().build();
+    }
+
+    @PostMapping("/storage/migrate")
+    public ResponseEntity<Void> migrateStorage(@RequestParam(defaultValue = "activities") String source,
+                                               @RequestParam String target,
+                                               @RequestParam(defaultValue = "TIMESERIES") StorageMode mode) {
+        if (source.equals(target)) {
+            return ResponseEntity.badRequest().build();
+        }
+        activityStorageMigrator.migrate(source, target, mode);
+        return ResponseEntity.accepted().build();
+    }
+
+    /**
+     * Pages through all activities in id order; pass the returned nextCursor as after.
+     */
+    @GetMapping("/scan")
+    public ResponseEntity<ActivityPage> scanActivities(@RequestParam(required = false) String after,
+                                                       @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(activityService.scanActivities(after, limit));
+    }
+
+    @GetMapping("/count")
+    public ResponseEntity<Map<String, Long>> countActivities() {
+        return ResponseEntity.ok(Map.of("count", activityService.estimateActivityCount()));
+    }
+}
@@ -1,9 +1,9 @@
 package com.fitness.activityservice.dto;
 
+import com.fitness.activityservice.model.ActivityMetrics;
 import com.fitness.activityservice.model.ActivityType;
 import lombok.Data;
 import java.time.LocalDateTime;
-import java.util.Map;
 
 @Data
 public class ActivityRequest {
@@ -12,5 +12,5 @@ public class ActivityRequest {
     private Integer duration;
     private Integer caloriesBurned;
     private LocalDateTime startTime;
-    private Map<String, Object> additionalMetrics;
+    private ActivityMetrics additionalMetrics;
 }
@@ -1,9 +1,9 @@
 package com.fitness.activityservice.dto;
 
+import com.fitness.activityservice.model.ActivityMetrics;
 import com.fitness.activityservice.model.ActivityType;
 import lombok.Data;
 import java.time.LocalDateTime;
-import java.util.Map;
 
 @Data
 public class ActivityResponse {
@@ -13,7 +13,7 @@ public class ActivityResponse {
     private Integer duration;
     private Integer caloriesBurned;
     private LocalDateTime startTime;
-    private Map<String, Object> additionalMetrics;
+    private ActivityMetrics additionalMetrics;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 }
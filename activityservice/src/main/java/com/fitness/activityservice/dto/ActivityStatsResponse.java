@@ -0,0 +1,17 @@
+package com.fitness.activityservice.dto;
+
+import com.fitness.activityservice.model.Granularity;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class ActivityStatsResponse {
+    private Granularity granularity;
+    private LocalDate from;
+    private LocalDate to;
+    private List<StatsBucket> buckets;
+}
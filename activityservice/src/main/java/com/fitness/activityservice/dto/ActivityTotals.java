@@ -0,0 +1,16 @@
+package com.fitness.activityservice.dto;
+
+import lombok.Data;
+
+@Data
+public class ActivityTotals {
+    private long count;
+    private long totalDuration;
+    private long totalCalories;
+
+    public void add(long count, long duration, long calories) {
+        this.count += count;
+        this.totalDuration += duration;
+        this.totalCalories += calories;
+    }
+}
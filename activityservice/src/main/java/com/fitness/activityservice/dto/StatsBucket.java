@@ -0,0 +1,15 @@
+package com.fitness.activityservice.dto;
+
+import com.fitness.activityservice.model.ActivityType;
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.Map;
+
+@Data
+public class StatsBucket {
+    private LocalDate bucketStart;
+    private ActivityTotals total = new ActivityTotals();
+    private Map<ActivityType, ActivityTotals> byType = new EnumMap<>(ActivityType.class);
+}
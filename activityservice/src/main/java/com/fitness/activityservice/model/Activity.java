@@ -11,9 +11,8 @@ import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.mongodb.core.mapping.Field;
 
 import java.time.LocalDateTime;
-import java.util.Map;
 
-@Document(collection = "activities")
+@Document(collection = "${activity.storage.collection:activities}")
 @Data
 @Builder
 @AllArgsConstructor
@@ -28,7 +27,7 @@ public class Activity {
     private LocalDateTime startTime;
 
     @Field("metrics")
-    private Map<String, Object> additionalMetrics;
+    private ActivityMetrics additionalMetrics;
 
     @CreatedDate
     private LocalDateTime createdAt;
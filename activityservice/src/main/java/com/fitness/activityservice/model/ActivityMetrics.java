@@ -0,0 +1,126 @@
+package com.fitness.activityservice.model;
+
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Measurements recorded with an activity. Well-known metrics are typed fields; any other key a
+ * client sends is kept in an overflow map. The JSON is still the flat object clients have always
+ * sent as additionalMetrics, and a metric sent under a legacy name is written back under it.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+// Every metric is read and written through the flat any-setter and any-getter
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.NONE, getterVisibility = JsonAutoDetect.Visibility.NONE,
+        isGetterVisibility = JsonAutoDetect.Visibility.NONE, setterVisibility = JsonAutoDetect.Visibility.NONE)
+public class ActivityMetrics {
+    // Older clients use these names for the typed metrics
+    private static final Map<String, String> ALIASES = Map.of(
+            "distance", "distanceKm",
+            "heartRate", "avgHeartRate",
+            "averageHeartRate", "avgHeartRate",
+            "pace", "paceMinPerKm",
+            "elevation", "elevationGainM",
+            "elevationGain", "elevationGainM");
+
+    private Double distanceKm;
+    private Double avgHeartRate;
+    private Double maxHeartRate;
+    private Double paceMinPerKm;
+    private Double elevationGainM;
+
+    @Builder.Default
+    @Setter(AccessLevel.NONE)
+    private Map<String, Object> other = new LinkedHashMap<>();
+
+    // The legacy name a typed metric was sent under, by typed name
+    @Builder.Default
+    @Setter(AccessLevel.NONE)
+    private Map<String, String> aliases = new HashMap<>();
+
+    /**
+     * Sets a metric by its typed name or one of its legacy aliases, remembering the alias. Unknown
+     * keys, and values that are not numbers, go to the overflow map unchanged.
+     */
+    @JsonAnySetter
+    public void set(String key, Object value) {
+        String name = ALIASES.getOrDefault(key, key);
+        Number number = toNumber(value);
+        if (number == null || !setTyped(name, number)) {
+            other.put(key, value);
+        } else if (name.equals(key)) {
+            aliases.remove(name);
+        } else {
+            aliases.put(name, key);
+        }
+    }
+
+    /**
+     * The metrics that are present under the names they were sent with, typed ones first.
+     */
+    @JsonAnyGetter
+    public Map<String, Object> asSent() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        putIfPresent(metrics, "distanceKm", distanceKm);
+        putIfPresent(metrics, "avgHeartRate", avgHeartRate);
+        putIfPresent(metrics, "maxHeartRate", maxHeartRate);
+        putIfPresent(metrics, "paceMinPerKm", paceMinPerKm);
+        putIfPresent(metrics, "elevationGainM", elevationGainM);
+        metrics.putAll(other);
+        return metrics;
+    }
+
+    /**
+     * The name a typed metric is sent back under: its legacy alias if it came with one.
+     */
+    public String keyFor(String name) {
+        return aliases.getOrDefault(name, name);
+    }
+
+    private boolean setTyped(String name, Number number) {
+        switch (name) {
+            case "distanceKm" -> distanceKm = number.doubleValue();
+            case "avgHeartRate" -> avgHeartRate = number.doubleValue();
+            case "maxHeartRate" -> maxHeartRate = number.doubleValue();
+            case "paceMinPerKm" -> paceMinPerKm = number.doubleValue();
+            case "elevationGainM" -> elevationGainM = number.doubleValue();
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void putIfPresent(Map<String, Object> metrics, String name, Object value) {
+        if (value != null) {
+            metrics.put(keyFor(name), value);
+        }
+    }
+
+    private static Number toNumber(Object value) {
+        if (value instanceof Number number) {
+            return number;
+        }
+        if (value instanceof String text) {
+            try {
+                return Double.parseDouble(text.trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,35 @@
+package com.fitness.activityservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+
+/**
+ * Running totals of one activity type for one user in one day or week bucket.
+ * The id is derived from those keys so increments can upsert by _id.
+ */
+@Document(collection = "activity_rollups")
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ActivityRollup {
+    @Id
+    private String id;
+    private String userId;
+    private Granularity granularity;
+    private LocalDate bucketStart;
+    private ActivityType type;
+    private long count;
+    private long totalDuration;
+    private long totalCalories;
+
+    public static String key(String userId, Granularity granularity, LocalDate bucketStart, ActivityType type) {
+        return userId + ":" + granularity + ":" + bucketStart + ":" + type;
+    }
+}
@@ -0,0 +1,38 @@
+package com.fitness.activityservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * An activity event waiting to be published to RabbitMQ, written alongside the activity itself.
+ */
+@Document(collection = "activity_outbox")
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class OutboxEvent {
+    @Id
+    private String id;
+    private String activityId;
+    private String exchange;
+    private String routingKey;
+    private Activity payload;
+    private OutboxStatus status;
+    private int attempts;
+    // Set after an unconfirmed publish; the relay does not claim the event again before it
+    private LocalDateTime nextAttemptAt;
+    private LocalDateTime createdAt;
+    private LocalDateTime sentAt;
+    private LocalDateTime failedAt;
+
+    // Set while a relay instance owns the event, so several instances can drain the outbox
+    private String claimToken;
+    private LocalDateTime claimedUntil;
+}
@@ -0,0 +1,8 @@
+package com.fitness.activityservice.model;
+
+public enum OutboxStatus {
+    PENDING,
+    SENT,
+    // Given up on after activity.outbox.relay.max-attempts unconfirmed publishes
+    FAILED
+}
@@ -0,0 +1,36 @@
+package com.fitness.activityservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Checkpoint of a copy from one activity collection to another, so an interrupted migration
+ * resumes after the last copied _id instead of starting over.
+ */
+@Document(collection = "activity_storage_migrations")
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class StorageMigration {
+    @Id
+    private String id;
+    private String source;
+    private String target;
+    private StorageMode mode;
+    private Object lastId;
+    private long copied;
+    /**
+     * Documents the target layout cannot hold, such as time-series documents without a startTime.
+     */
+    private long skipped;
+    private boolean completed;
+    private LocalDateTime startedAt;
+    private LocalDateTime updatedAt;
+}
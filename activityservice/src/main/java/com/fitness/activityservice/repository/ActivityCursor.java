@@ -0,0 +1,31 @@
+package com.fitness.activityservice.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Keyset position in a user's activity history, ordered by startTime then _id (both descending).
+ * Older documents may have no startTime; they sort after all others, and their cursor has an
+ * empty startTime.
+ */
+public record ActivityCursor(LocalDateTime startTime, String id) {
+
+    public String encode() {
+        String raw = (startTime == null ? "" : startTime.toString()) + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static ActivityCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            String startTime = raw.substring(0, separator);
+            // "null" was written for missing start times before they were encoded as empty
+            boolean missing = startTime.isEmpty() || startTime.equals("null");
+            return new ActivityCursor(missing ? null : LocalDateTime.parse(startTime), raw.substring(separator + 1));
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Invalid cursor " + cursor);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.fitness.activityservice.repository;
+
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.ActivityType;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface ActivityRepositoryCustom {
+    /**
+     * Returns up to {@code limit} activities of a user, newest first, strictly after {@code after}.
+     * Documents are projected without their metrics.
+     */
+    List<Activity> findPage(String userId, ActivityType type, LocalDateTime from, LocalDateTime to,
+                            ActivityCursor after, int limit);
+
+    /**
+     * Returns up to {@code limit} activities of all users in id order, strictly after the id
+     * {@code afterId}, or from the first one when it is null.
+     */
+    List<Activity> scan(String afterId, int limit);
+}
@@ -0,0 +1,64 @@
+package com.fitness.activityservice.repository;
+
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.ActivityType;
+import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class ActivityRepositoryCustomImpl implements ActivityRepositoryCustom {
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public List<Activity> findPage(String userId, ActivityType type, LocalDateTime from, LocalDateTime to,
+                                   ActivityCursor after, int limit) {
+        Criteria criteria = Criteria.where("userId").is(userId);
+        if (type != null) {
+            criteria.and("type").is(type);
+        }
+        if (from != null || to != null) {
+            Criteria range = criteria.and("startTime");
+            if (from != null) {
+                range.gte(from);
+            }
+            if (to != null) {
+                range.lt(to);
+            }
+        }
+        if (after != null) {
+            Object afterId = ObjectId.isValid(after.id()) ? new ObjectId(after.id()) : after.id();
+            // A missing startTime sorts below every date, so those documents come last
+            Criteria rest = after.startTime() == null
+                    ? Criteria.where("startTime").is(null).and("_id").lt(afterId)
+                    : new Criteria().orOperator(
+                            Criteria.where("startTime").lt(after.startTime()),
+                            Criteria.where("startTime").is(after.startTime()).and("_id").lt(afterId),
+                            Criteria.where("startTime").is(null));
+            criteria = new Criteria().andOperator(criteria, rest);
+        }
+
+        // Served by the {userId: 1, startTime: -1, _id: -1} index created at startup
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Order.desc("startTime"), Sort.Order.desc("_id")))
+                .limit(limit);
+        query.fields().exclude("metrics");
+        return mongoTemplate.find(query, Activity.class);
+    }
+
+    @Override
+    public List<Activity> scan(String afterId, int limit) {
+        Criteria criteria = new Criteria();
+        if (afterId != null) {
+            criteria = Criteria.where("_id").gt(ObjectId.isValid(afterId) ? new ObjectId(afterId) : afterId);
+        }
+        // Served by the _id index; time-series collections get a secondary one at startup
+        return mongoTemplate.find(new Query(criteria).with(Sort.by(Sort.Direction.ASC, "_id")).limit(limit), Activity.class);
+    }
+}
@@ -0,0 +1,128 @@
+package com.fitness.activityservice.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fitness.activityservice.dto.ActivityResponse;
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.ActivityMetrics;
+import com.fitness.activityservice.model.ExportFormat;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+/**
+ * Writes a user's full activity history straight from a Mongo cursor to the response. Only one
+ * cursor batch is held at a time, and the cursor fetches the next batch only once the previous
+ * one has been written, so a slow client slows the cursor down instead of filling the heap.
+ */
+@Service
+@Slf4j
+public class ActivityExportService {
+    private static final String CSV_HEADER = "id,type,startTime,duration,caloriesBurned,distanceKm,avgHeartRate,"
+            + "maxHeartRate,paceMinPerKm,elevationGainM,otherMetrics,createdAt,updatedAt";
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectWriter responseWriter;
+    private final ObjectWriter metricsWriter;
+
+    @Value("${activity.export.batch-size:500}")
+    private int batchSize;
+
+    public ActivityExportService(MongoTemplate mongoTemplate, ObjectMapper objectMapper) {
+        this.mongoTemplate = mongoTemplate;
+        this.responseWriter = objectMapper.writerFor(ActivityResponse.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .withRootValueSeparator("\n");
+        this.metricsWriter = objectMapper.writer();
+    }
+
+    /**
+     * Writes the user's activities, oldest first, and returns how many were written.
+     * The output stream is flushed but not closed.
+     */
+    public long export(String userId, ExportFormat format, OutputStream out) throws IOException {
+        Query query = Query.query(Criteria.where("userId").is(userId))
+                .with(Sort.by(Sort.Order.asc("startTime"), Sort.Order.asc("_id")))
+                .cursorBatchSize(batchSize);
+        long count = 0;
+        try (Stream<Activity> activities = mongoTemplate.stream(query, Activity.class)) {
+            if (format == ExportFormat.CSV) {
+                count = writeCsv(activities, out);
+            } else {
+                count = writeNdjson(activities, out);
+            }
+        }
+        log.info("Exported {} activities of user {} as {}", count, userId, format);
+        return count;
+    }
+
+    private long writeNdjson(Stream<Activity> activities, OutputStream out) throws IOException {
+        long count = 0;
+        try (SequenceWriter writer = responseWriter.writeValues(out)) {
+            for (Activity activity : (Iterable<Activity>) activities::iterator) {
+                writer.write(ActivityService.mapToResponse(activity));
+                count++;
+            }
+        }
+        if (count > 0) {
+            out.write('\n');
+        }
+        out.flush();
+        return count;
+    }
+
+    private long writeCsv(Stream<Activity> activities, OutputStream out) throws IOException {
+        long count = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write(CSV_HEADER);
+        writer.write('\n');
+        for (Activity activity : (Iterable<Activity>) activities::iterator) {
+            ActivityMetrics metrics = activity.getAdditionalMetrics() != null
+                    ? activity.getAdditionalMetrics() : new ActivityMetrics();
+            String other = metrics.getOther().isEmpty() ? null : metricsWriter.writeValueAsString(metrics.getOther());
+            writer.write(csvRow(activity.getId(), activity.getType(), activity.getStartTime(),
+                    activity.getDuration(), activity.getCaloriesBurned(), metrics.getDistanceKm(),
+                    metrics.getAvgHeartRate(), metrics.getMaxHeartRate(), metrics.getPaceMinPerKm(),
+                    metrics.getElevationGainM(), other, activity.getCreatedAt(), activity.getUpdatedAt()));
+            count++;
+        }
+        writer.flush();
+        return count;
+    }
+
+    private static String csvRow(Object... values) {
+        StringBuilder row = new StringBuilder(128);
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                row.append(',');
+            }
+            if (values[i] != null) {
+                row.append(csvValue(values[i].toString()));
+            }
+        }
+        return row.append('\n').toString();
+    }
+
+    private static String csvValue(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
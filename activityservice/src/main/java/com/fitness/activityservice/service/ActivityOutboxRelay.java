@@ -0,0 +1,298 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.OutboxEvent;
+import com.fitness.activityservice.model.OutboxStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Drains the activity outbox in batches, publishing each event with a publisher confirm and
+ * marking confirmed events as sent. Events that are not confirmed stay pending and are retried
+ * after an exponential backoff, until they have failed max-attempts times and are marked FAILED.
+ * Without transactions an event is written before its activity, so events whose activity does not
+ * exist yet are left for a later pass, and dropped once the activity is clearly never coming.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ActivityOutboxRelay {
+    /**
+     * Header holding the epoch milliseconds at which the event was published, so consumers can
+     * measure how long it waited in its queue.
+     */
+    public static final String PUBLISHED_AT = "x-published-at";
+
+    private final MongoTemplate mongoTemplate;
+    private final RabbitTemplate rabbitTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${activity.outbox.relay.batch-size:100}")
+    private int batchSize;
+
+    @Value("${activity.outbox.relay.confirm-timeout-ms:5000}")
+    private long confirmTimeoutMs;
+
+    @Value("${activity.outbox.relay.claim-lease:30s}")
+    private Duration claimLease;
+
+    @Value("${activity.outbox.relay.orphan-grace:1m}")
+    private Duration orphanGrace;
+
+    @Value("${activity.outbox.relay.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${activity.outbox.relay.backoff.initial:1s}")
+    private Duration initialBackoff;
+
+    @Value("${activity.outbox.relay.backoff.max:5m}")
+    private Duration maxBackoff;
+
+    private final AtomicLong oldestPendingAgeMs = new AtomicLong();
+    private Counter publishedCounter;
+    private Counter failedCounter;
+    private Counter orphanCounter;
+    private Counter exhaustedCounter;
+    private Timer lagTimer;
+    private Timer batchTimer;
+
+    @PostConstruct
+    void registerMetrics() {
+        publishedCounter = Counter.builder("activity.outbox.published")
+                .description("Outbox events confirmed by the broker")
+                .register(meterRegistry);
+        failedCounter = Counter.builder("activity.outbox.publish.failures")
+                .description("Outbox publishes that were not confirmed")
+                .register(meterRegistry);
+        orphanCounter = Counter.builder("activity.outbox.orphans")
+                .description("Outbox events dropped because their activity was never stored")
+                .register(meterRegistry);
+        exhaustedCounter = Counter.builder("activity.outbox.failed")
+                .description("Outbox events marked FAILED after max-attempts unconfirmed publishes")
+                .register(meterRegistry);
+        lagTimer = Timer.builder("activity.outbox.lag")
+                .description("Time from writing an outbox event to its publisher confirm")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        batchTimer = Timer.builder("activity.outbox.relay.batch")
+                .description("Time to claim, publish and confirm one relay batch")
+                .register(meterRegistry);
+        Gauge.builder("activity.outbox.oldest.pending.age", oldestPendingAgeMs, AtomicLong::get)
+                .description("Age of the oldest unpublished outbox event")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${activity.outbox.relay.interval-ms:500}")
+    public void relay() {
+        try {
+            int relayed;
+            do {
+                relayed = batchTimer.record(this::relayBatch);
+            } while (relayed == batchSize);
+        } catch (Exception e) {
+            log.error("Outbox relay failed: ", e);
+        } finally {
+            updateOldestPendingAge();
+        }
+    }
+
+    /**
+     * Returns the number of confirmed events; the relay keeps draining while batches come back full.
+     */
+    private int relayBatch() {
+        List<OutboxEvent> events = withStoredActivity(claimBatch());
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        List<CorrelationData> confirms = new ArrayList<>(events.size());
+        for (OutboxEvent event : events) {
+            CorrelationData correlation = new CorrelationData(event.getId());
+            try {
+                rabbitTemplate.convertAndSend(event.getExchange(), event.getRoutingKey(), event.getPayload(), message -> {
+                    message.getMessageProperties().setHeader(PUBLISHED_AT, System.currentTimeMillis());
+                    return message;
+                }, correlation);
+                confirms.add(correlation);
+            } catch (Exception e) {
+                log.error("Failed to publish activity {} to RabbitMQ: {}", event.getActivityId(), e.getMessage());
+            }
+        }
+
+        // Wait for the confirms of the whole batch rather than after every message
+        Set<String> acked = new HashSet<>(confirms.size());
+        for (CorrelationData correlation : confirms) {
+            try {
+                if (correlation.getFuture().get(confirmTimeoutMs, TimeUnit.MILLISECONDS).isAck()) {
+                    acked.add(correlation.getId());
+                }
+            } catch (Exception e) {
+                log.warn("No publisher confirm for outbox event {}: {}", correlation.getId(), e.getMessage());
+            }
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        if (!acked.isEmpty()) {
+            mongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(acked)),
+                    new Update().set("status", OutboxStatus.SENT).set("sentAt", now)
+                            .unset("claimToken").unset("claimedUntil"),
+                    OutboxEvent.class);
+        }
+        List<OutboxEvent> failed = events.stream()
+                .filter(event -> !acked.contains(event.getId()))
+                .toList();
+        if (!failed.isEmpty()) {
+            retryLater(failed, now);
+        }
+
+        for (OutboxEvent event : events) {
+            if (acked.contains(event.getId())) {
+                lagTimer.record(Duration.between(event.getCreatedAt(), now));
+            }
+        }
+        publishedCounter.increment(acked.size());
+        failedCounter.increment(failed.size());
+        return acked.size();
+    }
+
+    /**
+     * Backs the unconfirmed events off, by the same delay for events with the same number of
+     * attempts, and marks those that have run out of attempts as FAILED.
+     */
+    private void retryLater(List<OutboxEvent> failed, LocalDateTime now) {
+        Map<Integer, List<String>> byAttempts = failed.stream().collect(Collectors.groupingBy(
+                event -> event.getAttempts() + 1, TreeMap::new, Collectors.mapping(OutboxEvent::getId, Collectors.toList())));
+        byAttempts.forEach((attempts, ids) -> {
+            Update update = new Update().set("attempts", attempts).unset("claimToken").unset("claimedUntil");
+            if (attempts >= maxAttempts) {
+                update.set("status", OutboxStatus.FAILED).set("failedAt", now).unset("nextAttemptAt");
+                log.error("Giving up on {} outbox events after {} unconfirmed publishes: {}", ids.size(), attempts, ids);
+                exhaustedCounter.increment(ids.size());
+            } else {
+                update.set("nextAttemptAt", now.plus(backoff(attempts)));
+            }
+            mongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(ids)), update, OutboxEvent.class);
+        });
+    }
+
+    /**
+     * The delay before the next publish of an event that has failed the given number of times,
+     * doubling from the initial backoff up to the maximum.
+     */
+    Duration backoff(int attempts) {
+        Duration delay = initialBackoff.multipliedBy(1L << Math.min(attempts - 1, 30));
+        return delay.compareTo(maxBackoff) > 0 || delay.isNegative() ? maxBackoff : delay;
+    }
+
+    private List<OutboxEvent> claimBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        Criteria claimable = claimable(now);
+        Query candidates = Query.query(claimable)
+                .with(Sort.by(Sort.Direction.ASC, "createdAt"))
+                .limit(batchSize);
+        candidates.fields().include("_id");
+        List<String> ids = mongoTemplate.find(candidates, OutboxEvent.class).stream()
+                .map(OutboxEvent::getId)
+                .toList();
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        // Only events still unclaimed are taken, so concurrent relays never publish the same batch
+        String token = UUID.randomUUID().toString();
+        Criteria stillClaimable = new Criteria().andOperator(Criteria.where("_id").in(ids), claimable);
+        mongoTemplate.updateMulti(Query.query(stillClaimable),
+                new Update().set("claimToken", token).set("claimedUntil", now.plus(claimLease)),
+                OutboxEvent.class);
+        return mongoTemplate.find(Query.query(Criteria.where("claimToken").is(token))
+                .with(Sort.by(Sort.Direction.ASC, "createdAt")), OutboxEvent.class);
+    }
+
+    /**
+     * Pending events that no relay holds and that are not backing off after a failed publish.
+     */
+    private static Criteria claimable(LocalDateTime now) {
+        return new Criteria().andOperator(
+                Criteria.where("status").is(OutboxStatus.PENDING),
+                new Criteria().orOperator(Criteria.where("claimedUntil").is(null), Criteria.where("claimedUntil").lt(now)),
+                new Criteria().orOperator(Criteria.where("nextAttemptAt").is(null), Criteria.where("nextAttemptAt").lte(now)));
+    }
+
+    /**
+     * Returns the events whose activity is stored. The others are released for a later pass, or
+     * removed once they are older than the grace period.
+     */
+    private List<OutboxEvent> withStoredActivity(List<OutboxEvent> events) {
+        if (events.isEmpty()) {
+            return events;
+        }
+        Query query = Query.query(Criteria.where("_id").in(events.stream().map(OutboxEvent::getActivityId).toList()));
+        query.fields().include("_id");
+        Set<String> stored = new HashSet<>();
+        mongoTemplate.find(query, Activity.class).forEach(activity -> stored.add(activity.getId()));
+        if (stored.size() == events.size()) {
+            return events;
+        }
+
+        LocalDateTime orphanedBefore = LocalDateTime.now().minus(orphanGrace);
+        List<OutboxEvent> ready = new ArrayList<>(events.size());
+        List<String> orphans = new ArrayList<>();
+        List<String> waiting = new ArrayList<>();
+        for (OutboxEvent event : events) {
+            if (stored.contains(event.getActivityId())) {
+                ready.add(event);
+            } else if (event.getCreatedAt().isBefore(orphanedBefore)) {
+                orphans.add(event.getId());
+            } else {
+                waiting.add(event.getId());
+            }
+        }
+        if (!orphans.isEmpty()) {
+            log.warn("Dropping {} outbox events whose activities were never stored", orphans.size());
+            mongoTemplate.remove(Query.query(Criteria.where("_id").in(orphans)), OutboxEvent.class);
+            orphanCounter.increment(orphans.size());
+        }
+        if (!waiting.isEmpty()) {
+            mongoTemplate.updateMulti(Query.query(Criteria.where("_id").in(waiting)),
+                    new Update().unset("claimToken").unset("claimedUntil"), OutboxEvent.class);
+        }
+        return ready;
+    }
+
+    private void updateOldestPendingAge() {
+        Query oldest = Query.query(Criteria.where("status").is(OutboxStatus.PENDING))
+                .with(Sort.by(Sort.Direction.ASC, "createdAt"));
+        oldest.fields().include("createdAt");
+        OutboxEvent event = mongoTemplate.findOne(oldest, OutboxEvent.class);
+        oldestPendingAgeMs.set(event == null ? 0 : Duration.between(event.getCreatedAt(), LocalDateTime.now()).toMillis());
+    }
+}
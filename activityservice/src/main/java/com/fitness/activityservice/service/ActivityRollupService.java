@@ -0,0 +1,331 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.dto.ActivityStatsResponse;
+import com.fitness.activityservice.dto.ActivityTotals;
+import com.fitness.activityservice.dto.StatsBucket;
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.ActivityRollup;
+import com.fitness.activityservice.model.Granularity;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Maintains per-user daily and weekly totals for each activity type, so stats queries read one
+ * document per bucket and type instead of every activity. A rebuild recomputes the totals from
+ * the activities created before a cutoff and keeps whatever was recorded for newer ones.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ActivityRollupService {
+    private final MongoTemplate mongoTemplate;
+
+    // Marks a rollup while a rebuild runs: its token, its cutoff and what newer activities added since
+    private static final String REBUILD = "rebuild";
+    // The cutoff of the last rebuild; record() skips activities created before it, which it counted
+    private static final String REBUILT_BEFORE = "rebuiltBefore";
+    private static final List<String> FIELDS = List.of("count", "totalDuration", "totalCalories");
+
+    // How long an activity may take from createdAt to being stored and recorded; a rebuild waits this out
+    @Value("${activity.rollup.rebuild.settle:5s}")
+    private Duration settle;
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    /**
+     * Adds the activities to their day and week buckets. Each bucket is one upserting pipeline
+     * update, which skips activities its last rebuild already counted and, while a rebuild runs,
+     * also adds those created after its cutoff to the rebuild's own totals.
+     */
+    public void record(Collection<Activity> activities) {
+        Map<String, List<Activity>> byRollup = new LinkedHashMap<>();
+        Map<String, ActivityRollup> rollups = accumulate(activities, byRollup);
+        if (rollups.isEmpty()) {
+            return;
+        }
+        List<UpdateOneModel<Document>> updates = new ArrayList<>(rollups.size());
+        for (ActivityRollup rollup : rollups.values()) {
+            List<Document> parts = byRollup.get(rollup.getId()).stream().map(this::part).toList();
+            Document counted = new Document("$lt", List.of("$$this.createdAt", "$" + REBUILT_BEFORE));
+            Document recent = new Document("$gte", List.of("$$this.createdAt", "$" + REBUILD + ".cutoff"));
+            Document set = new Document()
+                    .append("userId", new Document("$ifNull", List.of("$userId", rollup.getUserId())))
+                    .append("granularity", new Document("$ifNull", List.of("$granularity", toMongo(rollup.getGranularity()))))
+                    .append("bucketStart", new Document("$ifNull", List.of("$bucketStart", toMongo(rollup.getBucketStart()))))
+                    .append("type", new Document("$ifNull", List.of("$type", toMongo(rollup.getType()))));
+            Document rebuild = new Document();
+            for (String field : FIELDS) {
+                set.append(field, new Document("$add", List.of(new Document("$ifNull", List.of("$" + field, 0)),
+                        sum(parts, field, new Document("$not", List.of(counted))))));
+                rebuild.append(field, new Document("$add", List.of("$" + REBUILD + "." + field, sum(parts, field, recent))));
+            }
+            set.append(REBUILD, new Document("$cond", List.of(
+                    new Document("$eq", List.of(new Document("$type", "$" + REBUILD), "object")),
+                    new Document("$mergeObjects", List.of("$" + REBUILD, rebuild)),
+                    "$$REMOVE")));
+            updates.add(new UpdateOneModel<>(Filters.eq("_id", rollup.getId()), List.of(new Document("$set", set)),
+                    new UpdateOptions().upsert(true)));
+        }
+        rollups().bulkWrite(updates, new BulkWriteOptions().ordered(false));
+    }
+
+    public ActivityStatsResponse getStats(String userId, LocalDate from, LocalDate to, Granularity granularity) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(30);
+        Query query = Query.query(Criteria.where("userId").is(userId)
+                        .and("granularity").is(granularity)
+                        .and("bucketStart").gte(granularity.bucketStart(start)).lte(end))
+                .with(Sort.by(Sort.Direction.ASC, "bucketStart"));
+
+        Map<LocalDate, StatsBucket> buckets = new LinkedHashMap<>();
+        for (ActivityRollup rollup : mongoTemplate.find(query, ActivityRollup.class)) {
+            StatsBucket bucket = buckets.computeIfAbsent(rollup.getBucketStart(), date -> {
+                StatsBucket created = new StatsBucket();
+                created.setBucketStart(date);
+                return created;
+            });
+            bucket.getTotal().add(rollup.getCount(), rollup.getTotalDuration(), rollup.getTotalCalories());
+            bucket.getByType().computeIfAbsent(rollup.getType(), type -> new ActivityTotals())
+                    .add(rollup.getCount(), rollup.getTotalDuration(), rollup.getTotalCalories());
+        }
+        return new ActivityStatsResponse(granularity, start, end, new ArrayList<>(buckets.values()));
+    }
+
+    /**
+     * Recomputes the rollups of one user from the raw activities, without losing or doubling the
+     * increments recorded while it runs.
+     */
+    public void rebuild(String userId) {
+        Bson scope = Filters.eq("userId", userId);
+        Rebuild rebuild = begin(scope);
+        Query query = Query.query(createdBefore(rebuild.cutoff()).and("userId").is(userId));
+        query.fields().include("userId", "type", "duration", "caloriesBurned", "startTime");
+        List<Activity> activities = new ArrayList<>();
+        try (Stream<Activity> stream = mongoTemplate.stream(query, Activity.class)) {
+            stream.forEach(activities::add);
+        }
+        swap(rebuild, accumulate(activities, null).values());
+        settle(rebuild, scope);
+    }
+
+    /**
+     * Recomputes the rollups of every user, streaming activities in userId order so only one
+     * user's activities are held at a time.
+     */
+    @Async
+    public void rebuildAll() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            log.info("Rollup rebuild already running");
+            return;
+        }
+        try {
+            Rebuild rebuild = begin(new Document());
+            Query query = Query.query(createdBefore(rebuild.cutoff())).with(Sort.by(Sort.Direction.ASC, "userId"));
+            query.fields().include("userId", "type", "duration", "caloriesBurned", "startTime");
+            List<Activity> userActivities = new ArrayList<>();
+            String currentUser = null;
+            int users = 0;
+            try (Stream<Activity> stream = mongoTemplate.stream(query, Activity.class)) {
+                for (Activity activity : (Iterable<Activity>) stream::iterator) {
+                    if (currentUser != null && !currentUser.equals(activity.getUserId())) {
+                        swap(rebuild, accumulate(userActivities, null).values());
+                        userActivities.clear();
+                        users++;
+                    }
+                    currentUser = activity.getUserId();
+                    userActivities.add(activity);
+                }
+            }
+            if (currentUser != null) {
+                swap(rebuild, accumulate(userActivities, null).values());
+                users++;
+            }
+            settle(rebuild, new Document());
+            log.info("Rebuilt activity rollups for {} users", users);
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    /**
+     * Marks the rollups in scope with a new token and a cutoff one settle time ahead, then waits
+     * until every activity created before the cutoff has been stored and recorded. An activity
+     * created after the cutoff is recorded after the mark, so record() adds it to the rebuild's
+     * own totals; one created before it is read by the rebuild instead.
+     */
+    private Rebuild begin(Bson scope) {
+        Rebuild rebuild = new Rebuild(UUID.randomUUID().toString(), Instant.now().plus(settle));
+        Document mark = new Document("token", rebuild.token()).append("cutoff", Date.from(rebuild.cutoff()));
+        FIELDS.forEach(field -> mark.append(field, 0L));
+        rollups().updateMany(scope, new Document("$set", new Document(REBUILD, mark)));
+        if (!Instant.now().isBefore(rebuild.cutoff())) {
+            rollups().updateMany(Filters.eq(REBUILD + ".token", rebuild.token()), new Document("$unset", new Document(REBUILD, "")));
+            throw new IllegalStateException("Marking rollups for a rebuild took longer than " + settle);
+        }
+        sleepUntil(rebuild.cutoff().plus(settle));
+        return rebuild;
+    }
+
+    /**
+     * Sets each marked rollup to its recomputed totals plus what newer activities added, and
+     * creates the ones that are missing. A rollup created after the mark holds only real
+     * increments and is left alone.
+     */
+    private void swap(Rebuild rebuild, Collection<ActivityRollup> rollups) {
+        if (rollups.isEmpty()) {
+            return;
+        }
+        List<UpdateOneModel<Document>> swaps = new ArrayList<>(rollups.size());
+        for (ActivityRollup rollup : rollups) {
+            swaps.add(new UpdateOneModel<>(Filters.and(Filters.eq("_id", rollup.getId()), Filters.eq(REBUILD + ".token", rebuild.token())),
+                    finish(rebuild, rollup.getCount(), rollup.getTotalDuration(), rollup.getTotalCalories())));
+        }
+        rollups().bulkWrite(swaps, new BulkWriteOptions().ordered(false));
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ActivityRollup.class);
+        for (ActivityRollup rollup : rollups) {
+            bulk.upsert(Query.query(Criteria.where("_id").is(rollup.getId())), new Update()
+                    .setOnInsert("userId", rollup.getUserId())
+                    .setOnInsert("granularity", rollup.getGranularity())
+                    .setOnInsert("bucketStart", rollup.getBucketStart())
+                    .setOnInsert("type", rollup.getType())
+                    .setOnInsert("count", rollup.getCount())
+                    .setOnInsert("totalDuration", rollup.getTotalDuration())
+                    .setOnInsert("totalCalories", rollup.getTotalCalories())
+                    .setOnInsert(REBUILT_BEFORE, Date.from(rebuild.cutoff())));
+        }
+        bulk.execute();
+    }
+
+    /**
+     * Finishes the marked rollups no activity was read for: they keep only what newer activities
+     * added, and are removed if that is nothing.
+     */
+    private void settle(Rebuild rebuild, Bson scope) {
+        rollups().updateMany(Filters.eq(REBUILD + ".token", rebuild.token()), finish(rebuild, 0, 0, 0));
+        // record() only adds, so a rollup that gains an activity meanwhile no longer matches
+        rollups().deleteMany(Filters.and(scope, Filters.lte("count", 0)));
+    }
+
+    private static List<Document> finish(Rebuild rebuild, long count, long totalDuration, long totalCalories) {
+        return List.of(
+                new Document("$set", new Document()
+                        .append("count", new Document("$add", List.of(count, "$" + REBUILD + ".count")))
+                        .append("totalDuration", new Document("$add", List.of(totalDuration, "$" + REBUILD + ".totalDuration")))
+                        .append("totalCalories", new Document("$add", List.of(totalCalories, "$" + REBUILD + ".totalCalories")))
+                        .append(REBUILT_BEFORE, Date.from(rebuild.cutoff()))),
+                new Document("$unset", REBUILD));
+    }
+
+    /**
+     * The sum of the field over the parts that match the condition.
+     */
+    private static Document sum(List<Document> parts, String field, Document condition) {
+        return new Document("$reduce", new Document()
+                .append("input", new Document("$literal", parts))
+                .append("initialValue", 0L)
+                .append("in", new Document("$add", List.of("$$value",
+                        new Document("$cond", List.of(condition, "$$this." + field, 0L))))));
+    }
+
+    /**
+     * One activity's contribution to a rollup, stamped with its createdAt.
+     */
+    private Document part(Activity activity) {
+        // Activities stored before createdAt was recorded count as old
+        Object createdAt = activity.getCreatedAt() != null ? toMongo(activity.getCreatedAt()) : new Date(0);
+        return new Document("createdAt", createdAt)
+                .append("count", 1L)
+                .append("totalDuration", valueOf(activity.getDuration()))
+                .append("totalCalories", valueOf(activity.getCaloriesBurned()));
+    }
+
+    private Object toMongo(Object value) {
+        return mongoTemplate.getConverter().convertToMongoType(value);
+    }
+
+    private static Criteria createdBefore(Instant cutoff) {
+        // Activities stored before createdAt was recorded count as old
+        return new Criteria().orOperator(Criteria.where("createdAt").lt(Date.from(cutoff)), Criteria.where("createdAt").is(null));
+    }
+
+    private static void sleepUntil(Instant instant) {
+        try {
+            Thread.sleep(Math.max(0, Duration.between(Instant.now(), instant).toMillis()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to rebuild rollups", e);
+        }
+    }
+
+    private MongoCollection<Document> rollups() {
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(ActivityRollup.class));
+    }
+
+    /**
+     * Sums the activities per rollup; if byRollup is given, also collects each rollup's activities.
+     */
+    private Map<String, ActivityRollup> accumulate(Collection<Activity> activities, Map<String, List<Activity>> byRollup) {
+        Map<String, ActivityRollup> rollups = new LinkedHashMap<>();
+        for (Activity activity : activities) {
+            if (activity.getStartTime() == null || activity.getType() == null) {
+                continue;
+            }
+            LocalDate date = activity.getStartTime().toLocalDate();
+            for (Granularity granularity : Granularity.values()) {
+                LocalDate bucketStart = granularity.bucketStart(date);
+                String key = ActivityRollup.key(activity.getUserId(), granularity, bucketStart, activity.getType());
+                ActivityRollup rollup = rollups.computeIfAbsent(key, id -> ActivityRollup.builder()
+                        .id(id)
+                        .userId(activity.getUserId())
+                        .granularity(granularity)
+                        .bucketStart(bucketStart)
+                        .type(activity.getType())
+                        .build());
+                if (byRollup != null) {
+                    byRollup.computeIfAbsent(key, id -> new ArrayList<>()).add(activity);
+                }
+                rollup.setCount(rollup.getCount() + 1);
+                rollup.setTotalDuration(rollup.getTotalDuration() + valueOf(activity.getDuration()));
+                rollup.setTotalCalories(rollup.getTotalCalories() + valueOf(activity.getCaloriesBurned()));
+            }
+        }
+        return rollups;
+    }
+
+    private static long valueOf(Integer value) {
+        return value == null ? 0 : value;
+    }
+
+    private record Rebuild(String token, Instant cutoff) {
+    }
+}
@@ -1,16 +1,39 @@
 package com.fitness.activityservice.service;
 
+import com.fitness.activityservice.dto.ActivityPage;
 import com.fitness.activityservice.dto.ActivityRequest;
 import com.fitness.activityservice.dto.ActivityResponse;
+import com.fitness.activityservice.dto.BatchActivityResponse;
+import com.fitness.activityservice.dto.BatchItemResult;
 import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.ActivityType;
+import com.fitness.activityservice.model.OutboxEvent;
+import com.fitness.activityservice.model.OutboxStatus;
+import com.fitness.activityservice.repository.ActivityCursor;
 import com.fitness.activityservice.repository.ActivityRepository;
+import com.mongodb.bulk.BulkWriteError;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -19,7 +42,9 @@ import java.util.stream.Collectors;
 public class ActivityService {
     private final ActivityRepository activityRepository;
     private final UserValidationService userValidationService;
-    private final RabbitTemplate rabbitTemplate;
+    private final ActivityRollupService activityRollupService;
+    private final MongoTemplate mongoTemplate;
+    private final ObjectProvider<MongoTransactionManager> transactionManager;
 
     @Value("${rabbitmq.exchange.name}")
     private String exchange;
@@ -27,13 +52,257 @@ public class ActivityService {
     @Value("${rabbitmq.routing.key}")
     private String routingKey;
 
+    @Value("${rabbitmq.routing.bulk:activity.tracking.bulk}")
+    private String bulkRoutingKey;
+
+    @Value("${activity.batch.max-size:1000}")
+    private int maxBatchSize;
+
+    @Value("${activity.page.default-size:50}")
+    private int defaultPageSize;
+
+    @Value("${activity.page.max-size:200}")
+    private int maxPageSize;
+
+    @Value("${activity.scan.max-size:1000}")
+    private int maxScanSize;
+
     public ActivityResponse trackActivity(ActivityRequest request) {
+        String error = validateRequest(request);
+        if (error != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, error);
+        }
 
         boolean isValidUser = userValidationService.validateUser(request.getUserId());
         if (!isValidUser) {
             throw new RuntimeException("Invalid user " + request.getUserId());
         }
-        Activity activity = Activity.builder()
+        Activity activity = toActivity(request);
+        activity.setId(new ObjectId().toHexString());
+
+        // The outbox relay publishes the event to RabbitMQ for AI processing
+        Map<Integer, String> failed = store(List.of(activity), routingKey);
+        if (!failed.isEmpty()) {
+            throw new RuntimeException("Could not store activity: " + failed.get(0));
+        }
+        return mapToResponse(activity);
+    }
+
+    public BatchActivityResponse trackActivities(String userId, List<ActivityRequest> requests) {
+        if (requests.size() > maxBatchSize) {
+            throw new RuntimeException("Batch size " + requests.size() + " exceeds limit of " + maxBatchSize);
+        }
+
+        boolean isValidUser = userValidationService.validateUser(userId);
+        if (!isValidUser) {
+            throw new RuntimeException("Invalid user " + userId);
+        }
+
+        List<BatchItemResult> results = new ArrayList<>(requests.size());
+        List<Activity> activities = new ArrayList<>();
+        List<BatchItemResult> pending = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            ActivityRequest request = requests.get(i);
+            String error = validateRequest(request);
+            BatchItemResult result = BatchItemResult.builder().index(i).error(error).build();
+            results.add(result);
+            if (error != null) {
+                continue;
+            }
+            request.setUserId(userId);
+            Activity activity = toActivity(request);
+            // Ids are assigned up front so that the outbox event can carry the activity before it
+            // is written, and bulk write errors can be matched back to the originating item.
+            activity.setId(new ObjectId().toHexString());
+            activities.add(activity);
+            pending.add(result);
+        }
+
+        // Wearable syncs and imports go to the bulk lane, behind activities users just logged
+        Map<Integer, String> failed = store(activities, bulkRoutingKey);
+        for (int i = 0; i < activities.size(); i++) {
+            BatchItemResult result = pending.get(i);
+            if (failed.containsKey(i)) {
+                result.setError(failed.get(i));
+            } else {
+                result.setSuccess(true);
+                result.setActivityId(activities.get(i).getId());
+            }
+        }
+
+        int succeeded = (int) results.stream().filter(BatchItemResult::isSuccess).count();
+        log.info("Batch for user {}: {} of {} activities stored", userId, succeeded, requests.size());
+        return BatchActivityResponse.builder()
+                .total(requests.size())
+                .succeeded(succeeded)
+                .failed(requests.size() - succeeded)
+                .results(results)
+                .build();
+    }
+
+    private String validateRequest(ActivityRequest request) {
+        if (request == null) {
+            return "Activity is empty";
+        }
+        if (request.getType() == null) {
+            return "Activity type is required";
+        }
+        // Not defaulted to the time of the request: a late sync would land on the wrong day
+        // and in the wrong place in the history
+        if (request.getStartTime() == null) {
+            return "Start time is required";
+        }
+        if (request.getDuration() != null && request.getDuration() < 0) {
+            return "Duration must not be negative";
+        }
+        if (request.getCaloriesBurned() != null && request.getCaloriesBurned() < 0) {
+            return "Calories burned must not be negative";
+        }
+        return null;
+    }
+
+    /**
+     * Stores each activity together with its outbox event, so an activity is never stored without
+     * the event that sends it for AI processing, and updates the rollups of the stored ones.
+     * Returns the error of every activity that could not be stored, by its index; the others are
+     * stored whatever happens to them.
+     */
+    private Map<Integer, String> store(List<Activity> activities, String routingKey) {
+        if (activities.isEmpty()) {
+            return Map.of();
+        }
+        MongoTransactionManager manager = transactionManager.getIfAvailable();
+        if (manager == null) {
+            return storeOutboxFirst(activities, routingKey);
+        }
+
+        TransactionTemplate transaction = new TransactionTemplate(manager);
+        try {
+            transaction.executeWithoutResult(status -> {
+                mongoTemplate.insert(activities, Activity.class);
+                mongoTemplate.insertAll(activities.stream().map(activity -> toOutboxEvent(activity, routingKey)).toList());
+                activityRollupService.record(activities);
+            });
+            return Map.of();
+        } catch (RuntimeException e) {
+            if (activities.size() == 1) {
+                return Map.of(0, errorMessage(e));
+            }
+            // A failed write aborts the whole transaction, so find the failing items one at a time
+            log.warn("Batch of {} activities could not be stored in one transaction, storing them one by one: {}",
+                    activities.size(), e.getMessage());
+        }
+        Map<Integer, String> failed = new HashMap<>();
+        for (int i = 0; i < activities.size(); i++) {
+            Activity activity = activities.get(i);
+            try {
+                transaction.executeWithoutResult(status -> {
+                    mongoTemplate.insert(activity);
+                    mongoTemplate.insert(toOutboxEvent(activity, routingKey));
+                    activityRollupService.record(List.of(activity));
+                });
+            } catch (RuntimeException e) {
+                failed.put(i, errorMessage(e));
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Without transactions the outbox events are written before their activities, and the events
+     * of activities that fail are removed again. A crash in between leaves an event without its
+     * activity, never the reverse; the relay drops such events.
+     */
+    private Map<Integer, String> storeOutboxFirst(List<Activity> activities, String routingKey) {
+        List<OutboxEvent> events = activities.stream().map(activity -> toOutboxEvent(activity, routingKey)).toList();
+        Map<Integer, String> failed = bulkInsert(OutboxEvent.class, events);
+
+        List<Integer> indexes = new ArrayList<>(activities.size());
+        List<Activity> withEvent = new ArrayList<>(activities.size());
+        for (int i = 0; i < activities.size(); i++) {
+            if (!failed.containsKey(i)) {
+                indexes.add(i);
+                withEvent.add(activities.get(i));
+            }
+        }
+        Map<Integer, String> failedActivities = bulkInsert(Activity.class, withEvent);
+
+        List<String> orphanedEvents = new ArrayList<>(failedActivities.size());
+        List<Activity> stored = new ArrayList<>(withEvent.size());
+        for (int i = 0; i < withEvent.size(); i++) {
+            if (failedActivities.containsKey(i)) {
+                failed.put(indexes.get(i), failedActivities.get(i));
+                orphanedEvents.add(events.get(indexes.get(i)).getId());
+            } else {
+                stored.add(withEvent.get(i));
+            }
+        }
+        if (!orphanedEvents.isEmpty()) {
+            try {
+                mongoTemplate.remove(Query.query(Criteria.where("_id").in(orphanedEvents)), OutboxEvent.class);
+            } catch (Exception e) {
+                log.warn("Could not remove {} outbox events of activities that were not stored; the relay drops them: {}",
+                        orphanedEvents.size(), e.getMessage());
+            }
+        }
+        if (!stored.isEmpty()) {
+            try {
+                activityRollupService.record(stored);
+            } catch (Exception e) {
+                // The activities are stored, so the request succeeded; a rebuild corrects the rollups
+                log.error("Could not update rollups for {} activities: ", stored.size(), e);
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * Inserts the documents in one unordered bulk write and returns the error of each document that
+     * was not inserted, by its index.
+     */
+    private Map<Integer, String> bulkInsert(Class<?> type, List<?> documents) {
+        Map<Integer, String> failed = new HashMap<>();
+        if (documents.isEmpty()) {
+            return failed;
+        }
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, type)
+                    .insert(documents)
+                    .execute();
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                failed.put(error.getIndex(), error.getMessage());
+            }
+        } catch (Exception e) {
+            log.error("Bulk insert of {} {} documents failed: ", documents.size(), type.getSimpleName(), e);
+            for (int i = 0; i < documents.size(); i++) {
+                failed.put(i, "Failed to store activity");
+            }
+        }
+        return failed;
+    }
+
+    private static String errorMessage(RuntimeException e) {
+        if (e instanceof DataAccessException dataAccess && dataAccess.getMostSpecificCause().getMessage() != null) {
+            return dataAccess.getMostSpecificCause().getMessage();
+        }
+        return "Failed to store activity";
+    }
+
+    private OutboxEvent toOutboxEvent(Activity activity, String routingKey) {
+        return OutboxEvent.builder()
+                .activityId(activity.getId())
+                .exchange(exchange)
+                .routingKey(routingKey)
+                .payload(activity)
+                .id(new ObjectId().toHexString())
+                .status(OutboxStatus.PENDING)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    private Activity toActivity(ActivityRequest request) {
+        return Activity.builder()
                 .userId(request.getUserId())
                 .type(request.getType())
                 .duration(request.getDuration())
@@ -41,19 +310,9 @@ public class ActivityService {
                 .startTime(request.getStartTime())
                 .additionalMetrics(request.getAdditionalMetrics())
                 .build();
-
-        Activity savedActivity = activityRepository.save(activity);
-
-        //Publish to RabbitMQ for AI processing
-        try{
-            rabbitTemplate.convertAndSend(exchange, routingKey, savedActivity);
-        }catch(Exception e){
-            log.error("Faield to publish activity to RabbitMQ: ", e);
-        }
-        return mapToResponse(savedActivity);
     }
 
-    private ActivityResponse mapToResponse(Activity activity) {
+    static ActivityResponse mapToResponse(Activity activity) {
         ActivityResponse response = new ActivityResponse();
         response.setId(activity.getId());
         response.setUserId(activity.getUserId());
@@ -67,16 +326,54 @@ public class ActivityService {
         return response;
     }
 
-    public List<ActivityResponse> getUserActivities(String userId) {
-        List<Activity> activities = activityRepository.findByUserId(userId);
-        return activities.stream()
-                .map(this::mapToResponse)
+    public ActivityPage getUserActivities(String userId, String cursor, Integer limit, ActivityType type,
+                                          LocalDateTime from, LocalDateTime to) {
+        int pageSize = limit == null ? defaultPageSize : Math.max(1, Math.min(limit, maxPageSize));
+        ActivityCursor after = cursor == null || cursor.isBlank() ? null : ActivityCursor.decode(cursor);
+
+        // Fetch one extra document to know whether another page exists
+        List<Activity> activities = activityRepository.findPage(userId, type, from, to, after, pageSize + 1);
+        String nextCursor = null;
+        if (activities.size() > pageSize) {
+            activities = activities.subList(0, pageSize);
+            Activity last = activities.get(pageSize - 1);
+            nextCursor = new ActivityCursor(last.getStartTime(), last.getId()).encode();
+        }
+        List<ActivityResponse> items = activities.stream()
+                .map(ActivityService::mapToResponse)
+                .collect(Collectors.toList());
+        return new ActivityPage(items, nextCursor);
+    }
+
+    /**
+     * A page of all users' activities in id order, for jobs that walk the whole collection.
+     */
+    public ActivityPage scanActivities(String cursor, Integer limit) {
+        int pageSize = limit == null ? maxScanSize : Math.max(1, Math.min(limit, maxScanSize));
+        String after = cursor == null || cursor.isBlank() ? null : cursor;
+
+        List<Activity> activities = activityRepository.scan(after, pageSize + 1);
+        String nextCursor = null;
+        if (activities.size() > pageSize) {
+            activities = activities.subList(0, pageSize);
+            nextCursor = activities.get(pageSize - 1).getId();
+        }
+        List<ActivityResponse> items = activities.stream()
+                .map(ActivityService::mapToResponse)
                 .collect(Collectors.toList());
+        return new ActivityPage(items, nextCursor);
+    }
+
+    /**
+     * The number of stored activities, from collection metadata rather than a count.
+     */
+    public long estimateActivityCount() {
+        return mongoTemplate.estimatedCount(Activity.class);
     }
 
     public ActivityResponse getActivityById(String activityId) {
         return activityRepository.findById(activityId)
-                .map(this::mapToResponse)
+                .map(ActivityService::mapToResponse)
                 .orElseThrow(()->new RuntimeException("Activity not found with id: " + activityId));
     }
 }
@@ -0,0 +1,125 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.config.ActivityStorageInitializer;
+import com.fitness.activityservice.model.StorageMigration;
+import com.fitness.activityservice.model.StorageMode;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.InsertManyOptions;
+import com.mongodb.client.model.Sorts;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Copies an activity collection into a new one in the requested layout, in _id order and in
+ * batches, recording a checkpoint after each batch. Documents are copied as stored, so the copy
+ * reads back exactly like the source. A time-series target requires a date in startTime, so
+ * documents without one are left behind and counted as skipped. Switch activity.storage.collection
+ * to the target once done, then run the migration again to pick up activities written during the switch.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ActivityStorageMigrator {
+    private static final String TIME_FIELD = "startTime";
+
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${activity.storage.migration.batch-size:1000}")
+    private int batchSize;
+
+    private final AtomicBoolean migrating = new AtomicBoolean();
+
+    @Async
+    public void migrate(String source, String target, StorageMode mode) {
+        if (!migrating.compareAndSet(false, true)) {
+            log.info("Activity storage migration already running");
+            return;
+        }
+        try {
+            copy(source, target, mode);
+        } catch (Exception e) {
+            log.error("Activity storage migration from {} to {} failed: ", source, target, e);
+        } finally {
+            migrating.set(false);
+        }
+    }
+
+    StorageMigration copy(String source, String target, StorageMode mode) {
+        if (source.equals(target)) {
+            throw new IllegalArgumentException("Source and target collection must differ");
+        }
+        StorageMigration migration = mongoTemplate.findById(source + "->" + target, StorageMigration.class);
+        StorageMode existing = ActivityStorageInitializer.storageModeOf(mongoTemplate, target);
+        if (migration == null) {
+            if (existing != null) {
+                throw new IllegalStateException("Target collection " + target + " already exists");
+            }
+            ActivityStorageInitializer.create(mongoTemplate, target, mode);
+            migration = StorageMigration.builder()
+                    .id(source + "->" + target)
+                    .source(source)
+                    .target(target)
+                    .mode(mode)
+                    .startedAt(LocalDateTime.now())
+                    .build();
+        } else if (existing == null) {
+            throw new IllegalStateException("Target collection " + target + " of an earlier migration is missing");
+        }
+
+        MongoCollection<Document> from = mongoTemplate.getCollection(source);
+        MongoCollection<Document> to = mongoTemplate.getCollection(target);
+        if (migration.getLastId() != null) {
+            // A batch may have been written without its checkpoint; time-series collections
+            // do not enforce unique _ids, so drop it rather than risk copying it twice
+            to.deleteMany(Filters.gt("_id", migration.getLastId()));
+        }
+
+        List<Document> batch = new ArrayList<>(batchSize);
+        do {
+            batch.clear();
+            Bson filter = migration.getLastId() == null ? new Document() : Filters.gt("_id", migration.getLastId());
+            from.find(filter).sort(Sorts.ascending("_id")).limit(batchSize).into(batch);
+            if (batch.isEmpty()) {
+                break;
+            }
+            List<Document> copyable = mode == StorageMode.TIMESERIES
+                    ? batch.stream().filter(document -> document.get(TIME_FIELD) instanceof Date).toList()
+                    : batch;
+            if (copyable.size() < batch.size()) {
+                log.warn("Skipping {} activities without a {} date, which a time-series collection cannot hold",
+                        batch.size() - copyable.size(), TIME_FIELD);
+            }
+            if (!copyable.isEmpty()) {
+                to.insertMany(copyable, new InsertManyOptions().ordered(false));
+            }
+            migration.setLastId(batch.get(batch.size() - 1).get("_id"));
+            migration.setCopied(migration.getCopied() + copyable.size());
+            migration.setSkipped(migration.getSkipped() + batch.size() - copyable.size());
+            migration.setUpdatedAt(LocalDateTime.now());
+            mongoTemplate.save(migration);
+            if (migration.getCopied() % (batchSize * 100L) < batch.size()) {
+                log.info("Copied {} activities from {} to {}", migration.getCopied(), source, target);
+            }
+        } while (batch.size() == batchSize);
+
+        migration.setCompleted(true);
+        migration.setUpdatedAt(LocalDateTime.now());
+        mongoTemplate.save(migration);
+        log.info("Copied {} activities from {} into {} collection {}, skipped {}",
+                migration.getCopied(), source, mode, target, migration.getSkipped());
+        return migration;
+    }
+}
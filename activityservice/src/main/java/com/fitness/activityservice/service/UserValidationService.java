@@ -1,32 +1,129 @@
 package com.fitness.activityservice.service;
 
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class UserValidationService {
     private final WebClient userServiceWebClient;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${user-validation.cache.max-size:10000}")
+    private long maxSize;
+
+    @Value("${user-validation.cache.positive-ttl:10m}")
+    private Duration positiveTtl;
+
+    @Value("${user-validation.cache.negative-ttl:30s}")
+    private Duration negativeTtl;
+
+    @Value("${user-validation.cache.stale-while-revalidate:false}")
+    private boolean staleWhileRevalidate;
+
+    @Value("${user-validation.cache.refresh-after:5m}")
+    private Duration refreshAfter;
+
+    private AsyncLoadingCache<String, Boolean> cache;
+    private Timer loadTimer;
+
+    @PostConstruct
+    void initCache() {
+        loadTimer = Timer.builder("user.validation.load")
+                .description("Time spent calling USER-SERVICE to validate a user")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+
+        Caffeine<String, Boolean> builder = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new ValidationExpiry(positiveTtl, negativeTtl))
+                .recordStats();
+        if (staleWhileRevalidate) {
+            // Entries older than refreshAfter are served as-is while a reload runs in the background
+            builder.refreshAfterWrite(refreshAfter);
+        }
+        // The async cache hands concurrent lookups of one userId the same in-flight future
+        cache = builder.buildAsync((userId, executor) -> fetchValidation(userId).toFuture());
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "userValidation");
+    }
 
     public boolean validateUser(String userId) {
+        if (userId == null || userId.isBlank()) {
+            return false;
+        }
+        CompletableFuture<Boolean> lookup = cache.get(userId);
+        try {
+            return Boolean.TRUE.equals(lookup.join());
+        } catch (CompletionException e) {
+            // Caffeine drops failed futures asynchronously; remove it now so the next call retries
+            cache.asMap().remove(userId, lookup);
+            if (e.getCause() instanceof InvalidUserRequestException invalid) {
+                throw invalid;
+            }
+            log.error("User validation failed for userId {}: {}", userId, e.getCause().getMessage());
+            return false;
+        }
+    }
+
+    private Mono<Boolean> fetchValidation(String userId) {
         log.info("Calling User Validation API for userId: {}", userId);
-        try{
-            return Boolean.TRUE.equals(userServiceWebClient.get()
-                    .uri("/api/users/{userId}/validate", userId)
-                    .retrieve()
-                    .bodyToMono(Boolean.class)
-                    .block());
-        }catch(WebClientResponseException e){
-            if(e.getStatusCode() == HttpStatus.NOT_FOUND)
-                throw new RuntimeException("User not found" + userId);
-            else if(e.getStatusCode() == HttpStatus.BAD_REQUEST)
-                throw new RuntimeException("Invalid request " + userId);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        return userServiceWebClient.get()
+                .uri("/api/users/{userId}/validate", userId)
+                .retrieve()
+                .bodyToMono(Boolean.class)
+                .map(Boolean.TRUE::equals)
+                .defaultIfEmpty(false)
+                .onErrorResume(WebClientResponseException.class, e -> {
+                    // Unknown users are a cacheable answer; other failures must not be cached
+                    if (e.getStatusCode() == HttpStatus.NOT_FOUND)
+                        return Mono.just(false);
+                    else if (e.getStatusCode() == HttpStatus.BAD_REQUEST)
+                        return Mono.error(new InvalidUserRequestException("Invalid request " + userId));
+                    return Mono.error(e);
+                })
+                .doFinally(signal -> sample.stop(loadTimer));
+    }
+
+    static class InvalidUserRequestException extends RuntimeException {
+        InvalidUserRequestException(String message) {
+            super(message);
+        }
+    }
+
+    private record ValidationExpiry(Duration positiveTtl, Duration negativeTtl) implements Expiry<String, Boolean> {
+
+        @Override
+        public long expireAfterCreate(String userId, Boolean valid, long currentTime) {
+            return (valid ? positiveTtl : negativeTtl).toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String userId, Boolean valid, long currentTime, long currentDuration) {
+            return expireAfterCreate(userId, valid, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String userId, Boolean valid, long currentTime, long currentDuration) {
+            return currentDuration;
         }
-        return false;
     }
 }
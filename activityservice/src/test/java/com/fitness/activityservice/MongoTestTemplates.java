@@ -0,0 +1,50 @@
+package com.fitness.activityservice;
+
+import com.fitness.activityservice.config.ActivityMetricsConverters;
+import com.mongodb.client.MongoClients;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.SimpleMongoClientDatabaseFactory;
+import org.springframework.data.mongodb.core.convert.DbRefResolver;
+import org.springframework.data.mongodb.core.convert.DefaultDbRefResolver;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+/**
+ * Builds Mongo mapping infrastructure configured the way the application context configures it,
+ * for tests that do not start Spring.
+ */
+public final class MongoTestTemplates {
+
+    private MongoTestTemplates() {
+    }
+
+    public static MongoTemplate create(String uri, String database) {
+        SimpleMongoClientDatabaseFactory factory = new SimpleMongoClientDatabaseFactory(MongoClients.create(uri), database);
+        return new MongoTemplate(factory, converter(new DefaultDbRefResolver(factory)));
+    }
+
+    /**
+     * A converter that is not connected to a database.
+     */
+    public static MappingMongoConverter converter() {
+        return converter(NoOpDbRefResolver.INSTANCE);
+    }
+
+    private static MappingMongoConverter converter(DbRefResolver dbRefResolver) {
+        MongoCustomConversions conversions = new MongoCustomConversions(ActivityMetricsConverters.all());
+
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        // Resolves the placeholder in the Activity collection name
+        mappingContext.setEnvironment(new StandardEnvironment());
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+
+        MappingMongoConverter converter = new MappingMongoConverter(dbRefResolver, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+        return converter;
+    }
+}
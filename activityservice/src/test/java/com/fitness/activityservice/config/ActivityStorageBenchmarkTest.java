@@ -0,0 +1,144 @@
+package com.fitness.activityservice.config;
+
+import com.fitness.activityservice.MongoTestTemplates;
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.ActivityMetrics;
+import com.fitness.activityservice.model.ActivityType;
+import com.fitness.activityservice.model.StorageMode;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the standard and time-series activity layouts: storage size, insert throughput and
+ * latency of the per-user date range query behind the history endpoint.
+ * Run with {@code ./mvnw test -Pbenchmark}; requires Docker.
+ */
+@Tag("benchmark")
+@Testcontainers(disabledWithoutDocker = true)
+class ActivityStorageBenchmarkTest {
+
+    private static final int USERS = 500;
+    private static final int ACTIVITIES_PER_USER = 400;
+    private static final int BATCH_SIZE = 1000;
+    private static final int QUERIES = 2000;
+    private static final LocalDateTime EPOCH = LocalDateTime.of(2024, 1, 1, 6, 0);
+
+    @Container
+    static MongoDBContainer mongo = new MongoDBContainer("mongo:7-jammy");
+
+    static MongoTemplate mongoTemplate;
+
+    @BeforeAll
+    static void setUp() {
+        mongoTemplate = MongoTestTemplates.create(mongo.getReplicaSetUrl(), "fitnessactivity");
+    }
+
+    @Test
+    void compareLayouts() {
+        for (StorageMode mode : StorageMode.values()) {
+            String collection = "activities_" + mode.name().toLowerCase();
+            ActivityStorageInitializer.create(mongoTemplate, collection, mode);
+            mongoTemplate.indexOps(collection).ensureIndex(new Index()
+                    .on("userId", Sort.Direction.ASC)
+                    .on("startTime", Sort.Direction.DESC)
+                    .on("_id", Sort.Direction.DESC)
+                    .named("userId_startTime_id"));
+
+            long insertNanos = insert(collection);
+            Document stats = mongoTemplate.executeCommand(new Document("collStats", collection));
+            long[] latencies = rangeQueries(collection);
+
+            int total = USERS * ACTIVITIES_PER_USER;
+            System.out.printf("%-10s insert %7d docs in %6d ms (%.0f/s), storage %6d KiB, index %6d KiB, "
+                            + "range query p50 %5d us p99 %6d us%n",
+                    mode, total, insertNanos / 1_000_000, total * 1e9 / insertNanos,
+                    stats.get("storageSize", Number.class).longValue() / 1024,
+                    stats.get("totalIndexSize", Number.class).longValue() / 1024,
+                    latencies[latencies.length / 2] / 1000, latencies[latencies.length * 99 / 100] / 1000);
+
+            assertThat(mongoTemplate.count(new Query(), collection)).isEqualTo(total);
+        }
+    }
+
+    private static long insert(String collection) {
+        Random random = new Random(42);
+        long nanos = 0;
+        List<Activity> batch = new ArrayList<>(BATCH_SIZE);
+        // Users sync roughly in time order, so interleave users within each day
+        for (int i = 0; i < ACTIVITIES_PER_USER; i++) {
+            for (int user = 0; user < USERS; user++) {
+                batch.add(activity(user, i, random));
+                if (batch.size() == BATCH_SIZE) {
+                    long start = System.nanoTime();
+                    mongoTemplate.insert(batch, collection);
+                    nanos += System.nanoTime() - start;
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            long start = System.nanoTime();
+            mongoTemplate.insert(batch, collection);
+            nanos += System.nanoTime() - start;
+        }
+        return nanos;
+    }
+
+    private static long[] rangeQueries(String collection) {
+        Random random = new Random(7);
+        // Warm-up
+        for (int i = 0; i < QUERIES / 10; i++) {
+            rangeQuery(collection, random);
+        }
+        long[] latencies = new long[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            long start = System.nanoTime();
+            rangeQuery(collection, random);
+            latencies[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private static void rangeQuery(String collection, Random random) {
+        LocalDateTime from = EPOCH.plusDays(random.nextInt(ACTIVITIES_PER_USER - 30));
+        Query query = Query.query(Criteria.where("userId").is("user-" + random.nextInt(USERS))
+                        .and("startTime").gte(from).lt(from.plusDays(30)))
+                .with(Sort.by(Sort.Order.desc("startTime"), Sort.Order.desc("_id")))
+                .limit(50);
+        mongoTemplate.find(query, Activity.class, collection);
+    }
+
+    private static Activity activity(int user, int day, Random random) {
+        return Activity.builder()
+                .userId("user-" + user)
+                .type(ActivityType.values()[random.nextInt(ActivityType.values().length)])
+                .duration(20 + random.nextInt(60))
+                .caloriesBurned(150 + random.nextInt(400))
+                .startTime(EPOCH.plusDays(day).plusMinutes(random.nextInt(12 * 60)))
+                .additionalMetrics(ActivityMetrics.builder()
+                        .distanceKm(random.nextDouble() * 15)
+                        .avgHeartRate(110.0 + random.nextInt(60))
+                        .build())
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,40 @@
+package com.fitness.activityservice.config;
+
+import com.fitness.activityservice.MongoTestTemplates;
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.StorageMode;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Testcontainers(disabledWithoutDocker = true)
+class MongoIndexInitializerTest {
+
+    @Container
+    static MongoDBContainer mongo = new MongoDBContainer("mongo:7-jammy");
+
+    @ParameterizedTest
+    @EnumSource(StorageMode.class)
+    void activitiesCanBeFoundByIdInEveryLayout(StorageMode mode) {
+        MongoTemplate mongoTemplate = MongoTestTemplates.create(mongo.getReplicaSetUrl(), "activity-" + UUID.randomUUID());
+        ActivityStorageInitializer.create(mongoTemplate, mongoTemplate.getCollectionName(Activity.class), mode);
+        MongoIndexInitializer initializer = new MongoIndexInitializer(mongoTemplate);
+        ReflectionTestUtils.setField(initializer, "outboxRetention", Duration.ofDays(7));
+
+        initializer.ensureIndexes();
+
+        assertThat(mongoTemplate.indexOps(Activity.class).getIndexInfo())
+                .anySatisfy(index -> assertThat(index.getIndexFields())
+                        .extracting(field -> field.getKey())
+                        .containsExactly("_id"));
+    }
+}
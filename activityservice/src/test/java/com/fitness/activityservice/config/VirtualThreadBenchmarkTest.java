@@ -0,0 +1,187 @@
+package com.fitness.activityservice.config;
+
+import com.fitness.activityservice.ActivityserviceApplication;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.containers.RabbitMQContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares request throughput at high concurrency between the default 200-thread Tomcat pool
+ * and virtual threads by driving the running activity service: each request logs an activity,
+ * which blocks on user validation against a slow user service and on Mongo, then reads the
+ * user's activities back. Every request uses a new user, so none is answered from the validation
+ * cache. The virtual-thread run also checks that no request pinned its carrier thread.
+ * Run with {@code ./mvnw test -Pbenchmark}; requires Docker.
+ */
+@Tag("benchmark")
+@Testcontainers(disabledWithoutDocker = true)
+class VirtualThreadBenchmarkTest {
+
+    private static final int REQUESTS = 5_000;
+    private static final int WARM_UP_REQUESTS = 500;
+    private static final int CONCURRENCY = 1_000;
+    private static final long USER_SERVICE_LATENCY_MS = 20;
+    private static final int TOMCAT_MAX_THREADS = 200;
+
+    @Container
+    static MongoDBContainer mongo = new MongoDBContainer("mongo:7-jammy");
+
+    @Container
+    static RabbitMQContainer rabbit = new RabbitMQContainer("rabbitmq:3-management-alpine");
+
+    static HttpServer userService;
+
+    @BeforeAll
+    static void startUserService() throws Exception {
+        userService = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        userService.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        userService.createContext("/api/users/", exchange -> {
+            try {
+                Thread.sleep(USER_SERVICE_LATENCY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "true".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        userService.start();
+    }
+
+    @AfterAll
+    static void stopUserService() {
+        userService.stop(0);
+    }
+
+    @Test
+    void virtualThreadsSustainHigherConcurrency() throws Exception {
+        Run platform = run(false);
+        Run virtual = run(true);
+
+        report("platform pool (" + TOMCAT_MAX_THREADS + ")", platform);
+        report("virtual threads", virtual);
+
+        assertThat(platform.failures).isZero();
+        assertThat(virtual.failures).isZero();
+        assertThat(virtual.nanos).isLessThan(platform.nanos);
+        assertThat(virtual.pinned).isZero();
+    }
+
+    private Run run(boolean virtualThreads) throws Exception {
+        String mode = virtualThreads ? "virtual" : "platform";
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(ActivityserviceApplication.class)
+                .run(arguments(virtualThreads, mode))) {
+            int port = context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+            HttpClient client = HttpClient.newBuilder()
+                    .executor(Executors.newVirtualThreadPerTaskExecutor())
+                    .build();
+
+            // Warm up connections, JIT and the Mongo collection
+            drive(client, port, WARM_UP_REQUESTS, "warm-up-" + mode);
+            long start = System.nanoTime();
+            int failures = drive(client, port, REQUESTS, mode);
+            long nanos = System.nanoTime() - start;
+
+            Counter pinned = context.getBean(MeterRegistry.class).find("jvm.threads.virtual.pinned").counter();
+            return new Run(nanos, failures, pinned == null ? 0 : pinned.count());
+        }
+    }
+
+    private static String[] arguments(boolean virtualThreads, String mode) {
+        return new String[]{
+                "--server.port=0",
+                "--server.tomcat.threads.max=" + TOMCAT_MAX_THREADS,
+                "--spring.threads.virtual.enabled=" + virtualThreads,
+                "--spring.cloud.config.enabled=false",
+                "--eureka.client.enabled=false",
+                "--spring.cloud.discovery.client.simple.instances[USER-SERVICE][0].uri=http://localhost:"
+                        + userService.getAddress().getPort(),
+                "--spring.data.mongodb.uri=" + mongo.getReplicaSetUrl("fitnessactivity-" + mode),
+                "--spring.rabbitmq.host=" + rabbit.getHost(),
+                "--spring.rabbitmq.port=" + rabbit.getAmqpPort(),
+                "--spring.rabbitmq.username=" + rabbit.getAdminUsername(),
+                "--spring.rabbitmq.password=" + rabbit.getAdminPassword(),
+                "--spring.rabbitmq.publisher-confirm-type=correlated",
+                "--rabbitmq.exchange.name=fitness.exchange",
+                "--rabbitmq.queue.name=activity.queue",
+                "--rabbitmq.routing.key=activity.tracking",
+                "--virtual-threads.pinning.threshold=20ms"
+        };
+    }
+
+    /**
+     * Sends the requests with at most CONCURRENCY in flight and returns how many failed.
+     */
+    private static int drive(HttpClient client, int port, int requests, String userPrefix) throws Exception {
+        Semaphore inFlight = new Semaphore(CONCURRENCY);
+        AtomicInteger failures = new AtomicInteger();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < requests; i++) {
+                String userId = userPrefix + "-user-" + i;
+                inFlight.acquire();
+                executor.submit(() -> {
+                    try {
+                        if (!logAndList(client, port, userId)) {
+                            failures.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        failures.incrementAndGet();
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+        }
+        return failures.get();
+    }
+
+    private static boolean logAndList(HttpClient client, int port, String userId) throws Exception {
+        String activity = """
+                {"type":"RUNNING","duration":30,"caloriesBurned":300,"startTime":"%s"}
+                """.formatted(LocalDateTime.now().withNano(0));
+        HttpResponse<Void> tracked = client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/activities"))
+                .header("Content-Type", "application/json")
+                .header("X-User-ID", userId)
+                .POST(HttpRequest.BodyPublishers.ofString(activity))
+                .build(), HttpResponse.BodyHandlers.discarding());
+        HttpResponse<Void> listed = client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/activities"))
+                .header("X-User-ID", userId)
+                .GET()
+                .build(), HttpResponse.BodyHandlers.discarding());
+        return tracked.statusCode() == 200 && listed.statusCode() == 200;
+    }
+
+    private static void report(String mode, Run run) {
+        System.out.printf("%-28s %6d requests in %6d ms (%.0f req/s), %d failed, %.0f pinned%n",
+                mode, REQUESTS, run.nanos / 1_000_000, REQUESTS * 1e9 / run.nanos, run.failures, run.pinned);
+    }
+
+    private record Run(long nanos, int failures, double pinned) {
+    }
+}
@@ -0,0 +1,157 @@
+package com.fitness.activityservice.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fitness.activityservice.MongoTestTemplates;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.DocumentCodec;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.LastModifiedDate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the free-form metrics map the activity used to carry with the typed metrics model:
+ * stored document size, Jackson round trip (the REST and RabbitMQ path) and Mongo mapping cost.
+ * Run with {@code ./mvnw test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class ActivityMetricsBenchmarkTest {
+
+    private static final int ITERATIONS = 50_000;
+    private static final int ROUNDS = 15;
+
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+    private final MappingMongoConverter converter = MongoTestTemplates.converter();
+
+    @Test
+    void typedMetricsAreSmallerAndCheaper() throws Exception {
+        LegacyActivity legacy = legacyActivity();
+        Activity typed = objectMapper.readValue(objectMapper.writeValueAsString(legacy), Activity.class);
+
+        Document legacyDocument = new Document();
+        converter.write(legacy, legacyDocument);
+        Document typedDocument = new Document();
+        converter.write(typed, typedDocument);
+        int legacySize = bsonSize(legacyDocument);
+        int typedSize = bsonSize(typedDocument);
+
+        long[] json = compare(
+                () -> objectMapper.readValue(objectMapper.writeValueAsBytes(legacy), LegacyActivity.class),
+                () -> objectMapper.readValue(objectMapper.writeValueAsBytes(typed), Activity.class));
+        long[] mapping = compare(
+                () -> {
+                    Document document = new Document();
+                    converter.write(legacy, document);
+                    return converter.read(LegacyActivity.class, document);
+                },
+                () -> {
+                    Document document = new Document();
+                    converter.write(typed, document);
+                    return converter.read(Activity.class, document);
+                });
+
+        System.out.printf("document size:   map %4d bytes, typed %4d bytes%n", legacySize, typedSize);
+        System.out.printf("jackson round trip: map %5d ns, typed %5d ns%n", json[0], json[1]);
+        System.out.printf("mongo round trip:   map %5d ns, typed %5d ns%n", mapping[0], mapping[1]);
+
+        assertThat(typedSize).isLessThan(legacySize);
+    }
+
+    private static LegacyActivity legacyActivity() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("distanceKm", 10.4);
+        metrics.put("avgHeartRate", 148);
+        metrics.put("maxHeartRate", 176);
+        metrics.put("paceMinPerKm", 5.35);
+        metrics.put("elevationGainM", 86.0);
+        metrics.put("cadence", 172);
+
+        LegacyActivity activity = new LegacyActivity();
+        activity.setId("6631f0c2a1b2c3d4e5f60718");
+        activity.setUserId("8d3c2a8e-7f4b-4a36-9a53-0c5d1e2f3a4b");
+        activity.setType(ActivityType.RUNNING);
+        activity.setDuration(56);
+        activity.setCaloriesBurned(640);
+        activity.setStartTime(LocalDateTime.of(2024, 5, 1, 7, 30));
+        activity.setAdditionalMetrics(metrics);
+        activity.setCreatedAt(LocalDateTime.of(2024, 5, 1, 8, 30));
+        activity.setUpdatedAt(LocalDateTime.of(2024, 5, 1, 8, 30));
+        return activity;
+    }
+
+    private static int bsonSize(Document document) {
+        return new RawBsonDocument(document, new DocumentCodec()).getByteBuffer().remaining();
+    }
+
+    /**
+     * The fastest of several timed rounds of each operation after a warm-up, in nanoseconds per
+     * operation. Rounds alternate between the two, so GC pauses, JIT recompilation and other load
+     * on the machine weigh on both alike.
+     */
+    private static long[] compare(Operation legacy, Operation typed) throws Exception {
+        Operation[] operations = {legacy, typed};
+        long[] best = {Long.MAX_VALUE, Long.MAX_VALUE};
+        for (Operation operation : operations) {
+            run(operation);
+        }
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < operations.length; i++) {
+                long start = System.nanoTime();
+                run(operations[i]);
+                best[i] = Math.min(best[i], (System.nanoTime() - start) / ITERATIONS);
+            }
+        }
+        return best;
+    }
+
+    private static void run(Operation operation) throws Exception {
+        Object sink = null;
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink = operation.run();
+        }
+        assertThat(sink).isNotNull();
+    }
+
+    @FunctionalInterface
+    private interface Operation {
+        Object run() throws Exception;
+    }
+
+    /**
+     * The activity as it was before metrics were typed, mapped like {@link Activity} so that only
+     * the metrics differ.
+     */
+    @org.springframework.data.mongodb.core.mapping.Document(collection = "${activity.storage.collection:activities}")
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    static class LegacyActivity {
+        @Id
+        private String id;
+        private String userId;
+        private ActivityType type;
+        private Integer duration;
+        private Integer caloriesBurned;
+        private LocalDateTime startTime;
+        @Field("metrics")
+        private Map<String, Object> additionalMetrics;
+        @CreatedDate
+        private LocalDateTime createdAt;
+        @LastModifiedDate
+        private LocalDateTime updatedAt;
+    }
+}
@@ -0,0 +1,88 @@
+package com.fitness.activityservice.model;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fitness.activityservice.MongoTestTemplates;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ActivityMetricsTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final MappingMongoConverter converter = MongoTestTemplates.converter();
+
+    @Test
+    void jsonStaysFlatAndKeepsUnknownKeys() throws Exception {
+        ActivityMetrics metrics = objectMapper.readValue("""
+                {"distanceKm": 5.2, "heartRate": "142.5", "maxHeartRate": 171, "cadence": 168, "route": "park loop"}
+                """, ActivityMetrics.class);
+
+        assertThat(metrics.getDistanceKm()).isEqualTo(5.2);
+        assertThat(metrics.getAvgHeartRate()).isEqualTo(142.5);
+        assertThat(metrics.getMaxHeartRate()).isEqualTo(171.0);
+        assertThat(metrics.getOther()).containsExactly(Map.entry("cadence", 168), Map.entry("route", "park loop"));
+        // Written back under the names it was sent with
+        Map<String, Object> written = objectMapper.readValue(objectMapper.writeValueAsString(metrics),
+                new TypeReference<Map<String, Object>>() {
+                });
+        assertThat(written).isEqualTo(Map.of(
+                "distanceKm", 5.2, "heartRate", 142.5, "maxHeartRate", 171.0, "cadence", 168, "route", "park loop"));
+    }
+
+    @Test
+    void storedWithShortKeysAndReadBack() {
+        Activity activity = Activity.builder()
+                .userId("user-1")
+                .additionalMetrics(ActivityMetrics.builder().distanceKm(10.0).paceMinPerKm(5.5).build())
+                .build();
+        activity.getAdditionalMetrics().set("cadence", 170);
+
+        Document document = new Document();
+        converter.write(activity, document);
+
+        assertThat(document.get("metrics", Document.class))
+                .isEqualTo(new Document("dist", 10.0).append("paceKm", 5.5).append("cadence", 170));
+        assertThat(converter.read(Activity.class, document).getAdditionalMetrics())
+                .isEqualTo(activity.getAdditionalMetrics());
+    }
+
+    @Test
+    void legacyNamesAreKeptThroughStorage() throws Exception {
+        Activity activity = Activity.builder()
+                .userId("user-1")
+                .additionalMetrics(objectMapper.readValue("""
+                        {"distance": 8, "pace": 5.1, "avgHeartRate": 150}
+                        """, ActivityMetrics.class))
+                .build();
+
+        Document document = new Document();
+        converter.write(activity, document);
+        ActivityMetrics read = converter.read(Activity.class, document).getAdditionalMetrics();
+
+        assertThat(document.get("metrics", Document.class))
+                .isEqualTo(new Document("distance", 8.0).append("hrAvg", 150.0).append("pace", 5.1));
+        assertThat(read.getDistanceKm()).isEqualTo(8.0);
+        assertThat(read.getPaceMinPerKm()).isEqualTo(5.1);
+        assertThat(objectMapper.writeValueAsString(read)).isEqualTo("""
+                {"distance":8.0,"avgHeartRate":150.0,"pace":5.1}""");
+    }
+
+    @Test
+    void legacyDocumentsStillLoad() {
+        Document legacy = new Document("userId", "user-1")
+                .append("metrics", new Document("distance", 8).append("averageHeartRate", 150.4)
+                        .append("elevation", "120").append("weather", "rain"));
+
+        ActivityMetrics metrics = converter.read(Activity.class, legacy).getAdditionalMetrics();
+
+        assertThat(metrics.getDistanceKm()).isEqualTo(8.0);
+        assertThat(metrics.getAvgHeartRate()).isEqualTo(150.4);
+        assertThat(metrics.getElevationGainM()).isEqualTo(120.0);
+        assertThat(metrics.getOther()).containsExactly(Map.entry("weather", "rain"));
+    }
+}
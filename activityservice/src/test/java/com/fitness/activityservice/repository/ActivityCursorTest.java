@@ -0,0 +1,31 @@
+package com.fitness.activityservice.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ActivityCursorTest {
+
+    @Test
+    void encodedCursorRoundTrips() {
+        ActivityCursor cursor = new ActivityCursor(LocalDateTime.of(2024, 5, 1, 7, 30, 15), "6631f0c2a1b2c3d4e5f60718");
+
+        assertThat(ActivityCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+
+    @Test
+    void cursorWithoutStartTimeRoundTrips() {
+        ActivityCursor cursor = new ActivityCursor(null, "6631f0c2a1b2c3d4e5f60718");
+
+        assertThat(ActivityCursor.decode(cursor.encode())).isEqualTo(cursor);
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        assertThatThrownBy(() -> ActivityCursor.decode("not-a-cursor"))
+                .hasMessageContaining("Invalid cursor");
+    }
+}
@@ -0,0 +1,58 @@
+package com.fitness.activityservice.repository;
+
+import com.fitness.activityservice.MongoTestTemplates;
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.ActivityType;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Testcontainers(disabledWithoutDocker = true)
+class ActivityRepositoryCustomImplTest {
+
+    @Container
+    static MongoDBContainer mongo = new MongoDBContainer("mongo:7-jammy");
+
+    @Test
+    void pagesThroughActivitiesWithoutStartTime() {
+        MongoTemplate mongoTemplate = MongoTestTemplates.create(mongo.getReplicaSetUrl(), "activity-" + UUID.randomUUID());
+        ActivityRepositoryCustomImpl repository = new ActivityRepositoryCustomImpl(mongoTemplate);
+        List<String> ids = new ArrayList<>();
+        LocalDateTime start = LocalDateTime.of(2024, 5, 1, 7, 0);
+        for (int i = 0; i < 7; i++) {
+            // Every third activity predates startTime being required
+            Activity activity = Activity.builder()
+                    .id(new ObjectId().toHexString())
+                    .userId("user-1")
+                    .type(ActivityType.RUNNING)
+                    .startTime(i % 3 == 0 ? null : start.plusHours(i))
+                    .build();
+            mongoTemplate.insert(activity);
+            ids.add(activity.getId());
+        }
+
+        List<String> seen = new ArrayList<>();
+        ActivityCursor after = null;
+        List<Activity> page;
+        do {
+            page = repository.findPage("user-1", null, null, null, after, 2);
+            page.forEach(activity -> seen.add(activity.getId()));
+            if (!page.isEmpty()) {
+                Activity last = page.get(page.size() - 1);
+                after = ActivityCursor.decode(new ActivityCursor(last.getStartTime(), last.getId()).encode());
+            }
+        } while (page.size() == 2);
+
+        assertThat(seen).containsExactlyInAnyOrderElementsOf(ids).doesNotHaveDuplicates();
+    }
+}
@@ -0,0 +1,161 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.MongoTestTemplates;
+import com.fitness.activityservice.dto.ActivityRequest;
+import com.fitness.activityservice.dto.BatchActivityResponse;
+import com.fitness.activityservice.model.ActivityType;
+import com.fitness.activityservice.model.OutboxEvent;
+import com.fitness.activityservice.model.OutboxStatus;
+import com.fitness.activityservice.repository.ActivityRepository;
+import com.fitness.activityservice.repository.ActivityRepositoryCustomImpl;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition.RepositoryFragments;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.containers.RabbitMQContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Compares ingesting a wearable sync one activity at a time against the batch endpoint,
+ * then measures how quickly the outbox relay drains the resulting events.
+ * Run with {@code ./mvnw test -Pbenchmark}; requires Docker.
+ */
+@Tag("benchmark")
+@Testcontainers(disabledWithoutDocker = true)
+class ActivityBatchBenchmarkTest {
+
+    private static final int ACTIVITIES = 500;
+    private static final long USER_SERVICE_LATENCY_MS = 5;
+
+    @Container
+    static MongoDBContainer mongo = new MongoDBContainer("mongo:7-jammy");
+
+    @Container
+    static RabbitMQContainer rabbit = new RabbitMQContainer("rabbitmq:3-management-alpine");
+
+    static ActivityService activityService;
+    static ActivityOutboxRelay relay;
+    static MongoTemplate mongoTemplate;
+
+    @BeforeAll
+    static void setUp() {
+        mongoTemplate = MongoTestTemplates.create(mongo.getReplicaSetUrl(), "fitnessactivity");
+        ActivityRepository repository = new MongoRepositoryFactory(mongoTemplate).getRepository(ActivityRepository.class,
+                RepositoryFragments.just(new ActivityRepositoryCustomImpl(mongoTemplate)));
+
+        CachingConnectionFactory connectionFactory = new CachingConnectionFactory(rabbit.getHost(), rabbit.getAmqpPort());
+        connectionFactory.setUsername(rabbit.getAdminUsername());
+        connectionFactory.setPassword(rabbit.getAdminPassword());
+        connectionFactory.setPublisherConfirmType(CachingConnectionFactory.ConfirmType.CORRELATED);
+        RabbitAdmin admin = new RabbitAdmin(connectionFactory);
+        Queue queue = new Queue("activity.queue", true);
+        DirectExchange exchange = new DirectExchange("fitness.exchange");
+        admin.declareQueue(queue);
+        admin.declareExchange(exchange);
+        admin.declareBinding(BindingBuilder.bind(queue).to(exchange).with("activity.tracking"));
+        Queue bulkQueue = new Queue("activity.bulk.queue", true);
+        admin.declareQueue(bulkQueue);
+        admin.declareBinding(BindingBuilder.bind(bulkQueue).to(exchange).with("activity.tracking.bulk"));
+        RabbitTemplate rabbitTemplate = new RabbitTemplate(connectionFactory);
+        rabbitTemplate.setMessageConverter(new Jackson2JsonMessageConverter());
+
+        UserValidationService userValidationService = mock(UserValidationService.class);
+        when(userValidationService.validateUser(anyString())).thenAnswer(invocation -> {
+            Thread.sleep(USER_SERVICE_LATENCY_MS);
+            return true;
+        });
+
+        activityService = new ActivityService(repository, userValidationService,
+                new ActivityRollupService(mongoTemplate), mongoTemplate,
+                new StaticListableBeanFactory().getBeanProvider(MongoTransactionManager.class));
+        ReflectionTestUtils.setField(activityService, "exchange", "fitness.exchange");
+        ReflectionTestUtils.setField(activityService, "routingKey", "activity.tracking");
+        ReflectionTestUtils.setField(activityService, "bulkRoutingKey", "activity.tracking.bulk");
+        ReflectionTestUtils.setField(activityService, "maxBatchSize", 1000);
+        ReflectionTestUtils.setField(activityService, "defaultPageSize", 50);
+        ReflectionTestUtils.setField(activityService, "maxPageSize", 200);
+
+        relay = new ActivityOutboxRelay(mongoTemplate, rabbitTemplate, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(relay, "batchSize", 100);
+        ReflectionTestUtils.setField(relay, "confirmTimeoutMs", 5000L);
+        ReflectionTestUtils.setField(relay, "claimLease", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(relay, "orphanGrace", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(relay, "maxAttempts", 10);
+        ReflectionTestUtils.setField(relay, "initialBackoff", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(relay, "maxBackoff", Duration.ofMinutes(5));
+        relay.registerMetrics();
+    }
+
+    @Test
+    void batchIngestionOutperformsSingleItemPath() {
+        // Warm up connections, JIT and the Mongo collection
+        activityService.trackActivities("warmup", requests(ACTIVITIES));
+        requests(50).forEach(activityService::trackActivity);
+
+        long singleStart = System.nanoTime();
+        for (ActivityRequest request : requests(ACTIVITIES)) {
+            activityService.trackActivity(request);
+        }
+        long singleNanos = System.nanoTime() - singleStart;
+
+        long batchStart = System.nanoTime();
+        BatchActivityResponse response = activityService.trackActivities("user-1", requests(ACTIVITIES));
+        long batchNanos = System.nanoTime() - batchStart;
+
+        System.out.printf("single-item: %d activities in %d ms (%.0f/s)%n",
+                ACTIVITIES, singleNanos / 1_000_000, ACTIVITIES * 1e9 / singleNanos);
+        System.out.printf("batch:       %d activities in %d ms (%.0f/s)%n",
+                ACTIVITIES, batchNanos / 1_000_000, ACTIVITIES * 1e9 / batchNanos);
+
+        long relayStart = System.nanoTime();
+        relay.relay();
+        long relayNanos = System.nanoTime() - relayStart;
+        System.out.printf("outbox relay: drained in %d ms%n", relayNanos / 1_000_000);
+
+        assertThat(response.getSucceeded()).isEqualTo(ACTIVITIES);
+        assertThat(batchNanos).isLessThan(singleNanos);
+        assertThat(mongoTemplate.count(new Query(Criteria.where("status").is(OutboxStatus.PENDING)), OutboxEvent.class))
+                .isZero();
+    }
+
+    private static List<ActivityRequest> requests(int count) {
+        List<ActivityRequest> requests = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ActivityRequest request = new ActivityRequest();
+            request.setUserId("user-1");
+            request.setType(ActivityType.values()[i % ActivityType.values().length]);
+            request.setDuration(20 + i % 60);
+            request.setCaloriesBurned(150 + i % 400);
+            request.setStartTime(LocalDateTime.now().minusHours(i));
+            requests.add(request);
+        }
+        return requests;
+    }
+}
@@ -0,0 +1,127 @@
+package com.fitness.activityservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fitness.activityservice.MongoTestTemplates;
+import com.fitness.activityservice.config.MongoIndexInitializer;
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.ExportFormat;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Exports a user with a large seeded history from a real Mongo cursor and samples the heap as
+ * the response is written, to check that memory does not grow with the history.
+ * Run with {@code ./mvnw test -Pbenchmark}; requires Docker.
+ */
+@Tag("benchmark")
+@Testcontainers(disabledWithoutDocker = true)
+class ActivityExportBenchmarkTest {
+
+    private static final int ACTIVITIES = 500_000;
+    private static final int SEED_BATCH = 10_000;
+    private static final long SAMPLE_EVERY_BYTES = 16L * 1024 * 1024;
+
+    @Container
+    static MongoDBContainer mongo = new MongoDBContainer("mongo:7-jammy");
+
+    static MongoTemplate mongoTemplate;
+
+    @BeforeAll
+    static void setUp() {
+        mongoTemplate = MongoTestTemplates.create(mongo.getReplicaSetUrl(), "fitnessactivity");
+        MongoIndexInitializer indexInitializer = new MongoIndexInitializer(mongoTemplate);
+        ReflectionTestUtils.setField(indexInitializer, "outboxRetention", Duration.ofDays(7));
+        indexInitializer.ensureIndexes();
+
+        long start = System.nanoTime();
+        List<Activity> batch = new ArrayList<>(SEED_BATCH);
+        for (int i = 0; i < ACTIVITIES; i++) {
+            batch.add(ActivityExportServiceTest.activity(i));
+            if (batch.size() == SEED_BATCH) {
+                mongoTemplate.insert(batch, Activity.class);
+                batch.clear();
+            }
+        }
+        mongoTemplate.insert(batch, Activity.class);
+        System.out.printf("seeded %d activities in %d ms%n", ACTIVITIES, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @Test
+    void heapStaysFlatForLargeHistories() throws Exception {
+        ObjectMapper objectMapper = JsonMapper.builder()
+                .findAndAddModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        ActivityExportService service = new ActivityExportService(mongoTemplate, objectMapper);
+        ReflectionTestUtils.setField(service, "batchSize", 500);
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        HeapSamplingOutputStream out = new HeapSamplingOutputStream(memory, memory.getHeapMemoryUsage().getUsed());
+
+        long start = System.nanoTime();
+        long count = service.export("user-1", ExportFormat.NDJSON, out);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.printf("exported %d activities (%d MiB) in %d ms, max heap growth %d MiB over %d samples%n",
+                count, out.bytes / (1024 * 1024), elapsedMs, out.maxGrowth / (1024 * 1024), out.samples);
+        assertThat(count).isEqualTo(ACTIVITIES);
+        assertThat(out.bytes).isGreaterThan(ACTIVITIES * 100L);
+        assertThat(out.samples).isGreaterThan(3);
+        // Holding the history in memory would take hundreds of MiB
+        assertThat(out.maxGrowth).isLessThan(32L * 1024 * 1024);
+    }
+
+    /**
+     * Discards what is written, collecting garbage and recording heap growth every few MiB.
+     */
+    private static class HeapSamplingOutputStream extends OutputStream {
+        private final MemoryMXBean memory;
+        private final long baseline;
+        private long bytes;
+        private long nextSample = SAMPLE_EVERY_BYTES;
+        private long maxGrowth;
+        private int samples;
+
+        HeapSamplingOutputStream(MemoryMXBean memory, long baseline) {
+            this.memory = memory;
+            this.baseline = baseline;
+        }
+
+        @Override
+        public void write(int b) {
+            written(1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            written(len);
+        }
+
+        private void written(int len) {
+            bytes += len;
+            if (bytes >= nextSample) {
+                nextSample += SAMPLE_EVERY_BYTES;
+                System.gc();
+                maxGrowth = Math.max(maxGrowth, memory.getHeapMemoryUsage().getUsed() - baseline);
+                samples++;
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.fitness.activityservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.ActivityMetrics;
+import com.fitness.activityservice.model.ActivityType;
+import com.fitness.activityservice.model.ExportFormat;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ActivityExportServiceTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2020, 1, 1, 7, 0);
+
+    private final ObjectMapper objectMapper = JsonMapper.builder()
+            .findAndAddModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+
+    @Test
+    void writesOneJsonObjectPerLine() throws Exception {
+        stream(Stream.of(activity(0), activity(1)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long count = service().export("user-1", ExportFormat.NDJSON, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(count).isEqualTo(2);
+        assertThat(lines).hasSize(2);
+        assertThat(objectMapper.readTree(lines[1]).get("additionalMetrics").get("route").asText())
+                .isEqualTo("hill, \"north\" side");
+    }
+
+    @Test
+    void csvQuotesValuesThatNeedIt() throws Exception {
+        stream(Stream.of(activity(0)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        service().export("user-1", ExportFormat.CSV, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines[0]).startsWith("id,type,startTime,");
+        assertThat(lines[1]).isEqualTo("id-0,RUNNING,2020-01-01T07:00,30,300,5.0,140.0,,,,"
+                + "\"{\"\"route\"\":\"\"hill, \\\"\"north\\\"\" side\"\"}\",,");
+    }
+
+    private ActivityExportService service() {
+        ActivityExportService service = new ActivityExportService(mongoTemplate, objectMapper);
+        ReflectionTestUtils.setField(service, "batchSize", 500);
+        return service;
+    }
+
+    private void stream(Stream<Activity> activities) {
+        when(mongoTemplate.stream(any(Query.class), eq(Activity.class))).thenReturn(activities);
+    }
+
+    static Activity activity(int i) {
+        ActivityMetrics metrics = ActivityMetrics.builder().distanceKm(5.0).avgHeartRate(140.0).build();
+        metrics.set("route", "hill, \"north\" side");
+        return Activity.builder()
+                .id("id-" + i)
+                .userId("user-1")
+                .type(ActivityType.RUNNING)
+                .duration(30)
+                .caloriesBurned(300)
+                .startTime(START.plusHours(i))
+                .additionalMetrics(metrics)
+                .build();
+    }
+}
@@ -0,0 +1,123 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.MongoTestTemplates;
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.ActivityType;
+import com.fitness.activityservice.model.OutboxEvent;
+import com.fitness.activityservice.model.OutboxStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@Testcontainers(disabledWithoutDocker = true)
+class ActivityOutboxRelayTest {
+
+    @Container
+    static MongoDBContainer mongo = new MongoDBContainer("mongo:7-jammy");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // Every publish is nacked by the broker
+    private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+    private MongoTemplate mongoTemplate;
+    private ActivityOutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = MongoTestTemplates.create(mongo.getReplicaSetUrl(), "activity-" + UUID.randomUUID());
+        doAnswer(invocation -> {
+            CorrelationData correlation = invocation.getArgument(4);
+            correlation.getFuture().complete(new CorrelationData.Confirm(false, "queue full"));
+            return null;
+        }).when(rabbitTemplate).convertAndSend(anyString(), anyString(), any(Object.class),
+                any(MessagePostProcessor.class), any(CorrelationData.class));
+
+        relay = new ActivityOutboxRelay(mongoTemplate, rabbitTemplate, meterRegistry);
+        ReflectionTestUtils.setField(relay, "batchSize", 100);
+        ReflectionTestUtils.setField(relay, "confirmTimeoutMs", 1000L);
+        ReflectionTestUtils.setField(relay, "claimLease", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(relay, "orphanGrace", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(relay, "maxAttempts", 3);
+        ReflectionTestUtils.setField(relay, "initialBackoff", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(relay, "maxBackoff", Duration.ofSeconds(3));
+        relay.registerMetrics();
+
+        Activity activity = mongoTemplate.insert(Activity.builder()
+                .userId("user-1")
+                .type(ActivityType.RUNNING)
+                .duration(30)
+                .startTime(LocalDateTime.now())
+                .build());
+        mongoTemplate.insert(OutboxEvent.builder()
+                .id("event-1")
+                .activityId(activity.getId())
+                .exchange("fitness.exchange")
+                .routingKey("activity.tracking")
+                .payload(activity)
+                .status(OutboxStatus.PENDING)
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+
+    @Test
+    void unconfirmedEventBacksOffBeforeItsNextAttempt() {
+        relay.relay();
+        relay.relay();
+
+        OutboxEvent event = mongoTemplate.findById("event-1", OutboxEvent.class);
+        assertThat(event.getStatus()).isEqualTo(OutboxStatus.PENDING);
+        assertThat(event.getAttempts()).isEqualTo(1);
+        assertThat(event.getNextAttemptAt()).isAfter(LocalDateTime.now());
+        assertThat(event.getClaimToken()).isNull();
+        verify(rabbitTemplate, times(1)).convertAndSend(anyString(), anyString(), any(Object.class),
+                any(MessagePostProcessor.class), any(CorrelationData.class));
+    }
+
+    @Test
+    void eventIsMarkedFailedOnceItRunsOutOfAttempts() {
+        for (int attempt = 0; attempt < 4; attempt++) {
+            relay.relay();
+            // Skip the wait for the backoff
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is("event-1")),
+                    new Update().unset("nextAttemptAt"), OutboxEvent.class);
+        }
+
+        OutboxEvent event = mongoTemplate.findById("event-1", OutboxEvent.class);
+        assertThat(event.getStatus()).isEqualTo(OutboxStatus.FAILED);
+        assertThat(event.getAttempts()).isEqualTo(3);
+        assertThat(event.getFailedAt()).isNotNull();
+        assertThat(meterRegistry.get("activity.outbox.failed").counter().count()).isEqualTo(1);
+        verify(rabbitTemplate, times(3)).convertAndSend(anyString(), anyString(), any(Object.class),
+                any(MessagePostProcessor.class), any(CorrelationData.class));
+    }
+
+    @Test
+    void backoffDoublesUpToTheMaximum() {
+        assertThat(relay.backoff(1)).isEqualTo(Duration.ofSeconds(1));
+        assertThat(relay.backoff(2)).isEqualTo(Duration.ofSeconds(2));
+        assertThat(relay.backoff(3)).isEqualTo(Duration.ofSeconds(3));
+        assertThat(relay.backoff(60)).isEqualTo(Duration.ofSeconds(3));
+    }
+}
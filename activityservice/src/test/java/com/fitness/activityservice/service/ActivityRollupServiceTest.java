@@ -0,0 +1,219 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.MongoTestTemplates;
+import com.fitness.activityservice.dto.ActivityStatsResponse;
+import com.fitness.activityservice.dto.StatsBucket;
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.ActivityRollup;
+import com.fitness.activityservice.model.ActivityType;
+import com.fitness.activityservice.model.Granularity;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+class ActivityRollupServiceTest {
+
+    @Test
+    void weekBucketsStartOnMonday() {
+        assertThat(Granularity.WEEK.bucketStart(LocalDate.of(2024, 5, 5))).isEqualTo(LocalDate.of(2024, 4, 29));
+        assertThat(Granularity.DAY.bucketStart(LocalDate.of(2024, 5, 5))).isEqualTo(LocalDate.of(2024, 5, 5));
+    }
+
+    @Test
+    void statsCombineTypesPerBucket() {
+        LocalDate monday = LocalDate.of(2024, 4, 29);
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.find(any(Query.class), eq(ActivityRollup.class))).thenReturn(List.of(
+                rollup(monday, ActivityType.RUNNING, 2, 60, 600),
+                rollup(monday, ActivityType.YOGA, 1, 45, 150),
+                rollup(monday.plusWeeks(1), ActivityType.RUNNING, 1, 30, 300)));
+
+        ActivityStatsResponse stats = new ActivityRollupService(mongoTemplate)
+                .getStats("user-1", monday, monday.plusWeeks(2), Granularity.WEEK);
+
+        assertThat(stats.getBuckets()).hasSize(2);
+        StatsBucket first = stats.getBuckets().get(0);
+        assertThat(first.getTotal().getCount()).isEqualTo(3);
+        assertThat(first.getTotal().getTotalDuration()).isEqualTo(105);
+        assertThat(first.getTotal().getTotalCalories()).isEqualTo(750);
+        assertThat(first.getByType()).containsOnlyKeys(ActivityType.RUNNING, ActivityType.YOGA);
+    }
+
+    /**
+     * Runs against Mongo, since record() and the rebuild depend on its upsert and update semantics.
+     */
+    @Nested
+    @Testcontainers(disabledWithoutDocker = true)
+    class WithMongo {
+
+        @Container
+        static MongoDBContainer mongo = new MongoDBContainer("mongo:7-jammy");
+
+        private final LocalDateTime start = LocalDateTime.of(2024, 4, 29, 7, 0);
+        private MongoTemplate mongoTemplate;
+        private ActivityRollupService service;
+
+        @BeforeEach
+        void setUp() {
+            mongoTemplate = spy(MongoTestTemplates.create(mongo.getReplicaSetUrl(), "activity-" + UUID.randomUUID()));
+            service = new ActivityRollupService(mongoTemplate);
+            ReflectionTestUtils.setField(service, "settle", Duration.ofMillis(200));
+        }
+
+        @Test
+        void recordAddsToTheDayAndWeekBuckets() {
+            service.record(List.of(activity(ActivityType.RUNNING, start, 30, 300),
+                    activity(ActivityType.RUNNING, start.plusDays(1), 40, 400)));
+            service.record(List.of(activity(ActivityType.RUNNING, start, 20, 200)));
+
+            ActivityRollup week = rollup(Granularity.WEEK, start, ActivityType.RUNNING);
+            assertThat(week.getUserId()).isEqualTo("user-1");
+            assertThat(week.getCount()).isEqualTo(3);
+            assertThat(week.getTotalDuration()).isEqualTo(90);
+            assertThat(week.getTotalCalories()).isEqualTo(900);
+            assertThat(rollup(Granularity.DAY, start, ActivityType.RUNNING).getCount()).isEqualTo(2);
+            assertThat(rollup(Granularity.DAY, start.plusDays(1), ActivityType.RUNNING).getCount()).isEqualTo(1);
+        }
+
+        @Test
+        void rebuildReplacesDriftedTotals() {
+            store(activity(ActivityType.RUNNING, start, 30, 300), activity(ActivityType.YOGA, start, 45, 150));
+            // Recorded twice, as after a retried request, and a bucket whose activity was deleted
+            service.record(List.of(activity(ActivityType.RUNNING, start, 30, 300)));
+            service.record(List.of(activity(ActivityType.CYCLING, start.plusWeeks(1), 60, 500)));
+
+            service.rebuild("user-1");
+
+            assertThat(rollup(Granularity.WEEK, start, ActivityType.RUNNING).getCount()).isEqualTo(1);
+            assertThat(rollup(Granularity.WEEK, start, ActivityType.YOGA).getTotalDuration()).isEqualTo(45);
+            assertThat(rollup(Granularity.WEEK, start.plusWeeks(1), ActivityType.CYCLING)).isNull();
+            assertThat(mongoTemplate.getCollection("activity_rollups").countDocuments(new Document("rebuild", new Document("$exists", true))))
+                    .isZero();
+        }
+
+        @Test
+        void incrementsRecordedDuringTheRebuildAreKept() {
+            store(activity(ActivityType.RUNNING, start, 30, 300));
+            // An activity logged after the rebuild took its snapshot, while it reads the history
+            doAnswer(invocation -> {
+                Activity late = activity(ActivityType.RUNNING, start.plusHours(2), 20, 200);
+                late.setCreatedAt(LocalDateTime.now().plusSeconds(1));
+                store(late);
+                return invocation.callRealMethod();
+            }).when(mongoTemplate).stream(any(Query.class), eq(Activity.class));
+
+            service.rebuild("user-1");
+
+            ActivityRollup week = rollup(Granularity.WEEK, start, ActivityType.RUNNING);
+            assertThat(week.getCount()).isEqualTo(2);
+            assertThat(week.getTotalDuration()).isEqualTo(50);
+            assertThat(week.getTotalCalories()).isEqualTo(500);
+        }
+
+        @Test
+        void activityRecordedDuringTheRebuildIsCountedOnce() {
+            store(activity(ActivityType.RUNNING, start, 30, 300));
+            // Stored before the rebuild began, but recorded only while it reads the history
+            Activity straddling = activity(ActivityType.RUNNING, start.plusHours(2), 20, 200);
+            mongoTemplate.insert(straddling);
+            doAnswer(invocation -> {
+                service.record(List.of(straddling));
+                return invocation.callRealMethod();
+            }).when(mongoTemplate).stream(any(Query.class), eq(Activity.class));
+
+            service.rebuild("user-1");
+
+            ActivityRollup week = rollup(Granularity.WEEK, start, ActivityType.RUNNING);
+            assertThat(week.getCount()).isEqualTo(2);
+            assertThat(week.getTotalDuration()).isEqualTo(50);
+        }
+
+        @Test
+        void recordAfterTheRebuildSkipsActivitiesItCounted() {
+            Activity late = activity(ActivityType.RUNNING, start, 30, 300);
+            mongoTemplate.insert(late);
+
+            service.rebuild("user-1");
+            Activity next = activity(ActivityType.RUNNING, start.plusHours(2), 20, 200);
+            next.setCreatedAt(LocalDateTime.now());
+            mongoTemplate.insert(next);
+            service.record(List.of(late, next));
+
+            ActivityRollup week = rollup(Granularity.WEEK, start, ActivityType.RUNNING);
+            assertThat(week.getCount()).isEqualTo(2);
+            assertThat(week.getTotalDuration()).isEqualTo(50);
+        }
+
+        @Test
+        void rebuildAllLeavesOtherUsersIntact() {
+            store(activity(ActivityType.RUNNING, start, 30, 300));
+            Activity other = activity(ActivityType.YOGA, start, 45, 150);
+            other.setUserId("user-2");
+            store(other);
+
+            service.rebuildAll();
+
+            assertThat(rollup(Granularity.WEEK, start, ActivityType.RUNNING).getCount()).isEqualTo(1);
+            assertThat(mongoTemplate.findById(ActivityRollup.key("user-2", Granularity.WEEK,
+                    Granularity.WEEK.bucketStart(start.toLocalDate()), ActivityType.YOGA), ActivityRollup.class).getCount())
+                    .isEqualTo(1);
+        }
+
+        private void store(Activity... activities) {
+            for (Activity activity : activities) {
+                mongoTemplate.insert(activity);
+            }
+            service.record(List.of(activities));
+        }
+
+        private ActivityRollup rollup(Granularity granularity, LocalDateTime time, ActivityType type) {
+            return mongoTemplate.findById(ActivityRollup.key("user-1", granularity,
+                    granularity.bucketStart(time.toLocalDate()), type), ActivityRollup.class);
+        }
+
+        private static Activity activity(ActivityType type, LocalDateTime startTime, int duration, int calories) {
+            return Activity.builder()
+                    .userId("user-1")
+                    .type(type)
+                    .duration(duration)
+                    .caloriesBurned(calories)
+                    .startTime(startTime)
+                    .createdAt(LocalDateTime.now().minusMinutes(1))
+                    .build();
+        }
+    }
+
+    private static ActivityRollup rollup(LocalDate bucketStart, ActivityType type, long count, long duration, long calories) {
+        return ActivityRollup.builder()
+                .id(ActivityRollup.key("user-1", Granularity.WEEK, bucketStart, type))
+                .userId("user-1")
+                .granularity(Granularity.WEEK)
+                .bucketStart(bucketStart)
+                .type(type)
+                .count(count)
+                .totalDuration(duration)
+                .totalCalories(calories)
+                .build();
+    }
+}
@@ -0,0 +1,104 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.MongoTestTemplates;
+import com.fitness.activityservice.dto.ActivityRequest;
+import com.fitness.activityservice.dto.BatchActivityResponse;
+import com.fitness.activityservice.dto.BatchItemResult;
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.ActivityType;
+import com.fitness.activityservice.model.OutboxEvent;
+import com.fitness.activityservice.repository.ActivityRepository;
+import com.fitness.activityservice.repository.ActivityRepositoryCustomImpl;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.repository.support.MongoRepositoryFactory;
+import org.springframework.data.repository.core.support.RepositoryComposition.RepositoryFragments;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@Testcontainers(disabledWithoutDocker = true)
+class ActivityServiceTest {
+
+    @Container
+    static MongoDBContainer mongo = new MongoDBContainer("mongo:7-jammy");
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void duplicateInBatchKeepsTheOtherItemsAndTheirEvents(boolean transactional) {
+        MongoTemplate mongoTemplate = MongoTestTemplates.create(mongo.getReplicaSetUrl(), "activity-" + UUID.randomUUID());
+        // One activity per user and start time, so a repeated item collides the way a re-sent sync would
+        mongoTemplate.indexOps(Activity.class).ensureIndex(new Index()
+                .on("userId", Sort.Direction.ASC)
+                .on("startTime", Sort.Direction.ASC)
+                .unique());
+        mongoTemplate.createCollection(OutboxEvent.class);
+        ActivityService activityService = activityService(mongoTemplate, transactional);
+
+        LocalDateTime start = LocalDateTime.of(2024, 5, 1, 7, 0);
+        List<ActivityRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            requests.add(request(start.plusHours(i)));
+        }
+        requests.add(request(start.plusHours(1)));
+
+        BatchActivityResponse response = activityService.trackActivities("user-1", requests);
+
+        assertThat(response.getSucceeded()).isEqualTo(4);
+        assertThat(response.getResults().get(4).isSuccess()).isFalse();
+        assertThat(response.getResults().get(4).getError()).isNotBlank();
+        List<String> storedIds = response.getResults().stream()
+                .filter(BatchItemResult::isSuccess)
+                .map(BatchItemResult::getActivityId)
+                .toList();
+        assertThat(mongoTemplate.findAll(Activity.class)).extracting(Activity::getId)
+                .containsExactlyInAnyOrderElementsOf(storedIds);
+        assertThat(mongoTemplate.findAll(OutboxEvent.class)).extracting(OutboxEvent::getActivityId)
+                .containsExactlyInAnyOrderElementsOf(storedIds);
+    }
+
+    private static ActivityService activityService(MongoTemplate mongoTemplate, boolean transactional) {
+        ActivityRepository repository = new MongoRepositoryFactory(mongoTemplate).getRepository(ActivityRepository.class,
+                RepositoryFragments.just(new ActivityRepositoryCustomImpl(mongoTemplate)));
+        UserValidationService userValidationService = mock(UserValidationService.class);
+        when(userValidationService.validateUser(anyString())).thenReturn(true);
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory();
+        if (transactional) {
+            beanFactory.addBean("transactionManager", new MongoTransactionManager(mongoTemplate.getMongoDatabaseFactory()));
+        }
+
+        ActivityService activityService = new ActivityService(repository, userValidationService,
+                new ActivityRollupService(mongoTemplate), mongoTemplate,
+                beanFactory.getBeanProvider(MongoTransactionManager.class));
+        ReflectionTestUtils.setField(activityService, "exchange", "fitness.exchange");
+        ReflectionTestUtils.setField(activityService, "routingKey", "activity.tracking");
+        ReflectionTestUtils.setField(activityService, "bulkRoutingKey", "activity.tracking.bulk");
+        ReflectionTestUtils.setField(activityService, "maxBatchSize", 1000);
+        return activityService;
+    }
+
+    private static ActivityRequest request(LocalDateTime startTime) {
+        ActivityRequest request = new ActivityRequest();
+        request.setType(ActivityType.RUNNING);
+        request.setDuration(30);
+        request.setCaloriesBurned(300);
+        request.setStartTime(startTime);
+        return request;
+    }
+}
@@ -0,0 +1,67 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.dto.ActivityRequest;
+import com.fitness.activityservice.dto.BatchActivityResponse;
+import com.fitness.activityservice.model.ActivityType;
+import com.fitness.activityservice.repository.ActivityRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class ActivityServiceValidationTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final ActivityService activityService;
+
+    ActivityServiceValidationTest() {
+        UserValidationService userValidationService = mock(UserValidationService.class);
+        when(userValidationService.validateUser(anyString())).thenReturn(true);
+        activityService = new ActivityService(mock(ActivityRepository.class), userValidationService,
+                new ActivityRollupService(mongoTemplate), mongoTemplate,
+                new StaticListableBeanFactory().getBeanProvider(MongoTransactionManager.class));
+        ReflectionTestUtils.setField(activityService, "maxBatchSize", 1000);
+    }
+
+    @Test
+    void activityWithoutStartTimeIsRejected() {
+        ActivityRequest request = request();
+        request.setUserId("user-1");
+
+        assertThatThrownBy(() -> activityService.trackActivity(request))
+                .isInstanceOfSatisfying(ResponseStatusException.class, e -> {
+                    assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+                    assertThat(e.getReason()).isEqualTo("Start time is required");
+                });
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void batchItemWithoutStartTimeFailsOnItsOwn() {
+        BatchActivityResponse response = activityService.trackActivities("user-1", List.of(request()));
+
+        assertThat(response.getFailed()).isEqualTo(1);
+        assertThat(response.getResults().get(0).getError()).isEqualTo("Start time is required");
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    private static ActivityRequest request() {
+        ActivityRequest request = new ActivityRequest();
+        request.setType(ActivityType.RUNNING);
+        request.setDuration(30);
+        request.setCaloriesBurned(300);
+        return request;
+    }
+}
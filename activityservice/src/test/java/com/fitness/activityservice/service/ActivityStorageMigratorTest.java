@@ -0,0 +1,57 @@
+package com.fitness.activityservice.service;
+
+import com.fitness.activityservice.MongoTestTemplates;
+import com.fitness.activityservice.model.StorageMigration;
+import com.fitness.activityservice.model.StorageMode;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Testcontainers(disabledWithoutDocker = true)
+class ActivityStorageMigratorTest {
+
+    @Container
+    static MongoDBContainer mongo = new MongoDBContainer("mongo:7-jammy");
+
+    @Test
+    void documentsWithoutStartTimeAreSkippedInsteadOfStallingTheMigration() {
+        MongoTemplate mongoTemplate = MongoTestTemplates.create(mongo.getReplicaSetUrl(), "activity-" + UUID.randomUUID());
+        Instant start = Instant.parse("2024-05-01T07:00:00Z");
+        for (int i = 0; i < 7; i++) {
+            Document activity = new Document("_id", new ObjectId())
+                    .append("userId", "user-" + i % 2)
+                    .append("type", "RUNNING");
+            // Two legacy documents, one of them in the first batch, have no start time
+            if (i != 1 && i != 5) {
+                activity.append("startTime", Date.from(start.plusSeconds(3600L * i)));
+            }
+            mongoTemplate.getCollection("activities").insertOne(activity);
+        }
+        ActivityStorageMigrator migrator = new ActivityStorageMigrator(mongoTemplate);
+        ReflectionTestUtils.setField(migrator, "batchSize", 3);
+
+        StorageMigration migration = migrator.copy("activities", "activities_ts", StorageMode.TIMESERIES);
+
+        assertThat(migration.isCompleted()).isTrue();
+        assertThat(migration.getCopied()).isEqualTo(5);
+        assertThat(migration.getSkipped()).isEqualTo(2);
+        assertThat(mongoTemplate.count(new Query(), "activities_ts")).isEqualTo(5);
+
+        // Running it again, as after the switch, neither fails nor copies anything twice
+        StorageMigration rerun = migrator.copy("activities", "activities_ts", StorageMode.TIMESERIES);
+        assertThat(rerun.getCopied()).isEqualTo(5);
+        assertThat(mongoTemplate.count(new Query(), "activities_ts")).isEqualTo(5);
+    }
+}
@@ -0,0 +1,73 @@
+package com.fitness.activityservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserValidationServiceTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Test
+    void concurrentLookupsShareOneRequest() {
+        UserValidationService service = service(HttpStatus.OK, "true");
+
+        List<CompletableFuture<Boolean>> lookups = IntStream.range(0, 20)
+                .mapToObj(i -> CompletableFuture.supplyAsync(() -> service.validateUser("user-1")))
+                .toList();
+
+        assertThat(lookups).allSatisfy(lookup -> assertThat(lookup.join()).isTrue());
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void unknownUsersAreCachedAsInvalid() {
+        UserValidationService service = service(HttpStatus.NOT_FOUND, "");
+
+        assertThat(service.validateUser("ghost")).isFalse();
+        assertThat(service.validateUser("ghost")).isFalse();
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void serverErrorsAreNotCached() {
+        UserValidationService service = service(HttpStatus.SERVICE_UNAVAILABLE, "");
+
+        assertThat(service.validateUser("user-1")).isFalse();
+        assertThat(service.validateUser("user-1")).isFalse();
+        assertThat(calls).hasValue(2);
+    }
+
+    private UserValidationService service(HttpStatus status, String body) {
+        WebClient webClient = WebClient.builder()
+                .exchangeFunction(request -> {
+                    calls.incrementAndGet();
+                    return Mono.delay(Duration.ofMillis(50)).thenReturn(ClientResponse.create(status)
+                            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                            .body(body)
+                            .build());
+                })
+                .build();
+        UserValidationService service = new UserValidationService(webClient, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "maxSize", 100L);
+        ReflectionTestUtils.setField(service, "positiveTtl", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(service, "negativeTtl", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(service, "refreshAfter", Duration.ofMinutes(5));
+        service.initCache();
+        return service;
+    }
+}
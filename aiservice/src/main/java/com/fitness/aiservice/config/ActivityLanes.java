@@ -0,0 +1,56 @@
+package com.fitness.aiservice.config;
+
+import com.fitness.aiservice.model.ActivityLane;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * The queue and routing key of each {@link ActivityLane} on the activity exchange.
+ */
+@Component
+public class ActivityLanes {
+
+    @Value("${rabbitmq.queue.name}")
+    private String liveQueue;
+
+    @Value("${rabbitmq.routing.key}")
+    private String liveRoutingKey;
+
+    @Value("${rabbitmq.queue.bulk:activity.bulk.queue}")
+    private String bulkQueue;
+
+    @Value("${rabbitmq.routing.bulk:activity.tracking.bulk}")
+    private String bulkRoutingKey;
+
+    @Value("${rabbitmq.queue.replay:activity.replay.queue}")
+    private String replayQueue;
+
+    @Value("${rabbitmq.routing.replay:activity.tracking.replay}")
+    private String replayRoutingKey;
+
+    public String queue(ActivityLane lane) {
+        return switch (lane) {
+            case LIVE -> liveQueue;
+            case BULK -> bulkQueue;
+            case REPLAY -> replayQueue;
+        };
+    }
+
+    public String routingKey(ActivityLane lane) {
+        return switch (lane) {
+            case LIVE -> liveRoutingKey;
+            case BULK -> bulkRoutingKey;
+            case REPLAY -> replayRoutingKey;
+        };
+    }
+
+    /**
+     * The lane consumed from the queue; messages from any other queue count as live.
+     */
+    public ActivityLane lane(String queue) {
+        if (bulkQueue.equals(queue)) {
+            return ActivityLane.BULK;
+        }
+        return replayQueue.equals(queue) ? ActivityLane.REPLAY : ActivityLane.LIVE;
+    }
+}
@@ -1,9 +1,9 @@
 package com.fitness.aiservice.config;
 
 import org.springframework.context.annotation.Configuration;
-import org.springframework.data.mongodb.config.EnableMongoAuditing;
+import org.springframework.data.mongodb.config.EnableReactiveMongoAuditing;
 
 @Configuration
-@EnableMongoAuditing
+@EnableReactiveMongoAuditing
 public class MongoConfig {
 }
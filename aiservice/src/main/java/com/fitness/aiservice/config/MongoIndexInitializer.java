@@ -0,0 +1,44 @@
+package com.fitness.aiservice.config;
+
+import com.fitness.aiservice.model.Recommendation;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MongoIndexInitializer {
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        // One recommendation per activity; also serves the activity detail lookup
+        mongoTemplate.indexOps(Recommendation.class).ensureIndex(new Index()
+                        .on("activityId", Sort.Direction.ASC)
+                        .unique()
+                        .named("activityId_unique"))
+                .doOnNext(name -> log.info("Ensured recommendation index {}", name))
+                .onErrorResume(e -> {
+                    log.error("Could not create the unique activityId index; remove duplicate recommendations and restart: {}",
+                            e.getMessage());
+                    return Mono.empty();
+                })
+                .block();
+
+        // Keyset pagination sorts on createdAt and breaks ties on _id
+        String name = mongoTemplate.indexOps(Recommendation.class).ensureIndex(new Index()
+                        .on("userId", Sort.Direction.ASC)
+                        .on("createdAt", Sort.Direction.DESC)
+                        .on("_id", Sort.Direction.DESC)
+                        .named("userId_createdAt_id"))
+                .block();
+        log.info("Ensured recommendation index {}", name);
+    }
+}
@@ -1,15 +1,23 @@
 package com.fitness.aiservice.config;
 
+import com.fitness.aiservice.model.ActivityLane;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarable;
+import org.springframework.amqp.core.Declarables;
 import org.springframework.amqp.core.DirectExchange;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.List;
+
 
 @Configuration
 public class RabbitMqConfig {
@@ -23,6 +31,9 @@ public class RabbitMqConfig {
     @Value("${rabbitmq.routing.key}")
     private String routingKey;
 
+    @Value("${ai.retry.delays:5s,30s,5m}")
+    private List<String> retryDelays;
+
     @Bean
     public Queue activityQueue(){
         return new Queue(queue, true);
@@ -38,8 +49,52 @@ public class RabbitMqConfig {
         return BindingBuilder.bind(activityQueue).to(activityExchange).with(routingKey);
     }
 
+    /**
+     * The bulk and replay lanes, consumed by the same listener as {@link #activityQueue()} but
+     * admitted to Gemini with lower weight.
+     */
+    @Bean
+    public Declarables activityLaneQueues(ActivityLanes lanes, DirectExchange activityExchange) {
+        List<Declarable> declarables = new ArrayList<>();
+        for (ActivityLane lane : List.of(ActivityLane.BULK, ActivityLane.REPLAY)) {
+            Queue laneQueue = new Queue(lanes.queue(lane), true);
+            declarables.add(laneQueue);
+            declarables.add(BindingBuilder.bind(laneQueue).to(activityExchange).with(lanes.routingKey(lane)));
+        }
+        return new Declarables(declarables);
+    }
+
+    /**
+     * One queue per lane and retry delay, which nothing consumes: a failed message waits there
+     * for the queue's TTL and is then dead-lettered back to its lane. Messages that used up every
+     * delay, or cannot succeed, go to the dead-letter queue until they are replayed.
+     */
+    @Bean
+    public Declarables activityRetryQueues(ActivityLanes lanes) {
+        List<Declarable> queues = new ArrayList<>();
+        for (ActivityLane lane : ActivityLane.values()) {
+            for (String delay : retryDelays) {
+                queues.add(QueueBuilder.durable(retryQueueName(lanes.queue(lane), delay))
+                        .ttl((int) DurationStyle.detectAndParse(delay).toMillis())
+                        .deadLetterExchange(exchange)
+                        .deadLetterRoutingKey(lanes.routingKey(lane))
+                        .build());
+            }
+        }
+        queues.add(QueueBuilder.durable(deadLetterQueueName(queue)).build());
+        return new Declarables(queues);
+    }
+
     @Bean
     public MessageConverter jsonMessageConverter(){
         return new Jackson2JsonMessageConverter();
     }
+
+    public static String retryQueueName(String queue, String delay) {
+        return queue + ".retry." + delay;
+    }
+
+    public static String deadLetterQueueName(String queue) {
+        return queue + ".dlq";
+    }
 }
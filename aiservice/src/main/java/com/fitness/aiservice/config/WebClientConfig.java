@@ -1,15 +1,59 @@
 package com.fitness.aiservice.config;
 
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.loadbalancer.reactive.LoadBalancedExchangeFilterFunction;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
 
 @Configuration
 public class WebClientConfig {
 
+    /**
+     * The Gemini client, on its own connection pool sized for hundreds of concurrent LLM calls.
+     * Requests beyond max-connections queue for a connection instead of failing, and a call that
+     * gets no response within response-timeout fails with a timeout rather than holding its
+     * connection forever. Boot hands each client its own builder, so the pool stays with this one.
+     */
     @Bean
-    public WebClient.Builder webClientBuilder() {
-        return WebClient.builder();
+    public WebClient geminiWebClient(
+            WebClient.Builder webClientBuilder,
+            @Value("${gemini.http.max-connections:256}") int maxConnections,
+            @Value("${gemini.http.connect-timeout:5s}") Duration connectTimeout,
+            @Value("${gemini.http.response-timeout:60s}") Duration responseTimeout,
+            @Value("${gemini.http.max-idle-time:30s}") Duration maxIdleTime) {
+        ConnectionProvider provider = ConnectionProvider.builder("gemini")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(-1)
+                .pendingAcquireTimeout(responseTimeout)
+                .maxIdleTime(maxIdleTime)
+                .evictInBackground(maxIdleTime)
+                .metrics(true)
+                .build();
+        HttpClient httpClient = HttpClient.create(provider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .responseTimeout(responseTimeout);
+        return webClientBuilder
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
     }
-}
 
+    /**
+     * Resolves ACTIVITY-SERVICE through the load balancer with a filter, rather than a
+     * {@code @LoadBalanced} builder bean, which would replace Boot's auto-configured builder.
+     */
+    @Bean
+    public WebClient activityServiceWebClient(WebClient.Builder webClientBuilder,
+                                              LoadBalancedExchangeFilterFunction loadBalancer) {
+        return webClientBuilder
+                .baseUrl("http://ACTIVITY-SERVICE")
+                .filter(loadBalancer)
+                .build();
+    }
+}
@@ -0,0 +1,77 @@
+package com.fitness.aiservice.controller;
+
+import com.fitness.aiservice.dto.BackfillProgress;
+import com.fitness.aiservice.service.DeadLetterReplayer;
+import com.fitness.aiservice.service.RecommendationBackfill;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * Operational endpoints. They live outside /api so the gateway does not route them.
+ */
+@RestController
+@RequestMapping("/internal/recommendations")
+@RequiredArgsConstructor
+public class InternalRecommendationController {
+    private final DeadLetterReplayer deadLetterReplayer;
+    private final RecommendationBackfill recommendationBackfill;
+
+    @GetMapping("/dead-letters")
+    public ResponseEntity<Map<String, Long>> getDeadLetters() {
+        return ResponseEntity.ok(Map.of("depth", deadLetterReplayer.depth()));
+    }
+
+    /**
+     * Sends up to limit dead-lettered activities back for processing, perSecond at a time.
+     */
+    @PostMapping("/dead-letters/replay")
+    public ResponseEntity<Void> replayDeadLetters(@RequestParam(defaultValue = "1000") int limit,
+                                                  @RequestParam(defaultValue = "5") double perSecond) {
+        if (limit < 1 || perSecond <= 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!deadLetterReplayer.replay(limit, perSecond)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.accepted().build();
+    }
+
+    @GetMapping("/backfill")
+    public Mono<ResponseEntity<BackfillProgress>> getBackfill() {
+        return recommendationBackfill.progress()
+                .map(ResponseEntity::ok)
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Regenerates recommendations older than the current version, resuming the last run unless
+     * restart is set.
+     */
+    @PostMapping("/backfill")
+    public Mono<ResponseEntity<Void>> startBackfill(@RequestParam(defaultValue = "false") boolean restart) {
+        return recommendationBackfill.start(restart)
+                .map(started -> started
+                        ? ResponseEntity.accepted().<Void>build()
+                        : ResponseEntity.status(HttpStatus.CONFLICT).<Void>build());
+    }
+
+    /**
+     * Stops the backfill running on this instance after the page in progress; POST /backfill resumes it.
+     */
+    @PostMapping("/backfill/stop")
+    public ResponseEntity<Void> stopBackfill() {
+        if (!recommendationBackfill.stop()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        return ResponseEntity.accepted().build();
+    }
+}
@@ -1,13 +1,21 @@
 package com.fitness.aiservice.controller;
 
+import com.fitness.aiservice.dto.RecommendationPage;
+import com.fitness.aiservice.dto.RecommendationSummary;
 import com.fitness.aiservice.model.Recommendation;
 import com.fitness.aiservice.service.RecommendationService;
+import com.fitness.aiservice.service.RecommendationStreamService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
 
@@ -16,14 +24,47 @@ import java.util.List;
 @RequestMapping("/api/recommendations")
 public class RecommendationController {
     private final RecommendationService recommendationService;
+    private final RecommendationStreamService recommendationStreamService;
 
+    /**
+     * Returns one page of the user's recommendations, newest first. The body stays a plain list
+     * for existing clients; the cursor for the next page is returned in the X-Next-Cursor header.
+     */
     @GetMapping("/user/{userId}")
-    public ResponseEntity<List<Recommendation>> getUserRecommendation(@PathVariable String userId) {
-        return ResponseEntity.ok(recommendationService.getUserRecommendation(userId));
+    public Mono<ResponseEntity<List<Recommendation>>> getUserRecommendation(
+            @PathVariable String userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        return recommendationService.getUserRecommendations(userId, cursor, limit).map(RecommendationController::toResponse);
+    }
+
+    /**
+     * Like {@link #getUserRecommendation}, but returns only what a list view shows of each recommendation.
+     */
+    @GetMapping("/user/{userId}/summaries")
+    public Mono<ResponseEntity<List<RecommendationSummary>>> getUserRecommendationSummaries(
+            @PathVariable String userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        return recommendationService.getUserRecommendationSummaries(userId, cursor, limit)
+                .map(RecommendationController::toResponse);
     }
 
     @GetMapping("/activity/{activityId}")
-    public ResponseEntity<Recommendation>  getActivityRecommendation(@PathVariable String activityId) {
-        return ResponseEntity.ok(recommendationService.getActivityRecommendation(activityId));
+    public Mono<ResponseEntity<Recommendation>>  getActivityRecommendation(@PathVariable String activityId) {
+        return recommendationService.getActivityRecommendation(activityId).map(ResponseEntity::ok);
+    }
+
+    @GetMapping(value = "/activity/{activityId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> streamActivityRecommendation(@PathVariable String activityId) {
+        return recommendationStreamService.stream(activityId);
+    }
+
+    private static <T> ResponseEntity<List<T>> toResponse(RecommendationPage<T> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header("X-Next-Cursor", page.getNextCursor());
+        }
+        return response.body(page.getItems());
     }
 }
@@ -0,0 +1,19 @@
+package com.fitness.aiservice.dto;
+
+import com.fitness.aiservice.model.Activity;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * A page of the activity service's activity scan; nextCursor is null on the last page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ActivityScanPage {
+    private List<Activity> items;
+    private String nextCursor;
+}
@@ -0,0 +1,25 @@
+package com.fitness.aiservice.dto;
+
+import com.fitness.aiservice.model.BackfillStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Where the recommendation backfill stands. rate is activities scanned per second since this
+ * instance started or resumed the run; etaSeconds is null while it cannot be estimated.
+ */
+public record BackfillProgress(BackfillStatus status,
+                               String version,
+                               String cursor,
+                               long scanned,
+                               long regenerated,
+                               long skipped,
+                               long failed,
+                               long total,
+                               double percent,
+                               double rate,
+                               Long etaSeconds,
+                               LocalDateTime startedAt,
+                               LocalDateTime updatedAt,
+                               String error) {
+}
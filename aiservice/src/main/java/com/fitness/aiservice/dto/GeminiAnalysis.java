@@ -0,0 +1,24 @@
+package com.fitness.aiservice.dto;
+
+import java.util.List;
+
+/**
+ * The JSON the prompts ask Gemini for. In a batch answer each item also carries the activityId
+ * it belongs to.
+ */
+public record GeminiAnalysis(
+        String activityId,
+        Analysis analysis,
+        List<Improvement> improvements,
+        List<Suggestion> suggestions,
+        List<String> safety) {
+
+    public record Analysis(String overall, String pace, String heartRate, String caloriesBurned) {
+    }
+
+    public record Improvement(String area, String recommendation) {
+    }
+
+    public record Suggestion(String workout, String description) {
+    }
+}
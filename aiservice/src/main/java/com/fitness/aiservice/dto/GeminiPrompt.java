@@ -0,0 +1,16 @@
+package com.fitness.aiservice.dto;
+
+/**
+ * A prompt split into its static instruction block, which is the same for every activity of a
+ * template and can be cached by Gemini, and the content that describes the activities.
+ */
+public record GeminiPrompt(String instructions, String content) {
+
+    public static GeminiPrompt of(String text) {
+        return new GeminiPrompt("", text);
+    }
+
+    public String text() {
+        return instructions.isEmpty() ? content : instructions + content;
+    }
+}
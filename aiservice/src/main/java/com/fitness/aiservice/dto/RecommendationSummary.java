@@ -0,0 +1,16 @@
+package com.fitness.aiservice.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * A recommendation as shown in a list, without the analysis text and advice lists.
+ */
+@Data
+public class RecommendationSummary {
+    private String id;
+    private String activityId;
+    private String activityType;
+    private LocalDateTime createdAt;
+}
@@ -2,7 +2,6 @@ package com.fitness.aiservice.model;
 
 import lombok.Data;
 import java.time.LocalDateTime;
-import java.util.Map;
 
 @Data
 public class Activity {
@@ -12,7 +11,7 @@ public class Activity {
     private Integer duration;
     private Integer caloriesBurned;
     private LocalDateTime startTime;
-    private Map<String, Object> additionalMetrics;
+    private ActivityMetrics additionalMetrics;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 }
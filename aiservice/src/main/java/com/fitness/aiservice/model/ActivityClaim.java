@@ -0,0 +1,28 @@
+package com.fitness.aiservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Marks an activity as taken by one consumer, so redelivered or duplicate messages for it skip
+ * the Gemini call. A PROCESSING claim whose lease has run out can be taken over.
+ */
+@Document(collection = "activity_claims")
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ActivityClaim {
+    @Id
+    private String activityId;
+    private ActivityClaimStatus status;
+    private String owner;
+    private LocalDateTime claimedUntil;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,6 @@
+package com.fitness.aiservice.model;
+
+public enum ActivityClaimStatus {
+    PROCESSING,
+    DONE
+}
@@ -0,0 +1,19 @@
+package com.fitness.aiservice.model;
+
+/**
+ * The queue an activity message arrived on, which says how urgently it needs a recommendation.
+ */
+public enum ActivityLane {
+    /**
+     * Activities users just logged.
+     */
+    LIVE,
+    /**
+     * Batch ingestion such as wearable syncs and imports.
+     */
+    BULK,
+    /**
+     * Reprocessing: replayed dead letters and backfills.
+     */
+    REPLAY
+}
@@ -0,0 +1,134 @@
+package com.fitness.aiservice.model;
+
+import com.fasterxml.jackson.annotation.JsonAnyGetter;
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Measurements recorded with an activity, as published by the activity service. Well-known
+ * metrics are typed fields; any other key is kept in an overflow map, so messages from services
+ * still sending the free-form map deserialize as well. A metric sent under a legacy name is
+ * written back under it.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+// Every metric is read and written through the flat any-setter and any-getter
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.NONE, getterVisibility = JsonAutoDetect.Visibility.NONE,
+        isGetterVisibility = JsonAutoDetect.Visibility.NONE, setterVisibility = JsonAutoDetect.Visibility.NONE)
+public class ActivityMetrics {
+    // Older clients use these names for the typed metrics
+    private static final Map<String, String> ALIASES = Map.of(
+            "distance", "distanceKm",
+            "heartRate", "avgHeartRate",
+            "averageHeartRate", "avgHeartRate",
+            "pace", "paceMinPerKm",
+            "elevation", "elevationGainM",
+            "elevationGain", "elevationGainM");
+
+    private Double distanceKm;
+    private Double avgHeartRate;
+    private Double maxHeartRate;
+    private Double paceMinPerKm;
+    private Double elevationGainM;
+
+    @Builder.Default
+    @Setter(AccessLevel.NONE)
+    private Map<String, Object> other = new LinkedHashMap<>();
+
+    // The legacy name a typed metric was sent under, by typed name
+    @Builder.Default
+    @Setter(AccessLevel.NONE)
+    private Map<String, String> aliases = new HashMap<>();
+
+    /**
+     * Sets a metric by its typed name or one of its legacy aliases, remembering the alias. Unknown
+     * keys, and values that are not numbers, go to the overflow map unchanged.
+     */
+    @JsonAnySetter
+    public void set(String key, Object value) {
+        String name = ALIASES.getOrDefault(key, key);
+        Number number = toNumber(value);
+        if (number == null || !setTyped(name, number)) {
+            other.put(key, value);
+        } else if (name.equals(key)) {
+            aliases.remove(name);
+        } else {
+            aliases.put(name, key);
+        }
+    }
+
+    /**
+     * The metrics that are present under the names they were sent with, typed ones first.
+     */
+    @JsonAnyGetter
+    public Map<String, Object> asSent() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        putIfPresent(metrics, aliases.getOrDefault("distanceKm", "distanceKm"), distanceKm);
+        putIfPresent(metrics, aliases.getOrDefault("avgHeartRate", "avgHeartRate"), avgHeartRate);
+        putIfPresent(metrics, aliases.getOrDefault("maxHeartRate", "maxHeartRate"), maxHeartRate);
+        putIfPresent(metrics, aliases.getOrDefault("paceMinPerKm", "paceMinPerKm"), paceMinPerKm);
+        putIfPresent(metrics, aliases.getOrDefault("elevationGainM", "elevationGainM"), elevationGainM);
+        metrics.putAll(other);
+        return metrics;
+    }
+
+    /**
+     * The metrics that are present under their typed names, typed ones first, for use in prompts.
+     */
+    public Map<String, Object> asMap() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        putIfPresent(metrics, "distanceKm", distanceKm);
+        putIfPresent(metrics, "avgHeartRate", avgHeartRate);
+        putIfPresent(metrics, "maxHeartRate", maxHeartRate);
+        putIfPresent(metrics, "paceMinPerKm", paceMinPerKm);
+        putIfPresent(metrics, "elevationGainM", elevationGainM);
+        metrics.putAll(other);
+        return metrics;
+    }
+
+    private static void putIfPresent(Map<String, Object> metrics, String key, Object value) {
+        if (value != null) {
+            metrics.put(key, value);
+        }
+    }
+
+    private boolean setTyped(String name, Number number) {
+        switch (name) {
+            case "distanceKm" -> distanceKm = number.doubleValue();
+            case "avgHeartRate" -> avgHeartRate = number.doubleValue();
+            case "maxHeartRate" -> maxHeartRate = number.doubleValue();
+            case "paceMinPerKm" -> paceMinPerKm = number.doubleValue();
+            case "elevationGainM" -> elevationGainM = number.doubleValue();
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Number toNumber(Object value) {
+        if (value instanceof Number number) {
+            return number;
+        }
+        if (value instanceof String text) {
+            try {
+                return Double.parseDouble(text.trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+}
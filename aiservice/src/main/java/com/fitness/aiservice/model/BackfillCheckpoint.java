@@ -0,0 +1,46 @@
+package com.fitness.aiservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * How far a backfill has got, saved after every page so it resumes there after a stop or a crash.
+ * A RUNNING checkpoint whose lease has run out belongs to an instance that died and can be taken over.
+ */
+@Document(collection = "backfill_checkpoints")
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BackfillCheckpoint {
+    @Id
+    private String id;
+    private BackfillStatus status;
+    /**
+     * The recommendation version the run brings activities up to.
+     */
+    private String version;
+    /**
+     * Id of the last activity of the last finished page; null before the first.
+     */
+    private String cursor;
+    private long scanned;
+    private long regenerated;
+    private long skipped;
+    private long failed;
+    /**
+     * Estimated number of activities when the run started.
+     */
+    private long total;
+    private String owner;
+    private LocalDateTime leaseUntil;
+    private LocalDateTime startedAt;
+    private LocalDateTime updatedAt;
+    private String error;
+}
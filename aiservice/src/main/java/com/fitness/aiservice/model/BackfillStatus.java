@@ -0,0 +1,8 @@
+package com.fitness.aiservice.model;
+
+public enum BackfillStatus {
+    RUNNING,
+    STOPPED,
+    FAILED,
+    COMPLETED
+}
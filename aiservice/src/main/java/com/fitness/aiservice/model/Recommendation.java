@@ -21,6 +21,10 @@ public class Recommendation {
     private List<String> improvements;
     private List<String> suggestions;
     private List<String> safety;
+    /**
+     * The {@code ai.recommendations.version} it was generated under; missing on older ones.
+     */
+    private String version;
 
     @CreatedDate
     private LocalDateTime createdAt;
@@ -0,0 +1,12 @@
+package com.fitness.aiservice.repository;
+
+import com.fitness.aiservice.model.Recommendation;
+import reactor.core.publisher.Flux;
+
+public interface RecommendationRepositoryCustom {
+    /**
+     * Returns up to {@code limit} recommendations of a user, newest first, strictly after {@code after}.
+     * With {@code summary} set, documents are projected to the fields of a list view.
+     */
+    Flux<Recommendation> findPage(String userId, RecommendationCursor after, int limit, boolean summary);
+}
@@ -0,0 +1,35 @@
+package com.fitness.aiservice.repository;
+
+import com.fitness.aiservice.model.Recommendation;
+import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import reactor.core.publisher.Flux;
+
+@RequiredArgsConstructor
+public class RecommendationRepositoryCustomImpl implements RecommendationRepositoryCustom {
+    private final ReactiveMongoTemplate mongoTemplate;
+
+    @Override
+    public Flux<Recommendation> findPage(String userId, RecommendationCursor after, int limit, boolean summary) {
+        Criteria criteria = Criteria.where("userId").is(userId);
+        if (after != null) {
+            Object afterId = ObjectId.isValid(after.id()) ? new ObjectId(after.id()) : after.id();
+            criteria = new Criteria().andOperator(criteria, new Criteria().orOperator(
+                    Criteria.where("createdAt").lt(after.createdAt()),
+                    Criteria.where("createdAt").is(after.createdAt()).and("_id").lt(afterId)));
+        }
+
+        // Served by the {userId: 1, createdAt: -1, _id: -1} index created at startup
+        Query query = new Query(criteria)
+                .with(Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("_id")))
+                .limit(limit);
+        if (summary) {
+            query.fields().include("activityId", "userId", "activityType", "createdAt");
+        }
+        return mongoTemplate.find(query, Recommendation.class);
+    }
+}
@@ -1,84 +1,135 @@
 package com.fitness.aiservice.service;
 
+import com.fitness.aiservice.dto.GeminiAnalysis;
 import com.fitness.aiservice.model.Activity;
 import com.fitness.aiservice.model.Recommendation;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class ActivityAIService {
+    static final String DEFAULT_ANALYSIS = "Unable to generate detailed analysis";
+
     private final GeminiService geminiService;
+    private final PromptBuilder promptBuilder;
+
+    public Mono<Recommendation> generateRecommendation(Activity activity){
+        return geminiService.generate(promptBuilder.single(activity))
+                .map(aiResponse -> processAiResponse(activity, aiResponse));
+    }
+
+    /**
+     * Streams the raw text of Gemini's answer for the activity as it is generated; pass the
+     * concatenated text to {@link #processText} once the stream completes.
+     */
+    public Flux<String> streamRecommendation(Activity activity) {
+        return geminiService.stream(promptBuilder.single(activity));
+    }
 
-    public Recommendation generateRecommendation(Activity activity){
-        String prompt = createPromptForActivity(activity);
-        String aiResponse = geminiService.getAnswer(prompt);
-        log.info("AI Response: {}", aiResponse);
-        return processAiResponse(activity, aiResponse);
+    Recommendation processAiResponse(Activity activity, String aiResponse){
+        try{
+            return processText(activity, GeminiResponseParser.text(aiResponse));
+        }catch(Exception e){
+            log.warn("Could not read Gemini response for activity {}: {}", activity.getId(), e.getMessage());
+            return createDefaultRecommendation(activity);
+        }
     }
 
-    private Recommendation processAiResponse(Activity activity, String aiResponse){
+    /**
+     * Turns the text Gemini generated for the activity into a recommendation.
+     */
+    public Recommendation processText(Activity activity, String text) {
         try{
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode rootNode = mapper.readTree(aiResponse);
-            JsonNode textNode = rootNode.path("candidates")
-                    .get(0)
-                    .path("content")
-                    .path("parts")
-                    .get(0)
-                    .path("text");
-
-            String jsonContent = textNode.asText()
-                    .replaceAll("```json\\n","")
-                    .replaceAll("\n```","")
-                    .trim();
-
-            log.info("Parsed AI Response: {}", jsonContent);
-
-            JsonNode analysisJson = mapper.readTree(jsonContent);
-            JsonNode analysisNode = analysisJson.path("analysis");
-            StringBuilder fullAnalysis = new StringBuilder();
-            addAnalysisSection(fullAnalysis, analysisNode, "overall", "Overall:");
-            addAnalysisSection(fullAnalysis, analysisNode, "pace", "Pace:");
-            addAnalysisSection(fullAnalysis, analysisNode, "heartRate", "Heart Rate:");
-            addAnalysisSection(fullAnalysis, analysisNode, "caloriesBurned", "Calories:");
-
-            List<String> improvements = extractImprovements(analysisJson.path("improvements"));
-            List<String> suggestions = extractSuggestions(analysisJson.path("suggestions"));
-            List<String> safety = extractSafetyGuidelines(analysisJson.path("safety"));
-
-            return Recommendation.builder()
-                    .activityId(activity.getId())
-                    .userId(activity.getUserId())
-                    .activityType(activity.getType())
-                    .recommendation(fullAnalysis.toString().trim())
-                    .improvements(improvements)
-                    .suggestions(suggestions)
-                    .safety(safety)
-                    .createdAt(LocalDateTime.now())
-                    .build();
+            GeminiAnalysis analysis = GeminiResponseParser.analysis(text);
+            if (log.isDebugEnabled()) {
+                log.debug("Gemini analysis for activity {}: {}", activity.getId(), analysis);
+            }
+            return toRecommendation(activity, analysis);
         }catch(Exception e){
-            e.printStackTrace();
+            log.warn("Could not parse Gemini analysis for activity {}: {}", activity.getId(), e.getMessage());
             return createDefaultRecommendation(activity);
         }
     }
 
+    /**
+     * Asks for recommendations for several activities in one prompt, so the format instructions
+     * and the round trip are paid once. Returns the recommendations that came back, keyed by
+     * activity id; activities missing from the map need a call of their own. Fails if the call
+     * fails or its answer cannot be parsed.
+     */
+    public Mono<Map<String, Recommendation>> generateRecommendations(List<Activity> activities) {
+        return geminiService.generate(promptBuilder.batch(activities))
+                .flatMap(aiResponse -> Mono.fromCallable(() -> processBatchResponse(activities, aiResponse)));
+    }
+
+    Map<String, Recommendation> processBatchResponse(List<Activity> activities, String aiResponse) throws Exception {
+        List<GeminiAnalysis> items = GeminiResponseParser.analyses(GeminiResponseParser.text(aiResponse));
+        Map<String, Activity> byId = new HashMap<>();
+        activities.forEach(activity -> byId.put(activity.getId(), activity));
+
+        Map<String, Recommendation> recommendations = new HashMap<>();
+        for (GeminiAnalysis item : items) {
+            Activity activity = item == null ? null : byId.get(item.activityId());
+            if (activity != null && item.analysis() != null) {
+                recommendations.put(activity.getId(), toRecommendation(activity, item));
+            }
+        }
+        return recommendations;
+    }
+
+    private Recommendation toRecommendation(Activity activity, GeminiAnalysis analysis) {
+        StringBuilder fullAnalysis = new StringBuilder();
+        GeminiAnalysis.Analysis sections = analysis.analysis();
+        if (sections != null) {
+            addAnalysisSection(fullAnalysis, sections.overall(), "Overall:");
+            addAnalysisSection(fullAnalysis, sections.pace(), "Pace:");
+            addAnalysisSection(fullAnalysis, sections.heartRate(), "Heart Rate:");
+            addAnalysisSection(fullAnalysis, sections.caloriesBurned(), "Calories:");
+        }
+
+        List<String> improvements = extractImprovements(analysis.improvements());
+        List<String> suggestions = extractSuggestions(analysis.suggestions());
+        List<String> safety = extractSafetyGuidelines(analysis.safety());
+
+        return Recommendation.builder()
+                .activityId(activity.getId())
+                .userId(activity.getUserId())
+                .activityType(activity.getType())
+                .recommendation(fullAnalysis.toString().trim())
+                .improvements(improvements)
+                .suggestions(suggestions)
+                .safety(safety)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    /**
+     * Whether the recommendation is the generic fallback used when Gemini's answer could not be parsed.
+     */
+    public static boolean isDefault(Recommendation recommendation) {
+        return DEFAULT_ANALYSIS.equals(recommendation.getRecommendation());
+    }
+
     private Recommendation createDefaultRecommendation(Activity activity) {
         return Recommendation.builder()
                 .activityId(activity.getId())
                 .userId(activity.getUserId())
                 .activityType(activity.getType())
-                .recommendation("Unable to generate detailed analysis")
+                .recommendation(DEFAULT_ANALYSIS)
                 .improvements(Collections.singletonList("Continue with your current routine"))
                 .suggestions(Collections.singletonList("Consider consulting a fitness professional"))
                 .safety(Arrays.asList(
@@ -90,23 +141,23 @@ public class ActivityAIService {
                 .build();
     }
 
-    private List<String> extractSafetyGuidelines(JsonNode safetyNode) {
+    private List<String> extractSafetyGuidelines(List<String> safetyItems) {
         List<String> safety = new ArrayList<>();
-        if(safetyNode.isArray()){
-            safetyNode.forEach(item -> safety.add(item.asText()));
+        if(safetyItems != null){
+            safetyItems.forEach(item -> safety.add(Objects.toString(item, "")));
         }
         return safety.isEmpty() ?
                 Collections.singletonList("Follow general safety guidelines") :
                 safety;
     }
 
-    private List<String> extractSuggestions(JsonNode suggestionsNode) {
+    private List<String> extractSuggestions(List<GeminiAnalysis.Suggestion> suggestionItems) {
         List<String> suggestions = new ArrayList<>();
-        if(suggestionsNode.isArray()){
-            suggestionsNode.forEach(suggestion ->{
-                String workout = suggestion.path("workout").asText();
-                String description = suggestion.path("description").asText();
-                suggestions.add(String.format("%s: %s", workout, description));
+        if(suggestionItems != null){
+            suggestionItems.forEach(suggestion ->{
+                if (suggestion != null) {
+                    suggestions.add(pair(suggestion.workout(), suggestion.description()));
+                }
             });
         }
         return suggestions.isEmpty() ?
@@ -114,13 +165,13 @@ public class ActivityAIService {
                 suggestions;
     }
 
-    private List<String> extractImprovements(JsonNode improvementsNode) {
+    private List<String> extractImprovements(List<GeminiAnalysis.Improvement> improvementItems) {
         List<String> improvements = new ArrayList<>();
-        if(improvementsNode.isArray()){
-            improvementsNode.forEach(improvement ->{
-                String area = improvement.path("area").asText();
-                String detail = improvement.path("recommendation").asText();
-                improvements.add(String.format("%s: %s", area, detail));
+        if(improvementItems != null){
+            improvementItems.forEach(improvement ->{
+                if (improvement != null) {
+                    improvements.add(pair(improvement.area(), improvement.recommendation()));
+                }
             });
         }
         return improvements.isEmpty() ?
@@ -128,55 +179,15 @@ public class ActivityAIService {
                 improvements;
     }
 
-    private void addAnalysisSection(StringBuilder fullAnalysis, JsonNode analysisNode, String key, String prefix) {
-        if(!analysisNode.path(key).isMissingNode()){
-            fullAnalysis.append(prefix)
-                    .append(analysisNode.path(key).asText())
-                    .append("\n\n");
-        }
+    private static String pair(String name, String detail) {
+        return Objects.toString(name, "") + ": " + Objects.toString(detail, "");
     }
 
-    private String createPromptForActivity(Activity activity) {
-        return String.format("""
-        Analyze this fitness activity and provide detailed recommendations in the following EXACT JSON format:
-        {
-          "analysis": {
-            "overall": "Overall analysis here",
-            "pace": "Pace analysis here",
-            "heartRate": "Heart rate analysis here",
-            "caloriesBurned": "Calories analysis here"
-          },
-          "improvements": [
-            {
-              "area": "Area name",
-              "recommendation": "Detailed recommendation"
-            }
-          ],
-          "suggestions": [
-            {
-              "workout": "Workout name",
-              "description": "Detailed workout description"
-            }
-          ],
-          "safety": [
-            "Safety point 1",
-            "Safety point 2"
-          ]
+    private void addAnalysisSection(StringBuilder fullAnalysis, String value, String prefix) {
+        if(value != null){
+            fullAnalysis.append(prefix)
+                    .append(value)
+                    .append("\n\n");
         }
-
-        Analyze this activity:
-        Activity Type: %s
-        Duration: %d minutes
-        Calories Burned: %d
-        Additional Metrics: %s
-        
-        Provide detailed analysis focusing on performance, improvements, next workout suggestions, and safety guidelines.
-        Ensure the response follows the EXACT JSON format shown above.
-        """,
-                activity.getType(),
-                activity.getDuration(),
-                activity.getCaloriesBurned(),
-                activity.getAdditionalMetrics()
-        );
     }
 }
@@ -0,0 +1,158 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.ActivityMetrics;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.DoubleSummaryStatistics;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.DoubleStream;
+
+/**
+ * A key under which activities that would get the same advice compare equal: the type, duration
+ * and calories rounded to coarse buckets, and each metric rounded to a bucket of its own.
+ * Overflow metrics are summarized the way {@link PromptBuilder} describes them to Gemini, with
+ * numbers rounded to two significant digits, series reduced to their length and range, and text
+ * cut short. The summaries are hashed, so the key stays short however many of them there are.
+ */
+public final class ActivityFingerprint {
+    private static final int DURATION_BUCKET_MINUTES = 5;
+    private static final int CALORIES_BUCKET = 25;
+    private static final double DISTANCE_BUCKET_KM = 0.5;
+    private static final int HEART_RATE_BUCKET = 5;
+    private static final double PACE_BUCKET_MIN_PER_KM = 0.25;
+    private static final double ELEVATION_BUCKET_M = 25;
+    private static final int SIGNIFICANT_DIGITS = 2;
+    private static final int MAX_TEXT_LENGTH = 32;
+    private static final int MAX_POINT_FIELDS = 4;
+
+    private ActivityFingerprint() {
+    }
+
+    public static String of(Activity activity) {
+        StringBuilder key = new StringBuilder(64)
+                .append(activity.getType())
+                .append("|d").append(bucket(activity.getDuration(), DURATION_BUCKET_MINUTES))
+                .append("|c").append(bucket(activity.getCaloriesBurned(), CALORIES_BUCKET));
+        ActivityMetrics metrics = activity.getAdditionalMetrics();
+        if (metrics != null) {
+            append(key, "dist", bucket(metrics.getDistanceKm(), DISTANCE_BUCKET_KM));
+            append(key, "hr", bucket(metrics.getAvgHeartRate(), HEART_RATE_BUCKET));
+            append(key, "hrMax", bucket(metrics.getMaxHeartRate(), HEART_RATE_BUCKET));
+            append(key, "pace", bucket(metrics.getPaceMinPerKm(), PACE_BUCKET_MIN_PER_KM));
+            append(key, "elev", bucket(metrics.getElevationGainM(), ELEVATION_BUCKET_M));
+            if (!metrics.getOther().isEmpty()) {
+                StringBuilder other = new StringBuilder();
+                for (Map.Entry<String, Object> entry : new TreeMap<>(metrics.getOther()).entrySet()) {
+                    append(other, entry.getKey(), summarize(entry.getValue()));
+                }
+                append(key, "x", hash(other.toString()));
+            }
+        }
+        return key.toString();
+    }
+
+    private static void append(StringBuilder key, String name, String value) {
+        if (value != null) {
+            key.append('|').append(name).append('=').append(value);
+        }
+    }
+
+    /**
+     * A coarse description of an overflow value, equal for values Gemini would see as the same.
+     */
+    static String summarize(Object value) {
+        if (value == null) {
+            return "?";
+        }
+        if (value instanceof Number number) {
+            return round(number.doubleValue());
+        }
+        if (value.getClass().isArray()) {
+            List<Object> items = new ArrayList<>(Array.getLength(value));
+            for (int i = 0; i < Array.getLength(value); i++) {
+                items.add(Array.get(value, i));
+            }
+            return summarize(items);
+        }
+        if (value instanceof Collection<?> items) {
+            if (items.stream().allMatch(Number.class::isInstance)) {
+                return "n" + items.size() + range(items.stream().mapToDouble(item -> ((Number) item).doubleValue()));
+            }
+            if (items.stream().allMatch(Map.class::isInstance)) {
+                return points(items);
+            }
+            return "n" + items.size();
+        }
+        if (value instanceof Map<?, ?> map) {
+            StringBuilder out = new StringBuilder("{");
+            stringKeys(map).forEach((key, item) -> append(out, key, summarize(item)));
+            return out.append('}').toString();
+        }
+        String text = String.valueOf(value).trim();
+        return text.length() <= MAX_TEXT_LENGTH ? text : text.substring(0, MAX_TEXT_LENGTH);
+    }
+
+    private static String points(Collection<?> items) {
+        Map<String, DoubleStream.Builder> fields = new TreeMap<>();
+        for (Object item : items) {
+            stringKeys((Map<?, ?>) item).forEach((field, value) -> {
+                if (value instanceof Number number) {
+                    fields.computeIfAbsent(field, name -> DoubleStream.builder()).add(number.doubleValue());
+                }
+            });
+        }
+        StringBuilder out = new StringBuilder("p").append(items.size());
+        fields.entrySet().stream().limit(MAX_POINT_FIELDS)
+                .forEach(field -> append(out, field.getKey(), range(field.getValue().build())));
+        return out.toString();
+    }
+
+    private static String range(DoubleStream values) {
+        DoubleSummaryStatistics stats = values.summaryStatistics();
+        if (stats.getCount() == 0) {
+            return "";
+        }
+        return ":" + round(stats.getMin()) + ".." + round(stats.getAverage()) + ".." + round(stats.getMax());
+    }
+
+    private static Map<String, Object> stringKeys(Map<?, ?> map) {
+        Map<String, Object> out = new TreeMap<>();
+        map.forEach((key, value) -> out.put(String.valueOf(key), value));
+        return out;
+    }
+
+    private static String round(double value) {
+        if (value == 0 || !Double.isFinite(value)) {
+            return String.valueOf(value);
+        }
+        return new BigDecimal(value).round(new MathContext(SIGNIFICANT_DIGITS)).stripTrailingZeros().toPlainString();
+    }
+
+    private static String hash(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            // 128 bits keep accidental collisions out of reach
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String bucket(Number value, double size) {
+        if (value == null) {
+            return null;
+        }
+        return String.valueOf(Math.round(value.doubleValue() / size));
+    }
+}
@@ -0,0 +1,150 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.ActivityClaim;
+import com.fitness.aiservice.model.ActivityClaimStatus;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Lets each activity be processed once, however often its message is delivered. A consumer
+ * claims the activity before calling Gemini: first in a local set of recently claimed ids, which
+ * catches duplicates within this instance without a round trip, then with an atomic upsert on
+ * the activity's claim document, which catches them across instances and restarts. A claim is
+ * released when processing fails, so a later delivery can try again, and a PROCESSING claim
+ * whose lease has run out, because its consumer died, can be taken over.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ActivityIdempotencyGuard {
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ai.idempotency.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.idempotency.recent.max-size:100000}")
+    private long recentMaxSize;
+
+    @Value("${ai.idempotency.recent.ttl:1h}")
+    private Duration recentTtl;
+
+    @Value("${ai.idempotency.lease:5m}")
+    private Duration lease;
+
+    @Value("${ai.idempotency.retention:30d}")
+    private Duration retention;
+
+    private final String owner = UUID.randomUUID().toString();
+    private Cache<String, Boolean> recent;
+    private Counter memoryDuplicates;
+    private Counter mongoDuplicates;
+
+    @PostConstruct
+    void init() {
+        recent = Caffeine.newBuilder()
+                .maximumSize(recentMaxSize)
+                .expireAfterWrite(recentTtl)
+                .build();
+        memoryDuplicates = duplicates("memory");
+        mongoDuplicates = duplicates("mongo");
+
+        if (enabled) {
+            // Claims are only needed while redeliveries are possible
+            mongoTemplate.indexOps(ActivityClaim.class)
+                    .ensureIndex(new Index("createdAt", Sort.Direction.ASC).named("ttl_createdAt").expire(retention))
+                    .block();
+        }
+    }
+
+    /**
+     * Emits true if this consumer now owns the activity and should process it, false if it was
+     * already processed or is being processed elsewhere.
+     */
+    public Mono<Boolean> claim(String activityId) {
+        if (!enabled) {
+            return Mono.just(true);
+        }
+        if (recent.asMap().putIfAbsent(activityId, Boolean.TRUE) != null) {
+            memoryDuplicates.increment();
+            return Mono.just(false);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        // Matches only a claim that can be taken over; for any other existing claim the upsert
+        // tries to insert a second document with the same _id and fails
+        Query takeable = Query.query(Criteria.where("_id").is(activityId)
+                .and("status").is(ActivityClaimStatus.PROCESSING)
+                .and("claimedUntil").lt(now));
+        Update update = new Update()
+                .set("status", ActivityClaimStatus.PROCESSING)
+                .set("owner", owner)
+                .set("claimedUntil", now.plus(lease))
+                .setOnInsert("createdAt", now);
+        return mongoTemplate.upsert(takeable, update, ActivityClaim.class)
+                .thenReturn(true)
+                .onErrorResume(DuplicateKeyException.class, e -> {
+                    mongoDuplicates.increment();
+                    log.info("Skipping activity {}: already processed or in progress", activityId);
+                    return Mono.just(false);
+                })
+                .doOnError(e -> recent.invalidate(activityId));
+    }
+
+    /**
+     * Marks the claimed activity as processed for good.
+     */
+    public Mono<Void> complete(String activityId) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+        return mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(activityId).and("owner").is(owner)),
+                        new Update().set("status", ActivityClaimStatus.DONE).unset("claimedUntil"), ActivityClaim.class)
+                .then();
+    }
+
+    /**
+     * Gives up the claim after a failure, so a later delivery of the activity is processed.
+     */
+    public Mono<Void> release(String activityId) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+        recent.invalidate(activityId);
+        return mongoTemplate.remove(Query.query(Criteria.where("_id").is(activityId)
+                                .and("owner").is(owner)
+                                .and("status").is(ActivityClaimStatus.PROCESSING)),
+                        ActivityClaim.class)
+                .then()
+                .onErrorResume(e -> {
+                    log.warn("Could not release claim on activity {}; it is retried once the lease runs out: {}",
+                            activityId, e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private Counter duplicates(String source) {
+        return Counter.builder("ai.activity.duplicates")
+                .description("Activity messages skipped because the activity was already claimed")
+                .tag("source", source)
+                .register(meterRegistry);
+    }
+}
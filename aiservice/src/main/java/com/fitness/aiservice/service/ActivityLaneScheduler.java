@@ -0,0 +1,174 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.ActivityLane;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Decides which lane's activity goes to Gemini next. Up to max-in-flight activities are worked
+ * on at once; while every slot is taken, freed slots go to the waiting lanes in proportion to
+ * their weights, in arrival order within a lane. The live-reserved slots are only ever given to
+ * live activities, so a bulk or replay backlog can use all spare capacity without live traffic
+ * queueing behind it. A lane that was idle rejoins at the current position rather than being
+ * credited for the time it did not use.
+ */
+@Component
+@RequiredArgsConstructor
+public class ActivityLaneScheduler {
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ai.lanes.max-in-flight:64}")
+    private int maxInFlight;
+
+    @Value("${ai.lanes.live-reserved:16}")
+    private int liveReserved;
+
+    // Lanes and their weights, e.g. LIVE:8
+    @Value("${ai.lanes.weights:LIVE:8,BULK:2,REPLAY:1}")
+    private List<String> weightsByLane;
+
+    private final Map<ActivityLane, Lane> lanes = new EnumMap<>(ActivityLane.class);
+    private int inFlight;
+    private double virtualTime;
+
+    private static final class Lane {
+        final Queue<Sinks.One<Boolean>> waiters = new ArrayDeque<>();
+        double weight = 1;
+        // Advances by 1 / weight with each activity admitted; the lowest waiting lane goes next
+        double pass;
+        Timer wait;
+    }
+
+    @PostConstruct
+    void init() {
+        for (ActivityLane lane : ActivityLane.values()) {
+            lanes.put(lane, new Lane());
+        }
+        for (String entry : weightsByLane) {
+            int separator = entry.lastIndexOf(':');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Expected LANE:weight in ai.lanes.weights, got " + entry);
+            }
+            double weight = Double.parseDouble(entry.substring(separator + 1).trim());
+            if (weight <= 0) {
+                throw new IllegalArgumentException("Lane weights must be positive, got " + entry);
+            }
+            lanes.get(ActivityLane.valueOf(entry.substring(0, separator).trim())).weight = weight;
+        }
+        lanes.forEach((lane, state) -> {
+            state.wait = Timer.builder("ai.activity.lane.wait")
+                    .description("Time an activity waited for a processing slot after it was received")
+                    .tag("lane", lane.name().toLowerCase())
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            Gauge.builder("ai.activity.lane.waiting", this, scheduler -> scheduler.waiting(lane))
+                    .description("Activities waiting for a processing slot")
+                    .tag("lane", lane.name().toLowerCase())
+                    .register(meterRegistry);
+        });
+        Gauge.builder("ai.activity.lane.in.flight", this, ActivityLaneScheduler::inFlight)
+                .description("Activities holding a processing slot")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs the work once the lane is given a slot, and frees the slot when it ends or is cancelled.
+     */
+    public <T> Mono<T> run(ActivityLane lane, Supplier<Mono<T>> work) {
+        return Mono.usingWhen(acquire(lane), permit -> work.get(), permit -> Mono.fromRunnable(this::release));
+    }
+
+    /**
+     * Runs streaming work once the lane is given a slot, and holds the slot until the stream ends
+     * or is cancelled.
+     */
+    public <T> Flux<T> runMany(ActivityLane lane, Supplier<Flux<T>> work) {
+        return Flux.usingWhen(acquire(lane), permit -> work.get(), permit -> Mono.fromRunnable(this::release));
+    }
+
+    Mono<Boolean> acquire(ActivityLane lane) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            Lane state = lanes.get(lane);
+            Sinks.One<Boolean> waiter = Sinks.one();
+            synchronized (this) {
+                if (state.waiters.isEmpty()) {
+                    state.pass = Math.max(state.pass, virtualTime);
+                }
+                state.waiters.add(waiter);
+            }
+            dispatch();
+            return waiter.asMono()
+                    .doOnNext(permit -> state.wait.record(System.nanoTime() - start, TimeUnit.NANOSECONDS))
+                    .doOnCancel(() -> {
+                        boolean waiting;
+                        synchronized (this) {
+                            waiting = state.waiters.remove(waiter);
+                        }
+                        if (!waiting) {
+                            release();
+                        }
+                    });
+        });
+    }
+
+    void release() {
+        synchronized (this) {
+            inFlight--;
+        }
+        dispatch();
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+
+    synchronized int waiting(ActivityLane lane) {
+        return lanes.get(lane).waiters.size();
+    }
+
+    /**
+     * Hands free slots to the waiting lane with the lowest pass, skipping the other lanes once
+     * only the live-reserved slots are left.
+     */
+    private void dispatch() {
+        List<Sinks.One<Boolean>> granted = new ArrayList<>();
+        synchronized (this) {
+            while (inFlight < maxInFlight) {
+                Lane next = null;
+                for (Map.Entry<ActivityLane, Lane> entry : lanes.entrySet()) {
+                    Lane candidate = entry.getValue();
+                    boolean allowed = entry.getKey() == ActivityLane.LIVE || inFlight < maxInFlight - liveReserved;
+                    if (allowed && !candidate.waiters.isEmpty() && (next == null || candidate.pass < next.pass)) {
+                        next = candidate;
+                    }
+                }
+                if (next == null) {
+                    break;
+                }
+                virtualTime = next.pass;
+                next.pass += 1 / next.weight;
+                inFlight++;
+                granted.add(next.waiters.poll());
+            }
+        }
+        granted.forEach(waiter -> waiter.tryEmitValue(Boolean.TRUE));
+    }
+}
@@ -0,0 +1,124 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.config.ActivityLanes;
+import com.fitness.aiservice.model.ActivityLane;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sizes the activity listener by the depth of all lanes: one consumer per messages-per-consumer waiting
+ * messages, between the configured concurrency and max-concurrency. It scales up at once and
+ * down one consumer per check, so a short lull does not drop consumers that are needed again
+ * seconds later. Also publishes the queue depth and consumer utilization.
+ * Each consumer holds up to prefetch messages in progress from each lane, so messages-per-consumer
+ * should be of the order of the prefetch.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ActivityListenerScaler {
+    private final RabbitListenerEndpointRegistry listenerRegistry;
+    private final AmqpAdmin amqpAdmin;
+    private final ActivityMessageListener activityMessageListener;
+    private final ActivityLanes lanes;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${spring.rabbitmq.listener.simple.concurrency:1}")
+    private int minConsumers;
+
+    @Value("${ai.listener.scaling.max-concurrency:8}")
+    private int maxConsumers;
+
+    @Value("${ai.listener.scaling.messages-per-consumer:5}")
+    private int messagesPerConsumer;
+
+    @Value("${spring.rabbitmq.listener.simple.prefetch:250}")
+    private int prefetch;
+
+    @Value("${ai.listener.scaling.enabled:true}")
+    private boolean enabled;
+
+    private final Map<ActivityLane, AtomicLong> queueDepth = new EnumMap<>(ActivityLane.class);
+    private final AtomicInteger consumers = new AtomicInteger();
+
+    @PostConstruct
+    void registerMetrics() {
+        for (ActivityLane lane : ActivityLane.values()) {
+            queueDepth.put(lane, new AtomicLong());
+            Gauge.builder("ai.activity.queue.depth", queueDepth.get(lane), AtomicLong::get)
+                    .description("Messages waiting in the lane's activity queue")
+                    .tag("lane", lane.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+        Gauge.builder("ai.activity.consumers", consumers, AtomicInteger::get)
+                .description("Consumers of the activity queue on this instance")
+                .register(meterRegistry);
+        Gauge.builder("ai.activity.consumers.utilization", this, ActivityListenerScaler::utilization)
+                .description("Fraction of the consumers' prefetch windows holding messages in progress")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${ai.listener.scaling.interval-ms:5000}")
+    public void scale() {
+        SimpleMessageListenerContainer container = container();
+        if (container == null || !container.isRunning()) {
+            return;
+        }
+        try {
+            long depth = 0;
+            for (ActivityLane lane : ActivityLane.values()) {
+                QueueInformation info = amqpAdmin.getQueueInfo(lanes.queue(lane));
+                if (info != null) {
+                    queueDepth.get(lane).set(info.getMessageCount());
+                    depth += info.getMessageCount();
+                }
+            }
+            consumers.set(container.getActiveConsumerCount());
+            if (!enabled) {
+                return;
+            }
+
+            int current = container.getActiveConsumerCount();
+            int desired = desiredConsumers(depth, current);
+            if (desired != current) {
+                log.info("Scaling activity listener from {} to {} consumers for {} queued messages",
+                        current, desired, depth);
+                container.setConcurrentConsumers(desired);
+                consumers.set(desired);
+            }
+        } catch (Exception e) {
+            log.warn("Activity listener scaling check failed: {}", e.getMessage());
+        }
+    }
+
+    int desiredConsumers(long depth, int current) {
+        long needed = (depth + messagesPerConsumer - 1) / messagesPerConsumer;
+        int target = (int) Math.max(minConsumers, Math.min(maxConsumers, needed));
+        return target < current ? Math.max(target, current - 1) : target;
+    }
+
+    double utilization() {
+        int total = consumers.get() * prefetch * ActivityLane.values().length;
+        return total == 0 ? 0 : Math.min(1.0, (double) activityMessageListener.inFlight() / total);
+    }
+
+    private SimpleMessageListenerContainer container() {
+        return listenerRegistry.getListenerContainer(ActivityMessageListener.LISTENER_ID)
+                instanceof SimpleMessageListenerContainer simple ? simple : null;
+    }
+}
@@ -1,30 +1,139 @@
 package com.fitness.aiservice.service;
 
+import com.fitness.aiservice.config.ActivityLanes;
 import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.ActivityLane;
 import com.fitness.aiservice.model.Recommendation;
 import com.fitness.aiservice.repository.RecommendationRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Turns activity messages into stored recommendations without holding a listener thread per
+ * message: the listener returns as soon as the pipeline is assembled, and the container acks
+ * the message when the returned Mono completes. Failed activities are handed to
+ * {@link ActivityRetryRouter} and acked; the message is rejected only if that hand-off fails.
+ * How many messages are in progress at once is bounded by the consumers' prefetch. Messages for
+ * an activity that is already processed, or being processed, are acked without calling Gemini.
+ * The live, bulk and replay lanes are consumed together; {@link RecommendationGenerator} decides
+ * how each activity is answered and, through {@link ActivityLaneScheduler}, which goes to Gemini next.
+ */
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class ActivityMessageListener {
+    public static final String LISTENER_ID = "activityListener";
+    /**
+     * Header with the epoch milliseconds at which the activity service published the message.
+     */
+    public static final String PUBLISHED_AT = "x-published-at";
 
-    private final ActivityAIService aiService;
+    private final ActivityIdempotencyGuard idempotencyGuard;
+    private final RecommendationGenerator recommendationGenerator;
     private final RecommendationRepository  recommendationRepository;
+    private final ActivityRetryRouter retryRouter;
+    private final ActivityLanes lanes;
+    private final MeterRegistry meterRegistry;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public Mono<Void> processActivity(Activity activity) {
+        return processActivity(activity, 0, null, null);
+    }
+
+    /**
+     * Processes one delivery of the activity; attempt counts the retries before it. A failure is
+     * passed to the retry queues of the lane it came from and the message is acked.
+     */
+    @RabbitListener(id = LISTENER_ID, queues = {"${rabbitmq.queue.name}",
+            "${rabbitmq.queue.bulk:activity.bulk.queue}", "${rabbitmq.queue.replay:activity.replay.queue}"})
+    public Mono<Void> processActivity(@Payload Activity activity,
+                                      @Header(name = ActivityRetryRouter.RETRY_COUNT, defaultValue = "0") int attempt,
+                                      @Header(name = AmqpHeaders.CONSUMER_QUEUE, required = false) String queue,
+                                      @Header(name = PUBLISHED_AT, required = false) Long publishedAt){
+        ActivityLane lane = lanes.lane(queue);
+        return Mono.defer(() -> {
+                    log.info("Received {} activity for processing: {}", lane.name().toLowerCase(), activity.getId());
+                    if (publishedAt != null) {
+                        recordQueueTime(lane, publishedAt);
+                    }
+                    inFlight.incrementAndGet();
+                    Timer.Sample sample = Timer.start(meterRegistry);
+                    AtomicBoolean duplicate = new AtomicBoolean();
+                    AtomicBoolean failed = new AtomicBoolean();
+                    return idempotencyGuard.claim(activity.getId())
+                            .flatMap(claimed -> {
+                                if (!claimed) {
+                                    duplicate.set(true);
+                                    return Mono.<Void>empty();
+                                }
+                                return recommend(activity, lane)
+                                        .then(idempotencyGuard.complete(activity.getId()))
+                                        .onErrorResume(e -> idempotencyGuard.release(activity.getId()).then(Mono.error(e)));
+                            })
+                            .onErrorResume(e -> {
+                                failed.set(true);
+                                log.error("Failed to process activity: {} - Error: {}", activity.getId(), e.getMessage(), e);
+                                return retryRouter.route(activity, lane, attempt, e);
+                            })
+                            .doFinally(signal -> {
+                                sample.stop(Timer.builder("ai.activity.processing")
+                                        .description("Time to turn one activity message into a stored recommendation")
+                                        .tag("outcome", duplicate.get() ? "duplicate" : failed.get() ? "failure" : outcome(signal))
+                                        .tag("lane", lane.name().toLowerCase())
+                                        .publishPercentileHistogram()
+                                        .register(meterRegistry));
+                                inFlight.decrementAndGet();
+                            });
+                })
+                .then();
+    }
+
+    private Mono<Recommendation> recommend(Activity activity, ActivityLane lane) {
+        return recommendationGenerator.generate(activity, lane)
+                .flatMap(recommendationRepository::save)
+                // Stored before the claims existed, or by the streaming endpoint
+                .onErrorResume(DuplicateKeyException.class, e -> {
+                    log.info("Recommendation for activity {} already stored", activity.getId());
+                    return Mono.empty();
+                });
+    }
+
+    private void recordQueueTime(ActivityLane lane, long publishedAt) {
+        Timer.builder("ai.activity.queue.time")
+                .description("Time from publishing an activity to its delivery to the listener")
+                .tag("lane", lane.name().toLowerCase())
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(Math.max(0, System.currentTimeMillis() - publishedAt), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Number of messages currently being processed.
+     */
+    public int inFlight() {
+        return inFlight.get();
+    }
 
-    @RabbitListener(queues = "activity.queue")
-    public void processActivity(Activity activity){
-        try {
-            log.info("Received activity for processing: {}", activity.getId());
-            Recommendation recommendation = aiService.generateRecommendation(activity);
-            recommendationRepository.save(recommendation);
-        } catch (Exception e) {
-            log.error("Failed to process activity: {} - Error: {}", activity.getId(), e.getMessage(), e);
-            throw new RuntimeException("Failed to process activity after retries", e);
-        }
+    private static String outcome(SignalType signal) {
+        return switch (signal) {
+            case ON_COMPLETE -> "success";
+            case ON_ERROR -> "failure";
+            default -> "cancelled";
+        };
     }
 }
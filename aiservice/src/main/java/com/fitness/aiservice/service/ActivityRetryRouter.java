@@ -0,0 +1,122 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.config.ActivityLanes;
+import com.fitness.aiservice.config.RabbitMqConfig;
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.ActivityLane;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Sends an activity whose processing failed to the retry queue for its attempt, or to the
+ * dead-letter queue once every delay is used up or the failure cannot go away by itself. The
+ * listener acks the original message afterwards, so no consumer waits out a backoff.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ActivityRetryRouter {
+    /**
+     * Header counting the retries a message has had.
+     */
+    public static final String RETRY_COUNT = "x-retry-count";
+    public static final String LAST_ERROR = "x-last-error";
+
+    private final RabbitTemplate rabbitTemplate;
+    private final ActivityLanes lanes;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ai.retry.delays:5s,30s,5m}")
+    private List<String> retryDelays;
+
+    @Value("${ai.retry.confirm-timeout-ms:5000}")
+    private long confirmTimeoutMs;
+
+    /**
+     * Publishes the activity for its next attempt in the same lane; fails unless the broker
+     * confirmed and routed it, so the original message is not acked.
+     */
+    public Mono<Void> route(Activity activity, ActivityLane lane, int attempt, Throwable error) {
+        boolean retry = isRetryable(error) && attempt < retryDelays.size();
+        String target = retry
+                ? RabbitMqConfig.retryQueueName(lanes.queue(lane), retryDelays.get(attempt))
+                : RabbitMqConfig.deadLetterQueueName(lanes.queue(ActivityLane.LIVE));
+        MessagePostProcessor headers = message -> {
+            message.getMessageProperties().setHeader(RETRY_COUNT, retry ? attempt + 1 : attempt);
+            message.getMessageProperties().setHeader(LAST_ERROR, String.valueOf(error.getMessage()));
+            return message;
+        };
+        return Mono.fromRunnable(() -> {
+                    CorrelationData correlation = new CorrelationData();
+                    rabbitTemplate.convertAndSend("", target, activity, headers, correlation);
+                    awaitConfirm(correlation, confirmTimeoutMs);
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .doOnSuccess(ignored -> {
+                    if (retry) {
+                        log.warn("Retrying activity {} in {} after attempt {} failed: {}",
+                                activity.getId(), retryDelays.get(attempt), attempt + 1, error.getMessage());
+                        Counter.builder("ai.activity.retries")
+                                .description("Failed activities sent to a retry queue")
+                                .tag("delay", retryDelays.get(attempt))
+                                .register(meterRegistry)
+                                .increment();
+                    } else {
+                        log.error("Dead-lettering activity {} after {} attempts: {}",
+                                activity.getId(), attempt + 1, error.getMessage());
+                        Counter.builder("ai.activity.dead.lettered")
+                                .description("Failed activities sent to the dead-letter queue")
+                                .register(meterRegistry)
+                                .increment();
+                    }
+                })
+                .then();
+    }
+
+    /**
+     * Waits for the broker confirm of a message published with the correlation; fails if it was
+     * nacked, returned as unroutable or not confirmed in time.
+     */
+    static void awaitConfirm(CorrelationData correlation, long timeoutMs) {
+        CorrelationData.Confirm confirm;
+        try {
+            confirm = correlation.getFuture().get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmqpException("Interrupted waiting for a publisher confirm", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new AmqpException("No publisher confirm within " + timeoutMs + "ms", e);
+        }
+        if (!confirm.isAck()) {
+            throw new AmqpException("Publish nacked by the broker: " + confirm.getReason());
+        }
+        if (correlation.getReturned() != null) {
+            throw new AmqpException("Publish returned as unroutable: " + correlation.getReturned().getReplyText());
+        }
+    }
+
+    /**
+     * Whether a later attempt can succeed. Client errors other than 429 would fail the same way again.
+     */
+    static boolean isRetryable(Throwable error) {
+        return !(error instanceof WebClientResponseException response
+                && response.getStatusCode().is4xxClientError()
+                && response.getStatusCode().value() != 429);
+    }
+}
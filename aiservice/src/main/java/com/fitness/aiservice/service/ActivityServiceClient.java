@@ -0,0 +1,53 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.dto.ActivityScanPage;
+import com.fitness.aiservice.model.Activity;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.Optional;
+
+@Service
+@RequiredArgsConstructor
+public class ActivityServiceClient {
+    private final WebClient activityServiceWebClient;
+
+    public Mono<Activity> getActivity(String activityId) {
+        return activityServiceWebClient.get()
+                .uri("/api/activities/{activityId}", activityId)
+                .retrieve()
+                .bodyToMono(Activity.class)
+                .onErrorMap(e -> new RuntimeException("Could not load activity " + activityId, e));
+    }
+
+    /**
+     * A page of all activities in id order, starting after the activity with id after, or at the
+     * first one when it is null.
+     */
+    public Mono<ActivityScanPage> scan(String after, int limit) {
+        return activityServiceWebClient.get()
+                .uri(builder -> builder.path("/internal/activities/scan")
+                        .queryParamIfPresent("after", Optional.ofNullable(after))
+                        .queryParam("limit", limit)
+                        .build())
+                .retrieve()
+                .bodyToMono(ActivityScanPage.class)
+                .onErrorMap(e -> new RuntimeException("Could not scan activities after " + after, e));
+    }
+
+    /**
+     * The activity service's estimate of how many activities it stores.
+     */
+    public Mono<Long> count() {
+        return activityServiceWebClient.get()
+                .uri("/internal/activities/count")
+                .retrieve()
+                .bodyToMono(new ParameterizedTypeReference<Map<String, Long>>() {})
+                .map(body -> body.getOrDefault("count", 0L))
+                .onErrorMap(e -> new RuntimeException("Could not count activities", e));
+    }
+}
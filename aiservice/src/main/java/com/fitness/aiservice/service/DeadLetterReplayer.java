@@ -0,0 +1,132 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.config.ActivityLanes;
+import com.fitness.aiservice.config.RabbitMqConfig;
+import com.fitness.aiservice.model.ActivityLane;
+import com.rabbitmq.client.GetResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.support.DefaultMessagePropertiesConverter;
+import org.springframework.amqp.rabbit.support.MessagePropertiesConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Moves messages from the dead-letter queue to the replay lane at a fixed rate, so a replay
+ * after an outage does not hit Gemini with the whole backlog at once or delay live activities.
+ * Each message is acked on the dead-letter queue only after the broker has confirmed and routed
+ * its republished copy, with its retry count reset.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DeadLetterReplayer {
+    private final RabbitTemplate rabbitTemplate;
+    private final ActivityLanes lanes;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${rabbitmq.queue.name}")
+    private String queue;
+
+    @Value("${rabbitmq.exchange.name}")
+    private String exchange;
+
+    @Value("${ai.retry.confirm-timeout-ms:5000}")
+    private long confirmTimeoutMs;
+
+    private final MessagePropertiesConverter propertiesConverter = new DefaultMessagePropertiesConverter();
+    private final AtomicBoolean replaying = new AtomicBoolean();
+    private Counter replayed;
+
+    @PostConstruct
+    void init() {
+        replayed = Counter.builder("ai.dlq.replayed")
+                .description("Dead-lettered activities sent back for processing")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Number of messages waiting in the dead-letter queue.
+     */
+    public long depth() {
+        return rabbitTemplate.execute(channel -> channel.messageCount(RabbitMqConfig.deadLetterQueueName(queue)));
+    }
+
+    /**
+     * Starts replaying up to limit messages at perSecond messages a second, in the background.
+     * Returns false if a replay is already running.
+     */
+    public boolean replay(int limit, double perSecond) {
+        if (!replaying.compareAndSet(false, true)) {
+            return false;
+        }
+        Flux.interval(Duration.ofNanos((long) (1_000_000_000 / perSecond)))
+                .onBackpressureDrop()
+                .concatMap(tick -> Mono.fromCallable(this::replayOne).subscribeOn(Schedulers.boundedElastic()), 1)
+                .takeWhile(moved -> moved)
+                .take(limit)
+                .count()
+                .doFinally(signal -> replaying.set(false))
+                .subscribe(count -> log.info("Replayed {} dead-lettered activities", count),
+                        e -> log.error("Dead-letter replay stopped: {}", e.getMessage(), e));
+        return true;
+    }
+
+    /**
+     * Returns false once the dead-letter queue is empty. Runs on one channel, so the message is
+     * got and acked on the channel it was delivered on; it is requeued if the republish is not
+     * confirmed, which stops the replay.
+     */
+    boolean replayOne() {
+        Boolean moved = rabbitTemplate.invoke(operations -> {
+            GetResponse response = operations.execute(channel ->
+                    channel.basicGet(RabbitMqConfig.deadLetterQueueName(queue), false));
+            if (response == null) {
+                return false;
+            }
+            long deliveryTag = response.getEnvelope().getDeliveryTag();
+            MessageProperties properties = propertiesConverter.toMessageProperties(response.getProps(),
+                    response.getEnvelope(), StandardCharsets.UTF_8.name());
+            properties.getHeaders().remove(ActivityRetryRouter.RETRY_COUNT);
+            properties.getHeaders().remove(ActivityRetryRouter.LAST_ERROR);
+            properties.getHeaders().remove("x-death");
+            properties.setHeader(ActivityMessageListener.PUBLISHED_AT, System.currentTimeMillis());
+            CorrelationData correlation = new CorrelationData();
+            try {
+                operations.send(exchange, lanes.routingKey(ActivityLane.REPLAY),
+                        new Message(response.getBody(), properties), correlation);
+                ActivityRetryRouter.awaitConfirm(correlation, confirmTimeoutMs);
+            } catch (RuntimeException e) {
+                operations.execute(channel -> {
+                    channel.basicNack(deliveryTag, false, true);
+                    return null;
+                });
+                throw e;
+            }
+            operations.execute(channel -> {
+                channel.basicAck(deliveryTag, false);
+                return null;
+            });
+            return true;
+        });
+        if (Boolean.TRUE.equals(moved)) {
+            replayed.increment();
+            return true;
+        }
+        return false;
+    }
+}
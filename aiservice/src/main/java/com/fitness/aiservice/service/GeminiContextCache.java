@@ -0,0 +1,98 @@
+package com.fitness.aiservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fitness.aiservice.dto.GeminiPrompt;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the instruction blocks of the prompt templates in Gemini's context cache, so calls only
+ * send the activity part and the cached tokens are billed at the reduced rate. A cache is
+ * created the first time its template is used and recreated shortly before it expires. Gemini
+ * only caches content above a model-specific minimum size, so smaller blocks, and templates
+ * whose cache could not be created, are sent inline.
+ */
+@Component
+@Slf4j
+public class GeminiContextCache {
+    private final WebClient webClient;
+
+    @Value("${gemini.api.url}")
+    private String geminiApiUrl;
+
+    @Value("${gemini.api.key}")
+    private String geminiApiKey;
+
+    @Value("${gemini.context-cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${gemini.context-cache.ttl:1h}")
+    private Duration ttl;
+
+    @Value("${gemini.context-cache.min-tokens:1024}")
+    private int minTokens;
+
+    @Value("${gemini.context-cache.retry-after:10m}")
+    private Duration retryAfter;
+
+    private final Map<String, Mono<String>> caches = new ConcurrentHashMap<>();
+
+    public GeminiContextCache(@Qualifier("geminiWebClient") WebClient webClient) {
+        this.webClient = webClient;
+    }
+
+    /**
+     * The name of the cached content holding the prompt's instructions, or empty when they
+     * should be sent inline.
+     */
+    public Mono<String> cachedContent(GeminiPrompt prompt) {
+        if (!enabled || PromptBuilder.estimateTokens(prompt.instructions()) < minTokens) {
+            return Mono.empty();
+        }
+        // One shared Mono per template, so concurrent calls wait for a single create request
+        return caches.computeIfAbsent(prompt.instructions(), instructions -> create(instructions)
+                .cache(name -> refreshIn(), error -> Duration.ZERO, () -> retryAfter));
+    }
+
+    private Duration refreshIn() {
+        // Recreate a little early, so no call is sent with a name that expires in flight
+        return ttl.minus(ttl.dividedBy(10));
+    }
+
+    private Mono<String> create(String instructions) {
+        int models = geminiApiUrl.lastIndexOf("/models/");
+        String url = geminiApiUrl.substring(0, models) + "/cachedContents";
+        String model = geminiApiUrl.substring(models + 1, geminiApiUrl.lastIndexOf(':'));
+        Map<String, Object> body = Map.of(
+                "model", model,
+                "contents", new Object[]{
+                        Map.of("role", "user", "parts", new Object[]{
+                                Map.of("text", instructions)
+                        })
+                },
+                "ttl", ttl.toSeconds() + "s");
+        return webClient.post()
+                .uri(url)
+                .header("Content-Type", "application/json")
+                .header("x-goog-api-key", geminiApiKey)
+                .bodyValue(body)
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .map(response -> response.path("name").asText())
+                .filter(name -> !name.isEmpty())
+                .doOnNext(name -> log.info("Cached prompt instructions as {} until {}", name, Instant.now().plus(ttl)))
+                .onErrorResume(e -> {
+                    log.warn("Could not cache prompt instructions, sending them inline for {}: {}", retryAfter, e.getMessage());
+                    return Mono.empty();
+                });
+    }
+}
@@ -0,0 +1,284 @@
+package com.fitness.aiservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Keeps Gemini calls within the project's quotas and backs off when Gemini says it is overloaded.
+ * <ul>
+ *     <li>Requests and tokens per minute are token buckets; a call waits until both have budget.
+ *     Tokens are estimated from the prompt length and corrected from the response's usage.</li>
+ *     <li>Concurrency adapts AIMD-style: it grows by about one per limit's worth of fast successes,
+ *     and is multiplied by decrease-ratio on a 429 or 503, or a call slower than latency-threshold.
+ *     Only calls started after the last decrease can trigger another one.</li>
+ *     <li>A Retry-After header, or the retryDelay of a 429 body, pauses all calls until it has passed.</li>
+ * </ul>
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class GeminiRateLimiter {
+    private static final int CHARS_PER_TOKEN = 4;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${gemini.rate-limit.requests-per-minute:1000}")
+    private long requestsPerMinute;
+
+    @Value("${gemini.rate-limit.tokens-per-minute:1000000}")
+    private long tokensPerMinute;
+
+    @Value("${gemini.rate-limit.expected-output-tokens:800}")
+    private int expectedOutputTokens;
+
+    @Value("${gemini.max-in-flight:4}")
+    private int maxConcurrency;
+
+    @Value("${gemini.concurrency.initial:4}")
+    private int initialConcurrency;
+
+    @Value("${gemini.concurrency.min:1}")
+    private int minConcurrency;
+
+    @Value("${gemini.concurrency.latency-threshold:30s}")
+    private Duration latencyThreshold;
+
+    @Value("${gemini.concurrency.decrease-ratio:0.5}")
+    private double decreaseRatio;
+
+    private TokenBucket requests;
+    private TokenBucket tokens;
+    private InFlightLimiter limiter;
+    private double concurrency;
+    private long lastDecrease;
+    private volatile long pausedUntil;
+
+    private Timer permitWaitTimer;
+    private Timer throttleWaitTimer;
+
+    @PostConstruct
+    void init() {
+        requests = new TokenBucket(requestsPerMinute, System::nanoTime);
+        tokens = new TokenBucket(tokensPerMinute, System::nanoTime);
+        concurrency = Math.min(initialConcurrency, maxConcurrency);
+        limiter = new InFlightLimiter((int) concurrency);
+        lastDecrease = System.nanoTime();
+        pausedUntil = lastDecrease;
+
+        permitWaitTimer = Timer.builder("ai.gemini.permit.wait")
+                .description("Time a caller waited for a free Gemini call slot")
+                .register(meterRegistry);
+        throttleWaitTimer = Timer.builder("ai.gemini.throttle.wait")
+                .description("Time a caller waited for request or token budget, or for a Retry-After to pass")
+                .register(meterRegistry);
+        Gauge.builder("ai.gemini.in.flight", limiter, InFlightLimiter::inFlight)
+                .description("Gemini calls currently in progress")
+                .register(meterRegistry);
+        Gauge.builder("ai.gemini.waiting", limiter, InFlightLimiter::waiting)
+                .description("Gemini calls waiting for a free call slot")
+                .register(meterRegistry);
+        Gauge.builder("ai.gemini.limit.concurrency", limiter, InFlightLimiter::limit)
+                .description("Current adaptive limit on concurrent Gemini calls")
+                .register(meterRegistry);
+        Gauge.builder("ai.gemini.limit.requests.available", requests, TokenBucket::available)
+                .description("Requests left in the per-minute budget; negative while callers wait")
+                .register(meterRegistry);
+        Gauge.builder("ai.gemini.limit.tokens.available", tokens, TokenBucket::available)
+                .description("Tokens left in the per-minute budget; negative while callers wait")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs the call once the budgets, any Retry-After pause and the concurrency limit allow it,
+     * and feeds its outcome back into the limits.
+     */
+    public Mono<String> execute(String prompt, Supplier<Mono<String>> call) {
+        return executeMany(prompt, () -> call.get().flux()).singleOrEmpty();
+    }
+
+    /**
+     * Like {@link #execute} for a streamed call emitting one response chunk at a time. The call
+     * holds its slot until the stream ends, latency is taken to the first chunk, and token usage
+     * from the last one.
+     */
+    public Flux<String> executeMany(String prompt, Supplier<Flux<String>> call) {
+        return Flux.defer(() -> {
+            int estimate = prompt.length() / CHARS_PER_TOKEN + expectedOutputTokens;
+            Duration wait = Duration.ofNanos(Math.max(0, pausedUntil - System.nanoTime()));
+            if (!wait.isZero()) {
+                throttled("retry-after");
+            }
+            wait = longest(wait, requests.reserve(1), "requests");
+            wait = longest(wait, tokens.reserve(estimate), "tokens");
+            Mono<Long> throttle = Mono.empty();
+            if (!wait.isZero()) {
+                throttleWaitTimer.record(wait);
+                throttle = Mono.delay(wait);
+            }
+            return throttle.thenMany(Flux.usingWhen(acquire(), permit -> observe(call.get(), estimate),
+                    permit -> Mono.fromRunnable(limiter::release)));
+        });
+    }
+
+    int concurrencyLimit() {
+        return limiter.limit();
+    }
+
+    private Mono<Boolean> acquire() {
+        if (limiter.inFlight() >= limiter.limit()) {
+            throttled("concurrency");
+        }
+        long waitStart = System.nanoTime();
+        return limiter.acquire()
+                .doOnNext(permit -> permitWaitTimer.record(System.nanoTime() - waitStart, TimeUnit.NANOSECONDS));
+    }
+
+    private Flux<String> observe(Flux<String> call, int estimate) {
+        long start = System.nanoTime();
+        AtomicLong firstChunk = new AtomicLong();
+        AtomicReference<String> lastChunk = new AtomicReference<>();
+        return call
+                .doOnNext(chunk -> {
+                    firstChunk.compareAndSet(0, System.nanoTime());
+                    lastChunk.set(chunk);
+                })
+                .doOnComplete(() -> {
+                    if (firstChunk.get() - start > latencyThreshold.toNanos()) {
+                        decrease(start, "slow response");
+                    } else {
+                        increase();
+                    }
+                    int used = lastChunk.get() == null ? -1 : totalTokens(lastChunk.get());
+                    if (used > 0) {
+                        tokens.adjust(used - estimate);
+                    }
+                })
+                .doOnError(WebClientResponseException.class, e -> {
+                    int status = e.getStatusCode().value();
+                    if (status == 429 || status == 503) {
+                        throttled("rate-limited");
+                        decrease(start, String.valueOf(status));
+                        Duration retryAfter = retryAfter(e);
+                        if (retryAfter != null) {
+                            pause(retryAfter);
+                        }
+                    }
+                });
+    }
+
+    private synchronized void increase() {
+        if (concurrency < maxConcurrency) {
+            concurrency = Math.min(maxConcurrency, concurrency + 1 / concurrency);
+            limiter.setLimit((int) concurrency);
+        }
+    }
+
+    private synchronized void decrease(long callStart, String reason) {
+        if (callStart < lastDecrease) {
+            return;
+        }
+        double previous = concurrency;
+        concurrency = Math.max(minConcurrency, concurrency * decreaseRatio);
+        lastDecrease = System.nanoTime();
+        limiter.setLimit((int) concurrency);
+        log.warn("Lowering Gemini concurrency from {} to {} after {}", (int) previous, (int) concurrency, reason);
+    }
+
+    private void pause(Duration retryAfter) {
+        long until = System.nanoTime() + retryAfter.toNanos();
+        synchronized (this) {
+            if (until <= pausedUntil) {
+                return;
+            }
+            pausedUntil = until;
+        }
+        log.warn("Gemini asked to retry after {}; pausing calls", retryAfter);
+    }
+
+    private Duration longest(Duration current, Duration wait, String reason) {
+        if (wait.isZero()) {
+            return current;
+        }
+        throttled(reason);
+        return wait.compareTo(current) > 0 ? wait : current;
+    }
+
+    private void throttled(String reason) {
+        Counter.builder("ai.gemini.throttled")
+                .description("Gemini calls delayed or rejected by a limit, by reason")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * The delay asked for by a Retry-After header, in seconds or as an HTTP date, or else by the
+     * retryDelay Gemini puts in the RetryInfo of a 429 body; null if there is neither.
+     */
+    static Duration retryAfter(WebClientResponseException e) {
+        String header = e.getHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+        if (header != null) {
+            try {
+                return header.chars().allMatch(Character::isDigit)
+                        ? Duration.ofSeconds(Long.parseLong(header))
+                        : Duration.between(ZonedDateTime.now(), ZonedDateTime.parse(header, DateTimeFormatter.RFC_1123_DATE_TIME));
+            } catch (RuntimeException ignored) {
+                // Fall through to the body
+            }
+        }
+        String body = e.getResponseBodyAsString();
+        int key = body.indexOf("\"retryDelay\"");
+        if (key < 0) {
+            return null;
+        }
+        int start = body.indexOf('"', body.indexOf(':', key)) + 1;
+        int end = body.indexOf('"', start);
+        String delay = start > 0 && end > start ? body.substring(start, end) : "";
+        if (!delay.endsWith("s")) {
+            return null;
+        }
+        try {
+            return Duration.ofMillis((long) (Double.parseDouble(delay.substring(0, delay.length() - 1)) * 1000));
+        } catch (NumberFormatException ignored) {
+            return null;
+        }
+    }
+
+    /**
+     * The usageMetadata.totalTokenCount of a generateContent response, or -1.
+     */
+    static int totalTokens(String response) {
+        int key = response.lastIndexOf("\"totalTokenCount\"");
+        if (key < 0) {
+            return -1;
+        }
+        int i = response.indexOf(':', key) + 1;
+        while (i < response.length() && Character.isWhitespace(response.charAt(i))) {
+            i++;
+        }
+        int start = i;
+        while (i < response.length() && Character.isDigit(response.charAt(i))) {
+            i++;
+        }
+        return i > start ? Integer.parseInt(response.substring(start, i)) : -1;
+    }
+}
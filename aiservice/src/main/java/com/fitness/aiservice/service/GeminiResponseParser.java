@@ -0,0 +1,144 @@
+package com.fitness.aiservice.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fitness.aiservice.dto.GeminiAnalysis;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Reads Gemini responses in one pass. The envelope is walked with the streaming parser, keeping
+ * only the text of the first candidate and skipping everything else without building a tree;
+ * the text is then bound straight into {@link GeminiAnalysis} records by shared readers.
+ */
+public final class GeminiResponseParser {
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    private static final JsonFactory FACTORY = MAPPER.getFactory();
+    private static final ObjectReader ANALYSIS = MAPPER.readerFor(GeminiAnalysis.class);
+    private static final ObjectReader ANALYSES = MAPPER.readerForListOf(GeminiAnalysis.class);
+    private static final String FENCE = "```";
+
+    private GeminiResponseParser() {
+    }
+
+    /**
+     * The generated text of the first candidate of a generateContent response or stream chunk,
+     * with the text of all its parts joined; empty if it has none. Thought parts are left out.
+     */
+    public static String text(String response) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(response)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a Gemini response object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if ("candidates".equals(field) && parser.currentToken() == JsonToken.START_ARRAY) {
+                    return parser.nextToken() == JsonToken.START_OBJECT ? candidateText(parser) : "";
+                }
+                parser.skipChildren();
+            }
+            return "";
+        }
+    }
+
+    public static GeminiAnalysis analysis(String text) throws IOException {
+        return ANALYSIS.readValue(stripFences(text));
+    }
+
+    public static List<GeminiAnalysis> analyses(String text) throws IOException {
+        return ANALYSES.readValue(stripFences(text));
+    }
+
+    /**
+     * Removes a Markdown code fence, with its language tag, around the text.
+     */
+    static String stripFences(String text) {
+        int start = skipWhitespace(text, 0);
+        int end = trimWhitespace(text, start, text.length());
+        if (text.startsWith(FENCE, start)) {
+            int lineEnd = text.indexOf('\n', start);
+            start = lineEnd < 0 ? start + FENCE.length() : lineEnd + 1;
+            if (end - start >= FENCE.length() && text.startsWith(FENCE, end - FENCE.length())) {
+                end -= FENCE.length();
+            }
+            start = skipWhitespace(text, start);
+            end = trimWhitespace(text, start, end);
+        }
+        return start == 0 && end == text.length() ? text : text.substring(start, end);
+    }
+
+    private static String candidateText(JsonParser parser) throws IOException {
+        String text = "";
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if ("content".equals(field) && parser.currentToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String contentField = parser.currentName();
+                    parser.nextToken();
+                    if ("parts".equals(contentField) && parser.currentToken() == JsonToken.START_ARRAY) {
+                        text = partsText(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return text;
+    }
+
+    private static String partsText(JsonParser parser) throws IOException {
+        String text = null;
+        StringBuilder joined = null;
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            String partText = null;
+            boolean thought = false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("text".equals(field) && value == JsonToken.VALUE_STRING) {
+                    partText = parser.getText();
+                } else if ("thought".equals(field)) {
+                    thought = value == JsonToken.VALUE_TRUE;
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (partText == null || thought) {
+                continue;
+            }
+            if (text == null) {
+                text = partText;
+            } else {
+                if (joined == null) {
+                    joined = new StringBuilder(text);
+                }
+                joined.append(partText);
+            }
+        }
+        return joined != null ? joined.toString() : text != null ? text : "";
+    }
+
+    private static int skipWhitespace(String text, int start) {
+        while (start < text.length() && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimWhitespace(String text, int start, int end) {
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+}
@@ -1,17 +1,36 @@
 package com.fitness.aiservice.service;
 
+import com.fitness.aiservice.dto.GeminiPrompt;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.io.IOException;
+import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
 
 @Service
 @Slf4j
 public class GeminiService {
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> SSE_CHUNK = new ParameterizedTypeReference<>() {
+    };
 
     private final WebClient webClient;
+    private final GeminiRateLimiter rateLimiter;
+    private final GeminiContextCache contextCache;
 
     @Value("${gemini.api.url}")
     private String geminiApiUrl;
@@ -19,36 +38,139 @@ public class GeminiService {
     @Value("${gemini.api.key}")
     private String geminiApiKey;
 
-    public GeminiService(WebClient.Builder webClientBuilder) {
-        this.webClient = webClientBuilder.build();
+    @Value("${gemini.retry.max-retries:2}")
+    private int maxRetries;
+
+    @Value("${gemini.retry.initial-backoff:3s}")
+    private Duration retryBackoff;
+
+    @Value("${gemini.retry.max-backoff:10s}")
+    private Duration retryMaxBackoff;
+
+    public GeminiService(@Qualifier("geminiWebClient") WebClient webClient, GeminiRateLimiter rateLimiter,
+                         GeminiContextCache contextCache) {
+        this.webClient = webClient;
+        this.rateLimiter = rateLimiter;
+        this.contextCache = contextCache;
     }
 
-    // gemini api format
-    public String getAnswer(String prompt){
-        Map<String, Object> requestBody = Map.of(
-                "contents", new Object[]{
-                        Map.of("parts", new Object[]{
-                                Map.of("text", prompt)
-                        })
-                }
-        );
+    /**
+     * Sends the prompt to Gemini and emits the raw response body. Nothing blocks while the call
+     * waits for the {@link GeminiRateLimiter} or for the response; overloads, server errors and
+     * timeouts are retried with backoff, without holding a slot in between.
+     */
+    public Mono<String> generate(String prompt) {
+        return generate(GeminiPrompt.of(prompt));
+    }
 
-        log.info("Calling Gemini API: {}", geminiApiUrl);
-        log.debug("Request body: {}", requestBody);
+    /**
+     * Like {@link #generate(String)}, sending only the prompt's content when its instructions are
+     * in the {@link GeminiContextCache}.
+     */
+    public Mono<String> generate(GeminiPrompt prompt) {
+        // Cached tokens still count towards the quota, so the limiter is charged for the whole prompt
+        return requestBody(prompt)
+                .flatMap(body -> rateLimiter.execute(prompt.text(), () -> call(body)))
+                .retryWhen(retry(GeminiService::isRetryable));
+    }
+
+    /**
+     * Streams the answer to the prompt from Gemini's streamGenerateContent endpoint, emitting each
+     * piece of generated text as it arrives. A failure is only retried while nothing has been
+     * emitted yet, so subscribers never see text twice.
+     */
+    public Flux<String> stream(String prompt) {
+        return stream(GeminiPrompt.of(prompt));
+    }
+
+    /**
+     * Like {@link #stream(String)}, sending only the prompt's content when its instructions are
+     * in the {@link GeminiContextCache}.
+     */
+    public Flux<String> stream(GeminiPrompt prompt) {
+        return Flux.defer(() -> {
+            AtomicBoolean emitted = new AtomicBoolean();
+            return requestBody(prompt)
+                    .flatMapMany(body -> rateLimiter.executeMany(prompt.text(), () -> streamCall(body)))
+                    .map(GeminiService::chunkText)
+                    .filter(text -> !text.isEmpty())
+                    .doOnNext(text -> emitted.set(true))
+                    .retryWhen(retry(error -> !emitted.get() && isRetryable(error)));
+        });
+    }
+
+    private Mono<Map<String, Object>> requestBody(GeminiPrompt prompt) {
+        return contextCache.cachedContent(prompt)
+                .map(cachedContent -> requestBody(cachedContent, prompt.content()))
+                .switchIfEmpty(Mono.fromSupplier(() -> requestBody(null, prompt.text())));
+    }
 
+    private static Map<String, Object> requestBody(String cachedContent, String text) {
+        // gemini api format
+        Object[] contents = new Object[]{
+                Map.of("role", "user", "parts", new Object[]{
+                        Map.of("text", text)
+                })
+        };
+        return cachedContent == null
+                ? Map.of("contents", contents)
+                : Map.of("cachedContent", cachedContent, "contents", contents);
+    }
+
+    private Retry retry(Predicate<Throwable> retryable) {
+        return Retry.backoff(maxRetries, retryBackoff)
+                .maxBackoff(retryMaxBackoff)
+                .filter(retryable)
+                .doBeforeRetry(signal -> log.warn("Retrying Gemini call after attempt {} failed: {}",
+                        signal.totalRetries() + 1, signal.failure().getMessage()))
+                .onRetryExhaustedThrow((spec, signal) -> signal.failure());
+    }
+
+    private Flux<String> streamCall(Map<String, Object> requestBody) {
+        String streamUrl = geminiApiUrl.replace(":generateContent", ":streamGenerateContent") + "?alt=sse";
+        log.debug("Streaming from Gemini API: {}", streamUrl);
+        return webClient.post()
+                .uri(streamUrl)
+                .header("Content-Type", "application/json")
+                .header("x-goog-api-key", geminiApiKey)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .bodyValue(requestBody)
+                .retrieve()
+                .bodyToFlux(SSE_CHUNK)
+                .mapNotNull(ServerSentEvent::data)
+                .doOnError(WebClientResponseException.class, e -> log.error("Gemini API error - Status: {}, Response: {}",
+                        e.getStatusCode(), e.getResponseBodyAsString()));
+    }
+
+    /**
+     * The generated text in one streamed GenerateContentResponse chunk.
+     */
+    private static String chunkText(String chunk) {
         try {
-            String response = webClient.post()
-                    .uri(geminiApiUrl)
-                    .header("Content-Type", "application/json")
-                    .header("x-goog-api-key", geminiApiKey)
-                    .bodyValue(requestBody)
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .block();
-            return response;
-        } catch (WebClientResponseException e) {
-            log.error("Gemini API error - Status: {}, Response: {}", e.getStatusCode(), e.getResponseBodyAsString());
-            throw e;
+            return GeminiResponseParser.text(chunk);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unreadable Gemini stream chunk", e);
+        }
+    }
+
+    private Mono<String> call(Map<String, Object> requestBody) {
+        log.debug("Calling Gemini API: {}", geminiApiUrl);
+        log.debug("Request body: {}", requestBody);
+        return webClient.post()
+                .uri(geminiApiUrl)
+                .header("Content-Type", "application/json")
+                .header("x-goog-api-key", geminiApiKey)
+                .bodyValue(requestBody)
+                .retrieve()
+                .bodyToMono(String.class)
+                .doOnError(WebClientResponseException.class, e -> log.error("Gemini API error - Status: {}, Response: {}",
+                        e.getStatusCode(), e.getResponseBodyAsString()));
+    }
+
+    private static boolean isRetryable(Throwable error) {
+        if (error instanceof WebClientResponseException response) {
+            return response.getStatusCode().is5xxServerError() || response.getStatusCode().value() == 429;
         }
+        return error instanceof WebClientRequestException || error instanceof TimeoutException;
     }
 }
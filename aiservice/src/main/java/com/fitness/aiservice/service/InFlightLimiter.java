@@ -0,0 +1,87 @@
+package com.fitness.aiservice.service;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * A non-blocking counterpart of a fair semaphore: {@link #acquire()} completes once a permit is
+ * free, in arrival order, without parking a thread while it waits. A caller that cancels while
+ * waiting gives up its place, or hands the permit on if it had just been granted one. The limit
+ * can change at any time; when it shrinks, calls already in flight finish and are not replaced.
+ */
+class InFlightLimiter {
+    private final Queue<Sinks.One<Boolean>> waiters = new ArrayDeque<>();
+    private int maxInFlight;
+    private int inFlight;
+
+    InFlightLimiter(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    Mono<Boolean> acquire() {
+        return Mono.defer(() -> {
+            Sinks.One<Boolean> waiter;
+            synchronized (this) {
+                if (inFlight < maxInFlight) {
+                    inFlight++;
+                    return Mono.just(Boolean.TRUE);
+                }
+                waiter = Sinks.one();
+                waiters.add(waiter);
+            }
+            return waiter.asMono().doOnCancel(() -> {
+                boolean waiting;
+                synchronized (this) {
+                    waiting = waiters.remove(waiter);
+                }
+                if (!waiting) {
+                    release();
+                }
+            });
+        });
+    }
+
+    /**
+     * Returns a permit, passing it straight to the longest waiting caller if there is one.
+     */
+    void release() {
+        Sinks.One<Boolean> next;
+        synchronized (this) {
+            next = inFlight > maxInFlight ? null : waiters.poll();
+            if (next == null) {
+                inFlight--;
+                return;
+            }
+        }
+        next.tryEmitValue(Boolean.TRUE);
+    }
+
+    void setLimit(int limit) {
+        List<Sinks.One<Boolean>> granted = new ArrayList<>();
+        synchronized (this) {
+            maxInFlight = limit;
+            while (inFlight < maxInFlight && !waiters.isEmpty()) {
+                inFlight++;
+                granted.add(waiters.poll());
+            }
+        }
+        granted.forEach(waiter -> waiter.tryEmitValue(Boolean.TRUE));
+    }
+
+    synchronized int limit() {
+        return maxInFlight;
+    }
+
+    synchronized int inFlight() {
+        return inFlight;
+    }
+
+    synchronized int waiting() {
+        return waiters.size();
+    }
+}
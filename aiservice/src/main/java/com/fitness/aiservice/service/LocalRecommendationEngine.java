@@ -0,0 +1,122 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.Recommendation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Answers simple and low-information activities with the {@link RecommendationRule} beans
+ * instead of Gemini. Activities that carry more than a few metrics, or last longer than the
+ * configured limit, are escalated to Gemini without asking the rules, as are activities no rule
+ * answers. {@code ai.recommendation.latency} is recorded with source "local" here and "gemini"
+ * by the callers, so the two paths can be compared.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LocalRecommendationEngine {
+    static final String LATENCY = "ai.recommendation.latency";
+
+    private final List<RecommendationRule> rules;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ai.local-rules.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.local-rules.escalate.max-metrics:2}")
+    private int maxMetrics;
+
+    @Value("${ai.local-rules.escalate.max-duration:60}")
+    private int maxDuration;
+
+    private Counter absorbed;
+    private Counter escalated;
+    private Timer localLatency;
+    private Timer geminiLatency;
+
+    @PostConstruct
+    void init() {
+        absorbed = activities("absorbed");
+        escalated = activities("escalated");
+        Gauge.builder("ai.recommendation.local.absorbed.ratio", this, LocalRecommendationEngine::absorbedRatio)
+                .description("Share of activities answered by local rules instead of Gemini")
+                .register(meterRegistry);
+        localLatency = latency("local");
+        geminiLatency = latency("gemini");
+    }
+
+    /**
+     * The local recommendation for the activity, or empty when it should go to Gemini.
+     */
+    public Optional<Recommendation> recommend(Activity activity) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        long start = System.nanoTime();
+        if (!escalate(activity)) {
+            for (RecommendationRule rule : rules) {
+                Optional<Recommendation> advice = rule.recommend(activity);
+                if (advice.isPresent()) {
+                    Recommendation recommendation = advice.get();
+                    recommendation.setActivityId(activity.getId());
+                    recommendation.setUserId(activity.getUserId());
+                    recommendation.setActivityType(activity.getType());
+                    recommendation.setCreatedAt(LocalDateTime.now());
+                    absorbed.increment();
+                    localLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    log.debug("Activity {} answered by {}", activity.getId(), rule.getClass().getSimpleName());
+                    return Optional.of(recommendation);
+                }
+            }
+        }
+        escalated.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * The timer for recommendations that went to Gemini, including the cache and batching in front of it.
+     */
+    public Timer geminiLatency() {
+        return geminiLatency;
+    }
+
+    double absorbedRatio() {
+        double total = absorbed.count() + escalated.count();
+        return total == 0 ? 0 : absorbed.count() / total;
+    }
+
+    private boolean escalate(Activity activity) {
+        if (activity.getDuration() != null && activity.getDuration() > maxDuration) {
+            return true;
+        }
+        return activity.getAdditionalMetrics() != null && activity.getAdditionalMetrics().asMap().size() > maxMetrics;
+    }
+
+    private Counter activities(String result) {
+        return Counter.builder("ai.recommendation.local")
+                .description("Activities offered to the local rules")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private Timer latency(String source) {
+        return Timer.builder(LATENCY)
+                .description("Time to produce a recommendation for one activity")
+                .tag("source", source)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,33 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.Recommendation;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Answers activities recorded without duration, calories or metrics: there is nothing for
+ * Gemini to analyze, so the advice is to record more next time.
+ */
+@Component
+@Order(0)
+public class MissingDataRule implements RecommendationRule {
+
+    @Override
+    public Optional<Recommendation> recommend(Activity activity) {
+        boolean noMetrics = activity.getAdditionalMetrics() == null || activity.getAdditionalMetrics().asMap().isEmpty();
+        if (activity.getDuration() != null || activity.getCaloriesBurned() != null || !noMetrics) {
+            return Optional.empty();
+        }
+        return Optional.of(Recommendation.builder()
+                .recommendation("Overall:This activity was recorded without duration, calories or other measurements, "
+                        + "so there is not enough data for a detailed analysis.")
+                .improvements(List.of("Tracking: Record the duration and, if your device provides it, heart rate and distance"))
+                .suggestions(List.of("Log your next session: Track it with a watch or the app to get a personalized analysis"))
+                .safety(List.of("Always warm up before exercise", "Stay hydrated", "Listen to your body"))
+                .build());
+    }
+}
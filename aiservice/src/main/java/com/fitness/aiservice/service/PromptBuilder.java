@@ -0,0 +1,319 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.dto.GeminiPrompt;
+import com.fitness.aiservice.model.Activity;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Builds the Gemini prompts for activities. The instruction block of each activity type is
+ * rendered once at startup and comes first, so it is identical across calls and can be served
+ * from Gemini's context cache; only the activity description is built per message. Metrics are
+ * written one per line, long numeric series are reduced to summary statistics, and when an
+ * activity's description exceeds the token budget its largest extra metrics are left out.
+ */
+@Component
+@RequiredArgsConstructor
+public class PromptBuilder {
+    // Same rough ratio GeminiRateLimiter uses; good enough to keep prompts bounded
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int MAX_TEXT_LENGTH = 120;
+    private static final int MAX_POINT_FIELDS = 4;
+    private static final String DEFAULT_TYPE = "OTHER";
+
+    private static final Map<String, String> FOCUS = Map.of(
+            "RUNNING", "pace consistency, cadence, heart rate zones and running economy",
+            "WALKING", "pace, step cadence, heart rate and building endurance",
+            "CYCLING", "speed and power over the distance, cadence, elevation and heart rate zones",
+            "SWIMMING", "pace per distance, stroke efficiency, breathing and recovery between sets",
+            "WEIGHT_TRAINING", "training volume, intensity, rest periods and muscle group balance",
+            "YOGA", "flexibility, balance, breathing and recovery",
+            "HIIT", "work and rest intervals, peak and recovery heart rate",
+            "CARDIO", "sustained intensity, heart rate zones and endurance",
+            "STRETCHING", "mobility, range of motion and recovery",
+            DEFAULT_TYPE, "overall effort, intensity and recovery");
+
+    private static final String RESPONSE_FIELDS = """
+            "analysis": {
+              "overall": "Overall analysis here",
+              "pace": "Pace analysis here",
+              "heartRate": "Heart rate analysis here",
+              "caloriesBurned": "Calories analysis here"
+            },
+            "improvements": [
+              {
+                "area": "Area name",
+                "recommendation": "Detailed recommendation"
+              }
+            ],
+            "suggestions": [
+              {
+                "workout": "Workout name",
+                "description": "Detailed workout description"
+              }
+            ],
+            "safety": [
+              "Safety point 1",
+              "Safety point 2"
+            ]
+            """;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ai.prompt.activity-token-budget:400}")
+    private int activityTokenBudget;
+
+    @Value("${ai.prompt.max-series-length:12}")
+    private int maxSeriesLength;
+
+    private final Map<String, String> singleInstructions = new HashMap<>();
+    private String batchInstructions;
+    private DistributionSummary singleSize;
+    private DistributionSummary singleTokens;
+    private DistributionSummary batchSize;
+    private DistributionSummary batchTokens;
+    private Counter omittedMetrics;
+
+    @PostConstruct
+    void init() {
+        FOCUS.forEach((type, focus) -> singleInstructions.put(type, String.format("""
+                Analyze this %s activity and provide detailed recommendations in the following EXACT JSON format:
+                {
+                %s}
+
+                Focus the analysis on %s.
+                Provide detailed analysis focusing on performance, improvements, next workout suggestions, and safety guidelines.
+                Ensure the response follows the EXACT JSON format shown above.
+
+                Analyze this activity:
+                """, type.toLowerCase().replace('_', ' '), RESPONSE_FIELDS.indent(2), focus)));
+        batchInstructions = String.format("""
+                Analyze each of the following fitness activities and provide detailed recommendations.
+                Respond with a JSON array holding one object per activity, each in the following EXACT JSON format:
+                [
+                  {
+                    "activityId": "The Activity ID given for the activity",
+                %s  }
+                ]
+
+                Tailor each analysis to the activity type.
+                Provide detailed analysis focusing on performance, improvements, next workout suggestions, and safety guidelines.
+                Ensure the response is only the JSON array in the EXACT format shown above, with every Activity ID exactly once.
+
+                Analyze these activities:
+                """, RESPONSE_FIELDS.indent(4));
+
+        singleSize = size("single");
+        singleTokens = tokens("single");
+        batchSize = size("batch");
+        batchTokens = tokens("batch");
+        omittedMetrics = Counter.builder("ai.prompt.metrics.omitted")
+                .description("Activity metrics left out of prompts to stay within the token budget")
+                .register(meterRegistry);
+    }
+
+    public GeminiPrompt single(Activity activity) {
+        String instructions = singleInstructions.getOrDefault(activity.getType(), singleInstructions.get(DEFAULT_TYPE));
+        StringBuilder content = new StringBuilder(256);
+        describe(activity, content);
+        return record(new GeminiPrompt(instructions, content.toString()), singleSize, singleTokens);
+    }
+
+    public GeminiPrompt batch(List<Activity> activities) {
+        StringBuilder content = new StringBuilder(256 * activities.size());
+        for (Activity activity : activities) {
+            content.append("Activity ID: ").append(activity.getId()).append('\n');
+            describe(activity, content);
+            content.append('\n');
+        }
+        return record(new GeminiPrompt(batchInstructions, content.toString()), batchSize, batchTokens);
+    }
+
+    static int estimateTokens(CharSequence text) {
+        return text.length() / CHARS_PER_TOKEN;
+    }
+
+    private void describe(Activity activity, StringBuilder out) {
+        int start = out.length();
+        out.append("Activity Type: ").append(activity.getType()).append('\n')
+                .append("Duration: ").append(orUnknown(activity.getDuration())).append(" minutes\n")
+                .append("Calories Burned: ").append(orUnknown(activity.getCaloriesBurned())).append('\n');
+        Map<String, Object> metrics = activity.getAdditionalMetrics() != null
+                ? activity.getAdditionalMetrics().asMap()
+                : Map.of();
+        if (metrics.isEmpty()) {
+            return;
+        }
+        out.append("Metrics:\n");
+
+        Map<String, String> lines = new LinkedHashMap<>();
+        metrics.forEach((key, value) -> lines.put(key, "- " + key + ": " + serialize(value) + '\n'));
+        int budget = activityTokenBudget * CHARS_PER_TOKEN - (out.length() - start);
+        int length = lines.values().stream().mapToInt(String::length).sum();
+        int omitted = 0;
+        if (length > budget) {
+            // Keep the typed metrics and drop the largest of the others until the rest fits
+            List<String> droppable = new ArrayList<>(activity.getAdditionalMetrics().getOther().keySet());
+            droppable.sort((a, b) -> Integer.compare(lines.get(b).length(), lines.get(a).length()));
+            for (String key : droppable) {
+                if (length <= budget) {
+                    break;
+                }
+                length -= lines.remove(key).length();
+                omitted++;
+            }
+        }
+        lines.values().forEach(out::append);
+        if (omitted > 0) {
+            out.append("- (").append(omitted).append(" more metrics omitted)\n");
+            omittedMetrics.increment(omitted);
+        }
+    }
+
+    private GeminiPrompt record(GeminiPrompt prompt, DistributionSummary size, DistributionSummary tokens) {
+        int length = prompt.instructions().length() + prompt.content().length();
+        size.record(length);
+        tokens.record(length / CHARS_PER_TOKEN);
+        return prompt;
+    }
+
+    /**
+     * Writes a metric value compactly: numbers without trailing zeros, long numeric series as
+     * statistics, lists of points as their count and the range of each field.
+     */
+    String serialize(Object value) {
+        if (value == null) {
+            return "unknown";
+        }
+        if (value instanceof Number number) {
+            return number(number.doubleValue());
+        }
+        if (value.getClass().isArray()) {
+            List<Object> items = new ArrayList<>(Array.getLength(value));
+            for (int i = 0; i < Array.getLength(value); i++) {
+                items.add(Array.get(value, i));
+            }
+            return serialize(items);
+        }
+        if (value instanceof Collection<?> items) {
+            return collection(items);
+        }
+        if (value instanceof Map<?, ?> map) {
+            StringBuilder out = new StringBuilder("{");
+            map.forEach((key, item) -> {
+                if (out.length() > 1) {
+                    out.append(", ");
+                }
+                out.append(key).append(": ").append(item instanceof Number number ? number(number.doubleValue()) : text(item));
+            });
+            return truncate(out.append('}').toString());
+        }
+        return text(value);
+    }
+
+    private String collection(Collection<?> items) {
+        if (items.isEmpty()) {
+            return "[]";
+        }
+        if (items.stream().allMatch(Number.class::isInstance)) {
+            if (items.size() <= maxSeriesLength) {
+                StringBuilder out = new StringBuilder("[");
+                for (Object item : items) {
+                    if (out.length() > 1) {
+                        out.append(", ");
+                    }
+                    out.append(number(((Number) item).doubleValue()));
+                }
+                return out.append(']').toString();
+            }
+            return series(items.stream().mapToDouble(item -> ((Number) item).doubleValue()).toArray());
+        }
+        if (items.stream().allMatch(Map.class::isInstance)) {
+            return points(items);
+        }
+        return truncate(items.size() + " items: " + items);
+    }
+
+    private static String series(double[] values) {
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        double sum = 0;
+        for (double value : values) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            sum += value;
+        }
+        return "series of " + values.length + " values, min " + number(min) + ", mean " + number(sum / values.length)
+                + ", max " + number(max) + ", first " + number(values[0]) + ", last " + number(values[values.length - 1]);
+    }
+
+    private static String points(Collection<?> items) {
+        // By field name, so the same points always read the same whatever order their maps iterate in
+        Map<String, double[]> ranges = new TreeMap<>();
+        for (Object item : items) {
+            for (Map.Entry<?, ?> field : ((Map<?, ?>) item).entrySet()) {
+                if (!(field.getValue() instanceof Number number)) {
+                    continue;
+                }
+                double[] range = ranges.computeIfAbsent(String.valueOf(field.getKey()),
+                        key -> new double[]{Double.MAX_VALUE, -Double.MAX_VALUE});
+                range[0] = Math.min(range[0], number.doubleValue());
+                range[1] = Math.max(range[1], number.doubleValue());
+            }
+        }
+        StringBuilder out = new StringBuilder().append(items.size()).append(" points");
+        ranges.entrySet().stream().limit(MAX_POINT_FIELDS).forEach(field -> out.append(", ").append(field.getKey())
+                .append(' ').append(number(field.getValue()[0])).append("..").append(number(field.getValue()[1])));
+        return out.toString();
+    }
+
+    private static String number(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        double rounded = Math.round(value * 100) / 100.0;
+        return rounded == 0 ? Double.toString(value) : Double.toString(rounded);
+    }
+
+    private static String text(Object value) {
+        return truncate(String.valueOf(value).replace('\n', ' '));
+    }
+
+    private static String truncate(String text) {
+        return text.length() <= MAX_TEXT_LENGTH ? text : text.substring(0, MAX_TEXT_LENGTH) + "...";
+    }
+
+    private static Object orUnknown(Integer value) {
+        return value == null ? "unknown" : value;
+    }
+
+    private DistributionSummary size(String kind) {
+        return DistributionSummary.builder("ai.prompt.size")
+                .description("Characters in a Gemini prompt")
+                .baseUnit("characters")
+                .tag("kind", kind)
+                .register(meterRegistry);
+    }
+
+    private DistributionSummary tokens(String kind) {
+        return DistributionSummary.builder("ai.prompt.tokens")
+                .description("Estimated input tokens of a Gemini prompt")
+                .baseUnit("tokens")
+                .tag("kind", kind)
+                .register(meterRegistry);
+    }
+}
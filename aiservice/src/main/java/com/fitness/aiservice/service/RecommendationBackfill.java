@@ -0,0 +1,373 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.dto.ActivityScanPage;
+import com.fitness.aiservice.dto.BackfillProgress;
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.ActivityLane;
+import com.fitness.aiservice.model.BackfillCheckpoint;
+import com.fitness.aiservice.model.BackfillStatus;
+import com.fitness.aiservice.model.Recommendation;
+import com.fitness.aiservice.repository.RecommendationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Brings every activity's recommendation up to the current {@code ai.recommendations.version},
+ * for example after the prompts or the model changed. Activities are read from the activity
+ * service a page at a time in id order. Those whose recommendation is current are skipped; the
+ * rest are regenerated, a bounded number at a time, on the replay lane, so live traffic keeps its
+ * share of Gemini and the calls stay within {@link GeminiRateLimiter}'s budget. The new
+ * recommendation replaces the old one.
+ * <p>
+ * Progress is checkpointed to Mongo after every page. One instance runs the backfill at a time,
+ * holding a lease on the checkpoint; if it dies, another instance resumes from the last page
+ * once the lease runs out.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RecommendationBackfill {
+    static final String JOB_ID = "recommendations";
+
+    private final ActivityServiceClient activityServiceClient;
+    private final RecommendationGenerator recommendationGenerator;
+    private final RecommendationRepository recommendationRepository;
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ai.backfill.page-size:200}")
+    private int pageSize;
+
+    @Value("${ai.backfill.parallelism:8}")
+    private int parallelism;
+
+    @Value("${ai.backfill.lease:10m}")
+    private Duration lease;
+
+    @Value("${ai.backfill.resume-interrupted:true}")
+    private boolean resumeInterrupted;
+
+    private final String owner = UUID.randomUUID().toString();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicBoolean stopRequested = new AtomicBoolean();
+    private final AtomicLong scanned = new AtomicLong();
+    private final AtomicLong regenerated = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private volatile BackfillCheckpoint current;
+    private volatile long resumedAtNanos;
+    private volatile long scannedAtResume;
+
+    private Counter regeneratedCounter;
+    private Counter skippedCounter;
+    private Counter failedCounter;
+
+    @PostConstruct
+    void init() {
+        regeneratedCounter = activities("regenerated");
+        skippedCounter = activities("skipped");
+        failedCounter = activities("failed");
+    }
+
+    /**
+     * Starts the backfill on this instance, resuming from its checkpoint unless restart is set or
+     * the recommendation version changed since. Emits false if it is already running here or on
+     * another instance.
+     */
+    public Mono<Boolean> start(boolean restart) {
+        if (!running.compareAndSet(false, true)) {
+            return Mono.just(false);
+        }
+        stopRequested.set(false);
+        return claim()
+                .flatMap(checkpoint -> prepare(checkpoint, restart))
+                .map(checkpoint -> {
+                    run(checkpoint);
+                    return true;
+                })
+                .defaultIfEmpty(false)
+                .doOnNext(started -> {
+                    if (!started) {
+                        running.set(false);
+                    }
+                })
+                .doOnError(e -> running.set(false));
+    }
+
+    /**
+     * Asks the backfill running on this instance to stop after the page in progress. Returns
+     * false if it is not running here.
+     */
+    public boolean stop() {
+        if (!running.get()) {
+            return false;
+        }
+        stopRequested.set(true);
+        return true;
+    }
+
+    /**
+     * The progress of the run on this instance, or, when it runs elsewhere or not at all, of the
+     * last checkpoint; empty if the backfill never ran.
+     */
+    public Mono<BackfillProgress> progress() {
+        BackfillCheckpoint checkpoint = current;
+        if (running.get() && checkpoint != null) {
+            double seconds = (System.nanoTime() - resumedAtNanos) / 1e9;
+            double rate = seconds > 0 ? (scanned.get() - scannedAtResume) / seconds : 0;
+            return Mono.just(progress(withCounters(checkpoint), rate));
+        }
+        return mongoTemplate.findById(JOB_ID, BackfillCheckpoint.class)
+                .map(stored -> progress(stored, 0));
+    }
+
+    /**
+     * Resumes a run whose instance died: its checkpoint still says RUNNING but the lease ran out.
+     */
+    @Scheduled(fixedDelayString = "${ai.backfill.resume-check-ms:60000}")
+    public void resumeInterrupted() {
+        if (!resumeInterrupted || running.get()) {
+            return;
+        }
+        mongoTemplate.findById(JOB_ID, BackfillCheckpoint.class)
+                .filter(checkpoint -> checkpoint.getStatus() == BackfillStatus.RUNNING
+                        && checkpoint.getLeaseUntil() != null
+                        && checkpoint.getLeaseUntil().isBefore(LocalDateTime.now()))
+                .flatMap(checkpoint -> {
+                    log.info("Resuming interrupted recommendation backfill after activity {}", checkpoint.getCursor());
+                    return start(false);
+                })
+                .subscribe(null, e -> log.warn("Could not resume recommendation backfill: {}", e.getMessage()));
+    }
+
+    /**
+     * Takes the lease on the checkpoint, creating it on the first run. Empty if another instance
+     * holds it.
+     */
+    private Mono<BackfillCheckpoint> claim() {
+        LocalDateTime now = LocalDateTime.now();
+        // Matches only a checkpoint that can be taken; for a live run elsewhere the upsert tries
+        // to insert a second document with the same _id and fails
+        Query takeable = Query.query(Criteria.where("_id").is(JOB_ID).orOperator(
+                Criteria.where("status").ne(BackfillStatus.RUNNING),
+                Criteria.where("leaseUntil").lt(now),
+                Criteria.where("owner").is(owner)));
+        Update update = new Update()
+                .set("status", BackfillStatus.RUNNING)
+                .set("owner", owner)
+                .set("leaseUntil", now.plus(lease))
+                .set("updatedAt", now)
+                .unset("error");
+        return mongoTemplate.findAndModify(takeable, update, FindAndModifyOptions.options().upsert(true).returnNew(true),
+                        BackfillCheckpoint.class)
+                .onErrorResume(DuplicateKeyException.class, e -> {
+                    log.info("Recommendation backfill is already running on another instance");
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<BackfillCheckpoint> prepare(BackfillCheckpoint checkpoint, boolean restart) {
+        String version = recommendationGenerator.version();
+        if (restart || !version.equals(checkpoint.getVersion())) {
+            checkpoint.setVersion(version);
+            checkpoint.setCursor(null);
+            checkpoint.setScanned(0);
+            checkpoint.setRegenerated(0);
+            checkpoint.setSkipped(0);
+            checkpoint.setFailed(0);
+            checkpoint.setStartedAt(LocalDateTime.now());
+        }
+        return activityServiceClient.count()
+                .onErrorResume(e -> {
+                    log.warn("Could not estimate the number of activities; the backfill has no ETA: {}", e.getMessage());
+                    return Mono.just(0L);
+                })
+                .flatMap(total -> {
+                    checkpoint.setTotal(total);
+                    scanned.set(checkpoint.getScanned());
+                    regenerated.set(checkpoint.getRegenerated());
+                    skipped.set(checkpoint.getSkipped());
+                    failed.set(checkpoint.getFailed());
+                    return save(checkpoint);
+                });
+    }
+
+    private void run(BackfillCheckpoint checkpoint) {
+        current = checkpoint;
+        resumedAtNanos = System.nanoTime();
+        scannedAtResume = scanned.get();
+        log.info("Recommendation backfill to version {} starting after activity {}",
+                checkpoint.getVersion(), checkpoint.getCursor());
+        AtomicBoolean exhausted = new AtomicBoolean();
+        Mono.defer(() -> nextPage(checkpoint))
+                .repeat()
+                .takeUntil(last -> {
+                    exhausted.set(last);
+                    return last || stopRequested.get();
+                })
+                .then(Mono.defer(() -> finish(checkpoint,
+                        exhausted.get() ? BackfillStatus.COMPLETED : BackfillStatus.STOPPED, null)))
+                .onErrorResume(e -> {
+                    log.error("Recommendation backfill failed after activity {}: {}", checkpoint.getCursor(), e.getMessage(), e);
+                    return finish(checkpoint, BackfillStatus.FAILED, e.getMessage());
+                })
+                .doFinally(signal -> running.set(false))
+                .subscribe();
+    }
+
+    /**
+     * Backfills the page after the checkpoint's cursor and moves the cursor past it. Emits true
+     * once the last page is done.
+     */
+    private Mono<Boolean> nextPage(BackfillCheckpoint checkpoint) {
+        return activityServiceClient.scan(checkpoint.getCursor(), pageSize)
+                .retryWhen(Retry.backoff(3, Duration.ofSeconds(1)))
+                .flatMap(page -> {
+                    List<Activity> activities = page.getItems() == null ? List.of() : page.getItems();
+                    return currentRecommendations(activities)
+                            .flatMap(existing -> Flux.fromIterable(activities)
+                                    .flatMap(activity -> backfill(activity, existing.get(activity.getId())), parallelism)
+                                    .then())
+                            .then(Mono.defer(() -> {
+                                scanned.addAndGet(activities.size());
+                                if (!activities.isEmpty()) {
+                                    checkpoint.setCursor(activities.get(activities.size() - 1).getId());
+                                }
+                                return save(checkpoint);
+                            }))
+                            .thenReturn(isLast(page));
+                });
+    }
+
+    private Mono<Void> backfill(Activity activity, Recommendation existing) {
+        if (existing != null && recommendationGenerator.version().equals(existing.getVersion())
+                && !ActivityAIService.isDefault(existing)) {
+            skipped.incrementAndGet();
+            skippedCounter.increment();
+            return Mono.empty();
+        }
+        return recommendationGenerator.generate(activity, ActivityLane.REPLAY)
+                .flatMap(recommendation -> {
+                    if (existing != null) {
+                        // Same id, so the save replaces the old recommendation, and the same
+                        // createdAt, which auditing does not set on a replace, so it keeps its place
+                        // in the user's newest-first history
+                        recommendation.setId(existing.getId());
+                        recommendation.setCreatedAt(existing.getCreatedAt());
+                    }
+                    return recommendationRepository.save(recommendation);
+                })
+                .doOnSuccess(saved -> {
+                    regenerated.incrementAndGet();
+                    regeneratedCounter.increment();
+                })
+                // The listener stored a current one after the page was read
+                .onErrorResume(DuplicateKeyException.class, e -> {
+                    skipped.incrementAndGet();
+                    skippedCounter.increment();
+                    return Mono.empty();
+                })
+                .onErrorResume(e -> {
+                    failed.incrementAndGet();
+                    failedCounter.increment();
+                    log.warn("Backfill could not regenerate the recommendation for activity {}: {}",
+                            activity.getId(), e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Mono<Map<String, Recommendation>> currentRecommendations(List<Activity> activities) {
+        if (activities.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+        Query query = Query.query(Criteria.where("activityId").in(activities.stream().map(Activity::getId).toList()));
+        query.fields().include("activityId", "version", "recommendation", "createdAt");
+        return mongoTemplate.find(query, Recommendation.class)
+                .collectMap(Recommendation::getActivityId);
+    }
+
+    private Mono<Void> finish(BackfillCheckpoint checkpoint, BackfillStatus status, String error) {
+        checkpoint.setStatus(status);
+        checkpoint.setError(error);
+        return save(checkpoint)
+                .doOnNext(saved -> log.info("Recommendation backfill {}: {} scanned, {} regenerated, {} skipped, {} failed",
+                        status.name().toLowerCase(), saved.getScanned(), saved.getRegenerated(),
+                        saved.getSkipped(), saved.getFailed()))
+                .onErrorResume(e -> {
+                    log.warn("Could not save the backfill checkpoint: {}", e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * Saves the checkpoint and extends the lease, as long as this instance still holds it.
+     */
+    private Mono<BackfillCheckpoint> save(BackfillCheckpoint checkpoint) {
+        LocalDateTime now = LocalDateTime.now();
+        withCounters(checkpoint);
+        checkpoint.setOwner(owner);
+        checkpoint.setUpdatedAt(now);
+        checkpoint.setLeaseUntil(now.plus(lease));
+        return mongoTemplate.findAndReplace(Query.query(Criteria.where("_id").is(JOB_ID).and("owner").is(owner)), checkpoint)
+                .thenReturn(checkpoint)
+                .switchIfEmpty(Mono.error(new IllegalStateException("Another instance took over the backfill")));
+    }
+
+    private BackfillCheckpoint withCounters(BackfillCheckpoint checkpoint) {
+        checkpoint.setScanned(scanned.get());
+        checkpoint.setRegenerated(regenerated.get());
+        checkpoint.setSkipped(skipped.get());
+        checkpoint.setFailed(failed.get());
+        return checkpoint;
+    }
+
+    private static boolean isLast(ActivityScanPage page) {
+        return page.getNextCursor() == null;
+    }
+
+    static BackfillProgress progress(BackfillCheckpoint checkpoint, double rate) {
+        long total = checkpoint.getTotal();
+        long scanned = checkpoint.getScanned();
+        double percent = total > 0 ? Math.min(100.0, scanned * 100.0 / total) : 0;
+        Long etaSeconds = null;
+        if (checkpoint.getStatus() == BackfillStatus.RUNNING && rate > 0 && total > 0) {
+            etaSeconds = (long) Math.ceil(Math.max(0, total - scanned) / rate);
+        }
+        return new BackfillProgress(checkpoint.getStatus(), checkpoint.getVersion(), checkpoint.getCursor(),
+                scanned, checkpoint.getRegenerated(), checkpoint.getSkipped(), checkpoint.getFailed(), total,
+                percent, rate, etaSeconds, checkpoint.getStartedAt(), checkpoint.getUpdatedAt(), checkpoint.getError());
+    }
+
+    private Counter activities(String result) {
+        return Counter.builder("ai.backfill.activities")
+                .description("Activities the recommendation backfill went through")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
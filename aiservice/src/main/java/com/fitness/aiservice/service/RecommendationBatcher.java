@@ -0,0 +1,154 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.Recommendation;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gathers activities from concurrent callers into one Gemini prompt. A batch is sent once it
+ * holds max-size activities or max-wait after its first activity arrived, whichever comes first.
+ * Activities the parsed batch response does not cover fall back to a call of their own. If the
+ * batch call fails or its answer cannot be parsed, every activity in it fails with that error and
+ * is left to the listener's retry and dead-letter path, so one throttled call does not turn into
+ * a call per activity against the same limit.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RecommendationBatcher {
+    private final ActivityAIService activityAIService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ai.batching.enabled:false}")
+    private boolean enabled;
+
+    @Value("${ai.batching.max-size:4}")
+    private int maxSize;
+
+    @Value("${ai.batching.max-wait-ms:200}")
+    private long maxWaitMs;
+
+    private final Object lock = new Object();
+    private List<Pending> pending = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush;
+
+    private ScheduledExecutorService timer;
+    private DistributionSummary batchSize;
+    private Counter fallbacks;
+
+    @PostConstruct
+    void init() {
+        timer = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().name("recommendation-batcher").factory());
+        batchSize = DistributionSummary.builder("ai.batch.size")
+                .description("Activities sent to Gemini in one prompt")
+                .register(meterRegistry);
+        fallbacks = Counter.builder("ai.batch.fallbacks")
+                .description("Activities of a batch that needed a call of their own")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * Emits the recommendation for the activity once its batch has been answered.
+     */
+    public Mono<Recommendation> recommend(Activity activity) {
+        if (!enabled || maxSize <= 1) {
+            return activityAIService.generateRecommendation(activity);
+        }
+        // Cancelling one caller must not fail the future the batch completes
+        return Mono.fromFuture(() -> submit(activity), true);
+    }
+
+    CompletableFuture<Recommendation> submit(Activity activity) {
+        Pending item = new Pending(activity, new CompletableFuture<>());
+        List<Pending> full = null;
+        synchronized (lock) {
+            pending.add(item);
+            if (pending.size() >= maxSize) {
+                full = takePending();
+            } else if (pending.size() == 1) {
+                scheduledFlush = timer.schedule(this::flushPending, maxWaitMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (full != null) {
+            dispatch(full);
+        }
+        return item.result();
+    }
+
+    private void flushPending() {
+        List<Pending> batch;
+        synchronized (lock) {
+            batch = takePending();
+        }
+        dispatch(batch);
+    }
+
+    private List<Pending> takePending() {
+        List<Pending> batch = pending;
+        pending = new ArrayList<>();
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        return batch;
+    }
+
+    private void dispatch(List<Pending> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        batchSize.record(batch.size());
+        Mono<Map<String, Recommendation>> answered = batch.size() == 1
+                ? Mono.just(Map.of())
+                : activityAIService.generateRecommendations(batch.stream().map(Pending::activity).toList());
+        answered.subscribe(recommendations -> complete(batch, recommendations), error -> fail(batch, error));
+    }
+
+    private void fail(List<Pending> batch, Throwable error) {
+        log.warn("Batch recommendation for {} activities failed: {}", batch.size(), error.getMessage());
+        for (Pending item : batch) {
+            item.result().completeExceptionally(error);
+        }
+    }
+
+    private void complete(List<Pending> batch, Map<String, Recommendation> answered) {
+        for (Pending item : batch) {
+            Recommendation recommendation = answered.get(item.activity().getId());
+            if (recommendation != null) {
+                item.result().complete(recommendation);
+                continue;
+            }
+            if (batch.size() > 1) {
+                fallbacks.increment();
+            }
+            activityAIService.generateRecommendation(item.activity())
+                    .subscribe(item.result()::complete, item.result()::completeExceptionally);
+        }
+    }
+
+    private record Pending(Activity activity, CompletableFuture<Recommendation> result) {
+    }
+}
@@ -0,0 +1,202 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.CachedRecommendation;
+import com.fitness.aiservice.model.Recommendation;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Reuses advice across activities with the same {@link ActivityFingerprint}, so near-identical
+ * workouts do not each cost a Gemini call. Entries live in a bounded in-memory tier and, when
+ * enabled, in a Mongo collection shared by all instances; both expire after the configured TTL.
+ * The generic fallback recommendation is never cached.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RecommendationCache {
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ai.recommendation-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${ai.recommendation-cache.max-size:10000}")
+    private long maxSize;
+
+    @Value("${ai.recommendation-cache.ttl:7d}")
+    private Duration ttl;
+
+    @Value("${ai.recommendation-cache.mongo.enabled:false}")
+    private boolean mongoEnabled;
+
+    @Value("${ai.recommendations.version:1}")
+    private String version;
+
+    private Cache<String, CachedRecommendation> memory;
+    private Counter memoryHits;
+    private Counter mongoHits;
+    private Counter misses;
+
+    @PostConstruct
+    void init() {
+        memory = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, memory, "recommendationCache");
+        memoryHits = requests("hit-memory");
+        mongoHits = requests("hit-mongo");
+        misses = requests("miss");
+        FunctionCounter.builder("ai.recommendation.cache.avoided.calls", this,
+                        cache -> cache.memoryHits.count() + cache.mongoHits.count())
+                .description("Activities answered from the cache instead of a Gemini call")
+                .register(meterRegistry);
+        Gauge.builder("ai.recommendation.cache.hit.ratio", this, RecommendationCache::hitRatio)
+                .description("Share of activities answered from either cache tier")
+                .register(meterRegistry);
+
+        if (enabled && mongoEnabled) {
+            // Mongo removes expired entries itself; the TTL monitor runs about once a minute
+            mongoTemplate.indexOps(CachedRecommendation.class)
+                    .ensureIndex(new Index("createdAt", Sort.Direction.ASC).named("ttl_createdAt").expire(ttl))
+                    .block();
+        }
+    }
+
+    /**
+     * Returns the cached advice for the activity's fingerprint, copied onto this activity, or
+     * computes it with the loader and caches the result.
+     */
+    public Mono<Recommendation> recommend(Activity activity, Function<Activity, Mono<Recommendation>> loader) {
+        if (!enabled) {
+            return loader.apply(activity);
+        }
+        return find(activity)
+                .switchIfEmpty(Mono.defer(() -> loader.apply(activity)
+                        .flatMap(recommendation -> store(activity, recommendation).thenReturn(recommendation))));
+    }
+
+    /**
+     * Returns the cached advice for the activity's fingerprint, copied onto this activity, or
+     * nothing on a miss. For callers that produce the advice themselves and {@link #store} it.
+     */
+    public Mono<Recommendation> find(Activity activity) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+        String fingerprint = fingerprint(activity);
+        CachedRecommendation cached = memory.getIfPresent(fingerprint);
+        if (cached != null) {
+            memoryHits.increment();
+            return Mono.just(toRecommendation(activity, cached));
+        }
+        return findInMongo(fingerprint)
+                .map(found -> {
+                    mongoHits.increment();
+                    memory.put(fingerprint, found);
+                    return toRecommendation(activity, found);
+                })
+                .switchIfEmpty(Mono.fromRunnable(misses::increment));
+    }
+
+    /**
+     * Caches the advice generated for the activity, unless it is the generic fallback.
+     */
+    public Mono<Void> store(Activity activity, Recommendation recommendation) {
+        if (!enabled || ActivityAIService.isDefault(recommendation)) {
+            return Mono.empty();
+        }
+        return put(fingerprint(activity), recommendation);
+    }
+
+    double hitRatio() {
+        double hits = memoryHits.count() + mongoHits.count();
+        double total = hits + misses.count();
+        return total == 0 ? 0 : hits / total;
+    }
+
+    private Counter requests(String result) {
+        return Counter.builder("ai.recommendation.cache.requests")
+                .description("Activities looked up in the recommendation cache")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private String fingerprint(Activity activity) {
+        // Advice cached under an older version must not answer the backfill that replaces it
+        return version + ":" + ActivityFingerprint.of(activity);
+    }
+
+    private Mono<Void> put(String fingerprint, Recommendation recommendation) {
+        CachedRecommendation cached = CachedRecommendation.builder()
+                .fingerprint(fingerprint)
+                .recommendation(recommendation.getRecommendation())
+                .improvements(copy(recommendation.getImprovements()))
+                .suggestions(copy(recommendation.getSuggestions()))
+                .safety(copy(recommendation.getSafety()))
+                .createdAt(LocalDateTime.now())
+                .build();
+        memory.put(fingerprint, cached);
+        if (!mongoEnabled) {
+            return Mono.empty();
+        }
+        return mongoTemplate.save(cached)
+                .onErrorResume(e -> {
+                    log.warn("Could not store cached recommendation {}: {}", fingerprint, e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private Mono<CachedRecommendation> findInMongo(String fingerprint) {
+        if (!mongoEnabled) {
+            return Mono.empty();
+        }
+        return mongoTemplate.findById(fingerprint, CachedRecommendation.class)
+                // The TTL monitor lags, so entries past their TTL may still be returned
+                .filter(cached -> cached.getCreatedAt().plus(ttl).isAfter(LocalDateTime.now()))
+                .onErrorResume(e -> {
+                    log.warn("Could not read cached recommendation {}: {}", fingerprint, e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private static Recommendation toRecommendation(Activity activity, CachedRecommendation cached) {
+        return Recommendation.builder()
+                .activityId(activity.getId())
+                .userId(activity.getUserId())
+                .activityType(activity.getType())
+                .recommendation(cached.getRecommendation())
+                .improvements(copy(cached.getImprovements()))
+                .suggestions(copy(cached.getSuggestions()))
+                .safety(copy(cached.getSafety()))
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    private static List<String> copy(List<String> values) {
+        return values == null ? null : List.copyOf(values);
+    }
+}
@@ -0,0 +1,53 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.ActivityLane;
+import com.fitness.aiservice.model.Recommendation;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+/**
+ * Produces an activity's recommendation the cheapest way available: from the
+ * {@link LocalRecommendationEngine}, then the {@link RecommendationCache}, and only then from
+ * Gemini, in the order {@link ActivityLaneScheduler} gives the activity's lane. Every
+ * recommendation is stamped with the current {@code ai.recommendations.version}.
+ */
+@Service
+@RequiredArgsConstructor
+public class RecommendationGenerator {
+    private final LocalRecommendationEngine localEngine;
+    private final RecommendationCache recommendationCache;
+    private final RecommendationBatcher recommendationBatcher;
+    private final ActivityLaneScheduler laneScheduler;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${ai.recommendations.version:1}")
+    private String version;
+
+    public Mono<Recommendation> generate(Activity activity, ActivityLane lane) {
+        return Mono.justOrEmpty(localEngine.recommend(activity))
+                .switchIfEmpty(Mono.defer(() -> recommendationCache.recommend(activity,
+                        uncached -> laneScheduler.run(lane, () -> callGemini(uncached)))))
+                .doOnNext(recommendation -> recommendation.setVersion(version));
+    }
+
+    /**
+     * The version recommendations generated now are stamped with; older ones are regenerated by
+     * the backfill.
+     */
+    public String version() {
+        return version;
+    }
+
+    private Mono<Recommendation> callGemini(Activity activity) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return recommendationBatcher.recommend(activity)
+                    .doOnSuccess(recommendation -> sample.stop(localEngine.geminiLatency()));
+        });
+    }
+}
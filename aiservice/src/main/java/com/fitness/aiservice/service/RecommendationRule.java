@@ -0,0 +1,20 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.Recommendation;
+
+import java.util.Optional;
+
+/**
+ * A local rule that answers an activity without calling Gemini. Rules are beans; the
+ * {@link LocalRecommendationEngine} asks them in {@link org.springframework.core.annotation.Order}
+ * and uses the first answer. A rule only fills in the advice: recommendation text, improvements,
+ * suggestions and safety. The engine sets the activity, user and creation time.
+ */
+public interface RecommendationRule {
+
+    /**
+     * The advice for the activity, or empty to leave it to the next rule or to Gemini.
+     */
+    Optional<Recommendation> recommend(Activity activity);
+}
@@ -1,23 +1,69 @@
 package com.fitness.aiservice.service;
 
+import com.fitness.aiservice.dto.RecommendationPage;
+import com.fitness.aiservice.dto.RecommendationSummary;
 import com.fitness.aiservice.model.Recommendation;
+import com.fitness.aiservice.repository.RecommendationCursor;
 import com.fitness.aiservice.repository.RecommendationRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
+import java.util.function.Function;
 
 @Service
 @RequiredArgsConstructor
 public class RecommendationService {
     private final RecommendationRepository recommendationRepository;
 
-    public List<Recommendation> getUserRecommendation(String userId) {
-         return recommendationRepository.findByUserId(userId);
+    @Value("${ai.recommendations.page.default-size:20}")
+    private int defaultPageSize;
+
+    @Value("${ai.recommendations.page.max-size:100}")
+    private int maxPageSize;
+
+    public Mono<RecommendationPage<Recommendation>> getUserRecommendations(String userId, String cursor, Integer limit) {
+        return page(userId, cursor, limit, false, Function.identity());
     }
 
-    public Recommendation getActivityRecommendation(String activityId) {
+    public Mono<RecommendationPage<RecommendationSummary>> getUserRecommendationSummaries(String userId, String cursor,
+                                                                                         Integer limit) {
+        return page(userId, cursor, limit, true, RecommendationService::toSummary);
+    }
+
+    public Mono<Recommendation> getActivityRecommendation(String activityId) {
         return recommendationRepository.findByActivityId(activityId)
-                .orElseThrow(() -> new RuntimeException("No Recommendation found for this activity " + activityId));
+                .switchIfEmpty(Mono.error(() -> new RuntimeException("No Recommendation found for this activity " + activityId)));
+    }
+
+    private <T> Mono<RecommendationPage<T>> page(String userId, String cursor, Integer limit, boolean summary,
+                                                 Function<Recommendation, T> mapper) {
+        int pageSize = limit == null ? defaultPageSize : Math.max(1, Math.min(limit, maxPageSize));
+        RecommendationCursor after = cursor == null || cursor.isBlank() ? null : RecommendationCursor.decode(cursor);
+
+        // Fetch one extra document to know whether another page exists
+        return recommendationRepository.findPage(userId, after, pageSize + 1, summary)
+                .collectList()
+                .map(recommendations -> {
+                    List<Recommendation> items = recommendations;
+                    String nextCursor = null;
+                    if (items.size() > pageSize) {
+                        items = items.subList(0, pageSize);
+                        Recommendation last = items.get(pageSize - 1);
+                        nextCursor = new RecommendationCursor(last.getCreatedAt(), last.getId()).encode();
+                    }
+                    return new RecommendationPage<>(items.stream().map(mapper).toList(), nextCursor);
+                });
+    }
+
+    private static RecommendationSummary toSummary(Recommendation recommendation) {
+        RecommendationSummary summary = new RecommendationSummary();
+        summary.setId(recommendation.getId());
+        summary.setActivityId(recommendation.getActivityId());
+        summary.setActivityType(recommendation.getActivityType());
+        summary.setCreatedAt(recommendation.getCreatedAt());
+        return summary;
     }
 }
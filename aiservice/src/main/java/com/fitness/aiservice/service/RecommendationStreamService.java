@@ -0,0 +1,118 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.ActivityLane;
+import com.fitness.aiservice.model.Recommendation;
+import com.fitness.aiservice.repository.RecommendationRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Generates an activity's recommendation while the client watches. Each piece of Gemini's text
+ * is pushed as a "delta" event the moment it arrives. The recommendation parsed from the whole
+ * text is saved and pushed as a final "recommendation" event. An activity that already has a
+ * recommendation, that the {@link LocalRecommendationEngine} or {@link RecommendationCache}
+ * answers, or that the listener is already generating, gets only the final event. The stream
+ * claims the activity through {@link ActivityIdempotencyGuard} like the listener does, and its
+ * Gemini call takes a live slot from {@link ActivityLaneScheduler}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RecommendationStreamService {
+    static final String DELTA = "delta";
+    static final String RECOMMENDATION = "recommendation";
+
+    private final ActivityServiceClient activityServiceClient;
+    private final ActivityAIService activityAIService;
+    private final LocalRecommendationEngine localEngine;
+    private final RecommendationRepository recommendationRepository;
+    private final ActivityIdempotencyGuard idempotencyGuard;
+    private final RecommendationCache recommendationCache;
+    private final ActivityLaneScheduler laneScheduler;
+
+    @Value("${ai.recommendations.version:1}")
+    private String version;
+
+    // How often, and how long, a stream whose activity is claimed elsewhere looks for its result
+    @Value("${ai.stream.await.interval:500ms}")
+    private Duration awaitInterval;
+
+    @Value("${ai.stream.await.timeout:90s}")
+    private Duration awaitTimeout;
+
+    public Flux<ServerSentEvent<Object>> stream(String activityId) {
+        return recommendationRepository.findByActivityId(activityId)
+                .map(existing -> event(RECOMMENDATION, existing))
+                .flux()
+                .switchIfEmpty(Flux.defer(() -> activityServiceClient.getActivity(activityId).flatMapMany(this::generate)));
+    }
+
+    private Flux<ServerSentEvent<Object>> generate(Activity activity) {
+        Optional<Recommendation> local = localEngine.recommend(activity);
+        if (local.isPresent()) {
+            return save(activity, local.get()).flux();
+        }
+        return idempotencyGuard.claim(activity.getId())
+                .flatMapMany(claimed -> claimed ? generateClaimed(activity) : awaitStored(activity.getId()).flux());
+    }
+
+    private Flux<ServerSentEvent<Object>> generateClaimed(Activity activity) {
+        String activityId = activity.getId();
+        return recommendationCache.find(activity)
+                .flatMap(cached -> save(activity, cached))
+                .flux()
+                .switchIfEmpty(Flux.defer(() -> callGemini(activity)))
+                .concatWith(idempotencyGuard.complete(activityId).then(Mono.empty()))
+                .onErrorResume(e -> idempotencyGuard.release(activityId).then(Mono.error(e)))
+                // The client went away mid-generation; let the listener or a later stream retry
+                .doOnCancel(() -> idempotencyGuard.release(activityId).subscribe());
+    }
+
+    private Flux<ServerSentEvent<Object>> callGemini(Activity activity) {
+        StringBuilder text = new StringBuilder();
+        Flux<ServerSentEvent<Object>> deltas = laneScheduler.runMany(ActivityLane.LIVE,
+                () -> activityAIService.streamRecommendation(activity)
+                        .doOnNext(text::append)
+                        .map(delta -> event(DELTA, delta)));
+        Mono<ServerSentEvent<Object>> result = Mono.defer(() -> {
+            Recommendation recommendation = activityAIService.processText(activity, text.toString());
+            return recommendationCache.store(activity, recommendation).then(save(activity, recommendation));
+        });
+        return deltas.concatWith(result);
+    }
+
+    /**
+     * Waits for the recommendation of an activity that the listener, or another stream, claimed.
+     */
+    private Mono<ServerSentEvent<Object>> awaitStored(String activityId) {
+        log.info("Activity {} is being processed elsewhere; waiting for its recommendation", activityId);
+        return recommendationRepository.findByActivityId(activityId)
+                .repeatWhenEmpty(attempts -> attempts.delayElements(awaitInterval))
+                .timeout(awaitTimeout, Mono.error(() -> new IllegalStateException(
+                        "Recommendation for activity " + activityId + " is still being generated")))
+                .map(stored -> event(RECOMMENDATION, stored));
+    }
+
+    private Mono<ServerSentEvent<Object>> save(Activity activity, Recommendation recommendation) {
+        recommendation.setVersion(version);
+        return recommendationRepository.save(recommendation)
+                // The listener stored one while this stream was generating; send that one instead
+                .onErrorResume(DuplicateKeyException.class, e -> recommendationRepository.findByActivityId(activity.getId()))
+                .doOnNext(saved -> log.info("Streamed recommendation for activity {}", activity.getId()))
+                .map(saved -> event(RECOMMENDATION, saved));
+    }
+
+    private static ServerSentEvent<Object> event(String name, Object data) {
+        return ServerSentEvent.builder(data).event(name).build();
+    }
+}
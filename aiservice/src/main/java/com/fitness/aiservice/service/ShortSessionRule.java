@@ -0,0 +1,85 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.Recommendation;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Answers short sessions of the configured activity types, such as a few minutes of stretching,
+ * with fixed advice for the type. Each type has its own limit in minutes; types without one are
+ * left to Gemini.
+ */
+@Component
+@Order(10)
+public class ShortSessionRule implements RecommendationRule {
+
+    private record Advice(String analysis, String improvement, String suggestion, List<String> safety) {
+    }
+
+    private static final Map<String, Advice> ADVICE = Map.of(
+            "STRETCHING", new Advice(
+                    "A short stretching session that helps mobility and recovery.",
+                    "Consistency: Short daily stretching does more for range of motion than occasional long sessions",
+                    "Mobility flow: 10 minutes covering hips, hamstrings, shoulders and thoracic spine",
+                    List.of("Stretch warm muscles and never bounce", "Stop if a stretch becomes painful")),
+            "YOGA", new Advice(
+                    "A short yoga session that supports flexibility, balance and breathing.",
+                    "Breathing: Keep a slow, steady breath and hold each pose for several breaths",
+                    "Longer practice: A 30-minute session with standing, balance and floor poses",
+                    List.of("Use props to avoid forcing poses", "Avoid positions that strain your neck or lower back")),
+            "WALKING", new Advice(
+                    "A short walk that adds to your daily activity and aids recovery.",
+                    "Duration: Build towards 30 minutes or more at a brisk pace",
+                    "Brisk walk: 30 minutes at a pace where talking takes some effort",
+                    List.of("Wear supportive footwear", "Stay visible when walking near traffic")),
+            "CARDIO", new Advice(
+                    "A short cardio session that raises your heart rate and adds to your weekly activity.",
+                    "Duration: Extend sessions gradually towards 20 to 30 minutes",
+                    "Steady cardio: 25 minutes at a moderate, conversational intensity",
+                    List.of("Warm up for a few minutes first", "Stay hydrated")),
+            "OTHER", new Advice(
+                    "A short session that adds to your weekly activity.",
+                    "Consistency: Regular short sessions add up; aim for 150 minutes of moderate activity a week",
+                    "Full session: 30 minutes of your preferred activity at a moderate intensity",
+                    List.of("Warm up before exercise", "Listen to your body")));
+
+    // Types and their limit in minutes, e.g. STRETCHING:20
+    @Value("${ai.local-rules.short-session.max-minutes:STRETCHING:20,YOGA:15,WALKING:15,CARDIO:10,OTHER:10}")
+    private List<String> maxMinutesByType;
+
+    private final Map<String, Integer> maxMinutes = new HashMap<>();
+
+    @PostConstruct
+    void init() {
+        for (String entry : maxMinutesByType) {
+            int separator = entry.lastIndexOf(':');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Expected TYPE:minutes in ai.local-rules.short-session.max-minutes, got " + entry);
+            }
+            maxMinutes.put(entry.substring(0, separator).trim(), Integer.parseInt(entry.substring(separator + 1).trim()));
+        }
+    }
+
+    @Override
+    public Optional<Recommendation> recommend(Activity activity) {
+        Integer limit = maxMinutes.get(activity.getType());
+        if (limit == null || activity.getDuration() == null || activity.getDuration() > limit) {
+            return Optional.empty();
+        }
+        Advice advice = ADVICE.getOrDefault(activity.getType(), ADVICE.get("OTHER"));
+        return Optional.of(Recommendation.builder()
+                .recommendation("Overall:" + advice.analysis())
+                .improvements(List.of(advice.improvement()))
+                .suggestions(List.of(advice.suggestion()))
+                .safety(advice.safety())
+                .build());
+    }
+}
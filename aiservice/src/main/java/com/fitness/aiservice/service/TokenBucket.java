@@ -0,0 +1,53 @@
+package com.fitness.aiservice.service;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * A per-minute budget that refills continuously. {@link #reserve} never refuses: it takes the
+ * tokens, letting the balance go negative, and returns how long the caller must wait before
+ * using them, so callers are served in the order they reserved without polling.
+ */
+class TokenBucket {
+    private static final double NANOS_PER_MINUTE = 60e9;
+
+    private final double capacity;
+    private final double refillPerNano;
+    private final LongSupplier clock;
+    private double available;
+    private long lastRefill;
+
+    TokenBucket(long perMinute, LongSupplier clock) {
+        this.capacity = perMinute;
+        this.refillPerNano = perMinute / NANOS_PER_MINUTE;
+        this.clock = clock;
+        this.available = perMinute;
+        this.lastRefill = clock.getAsLong();
+    }
+
+    synchronized Duration reserve(double tokens) {
+        refill();
+        // A single request larger than the whole budget waits for a full bucket, not forever
+        available -= Math.min(tokens, capacity);
+        return available >= 0 ? Duration.ZERO : Duration.ofNanos(Math.round(-available / refillPerNano));
+    }
+
+    /**
+     * Corrects an earlier reservation once the actual usage is known; a negative delta refunds.
+     */
+    synchronized void adjust(double delta) {
+        refill();
+        available = Math.min(capacity, available - delta);
+    }
+
+    synchronized double available() {
+        refill();
+        return available;
+    }
+
+    private void refill() {
+        long now = clock.getAsLong();
+        available = Math.min(capacity, available + (now - lastRefill) * refillPerNano);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,27 @@
+package com.fitness.aiservice.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ActivityMetricsTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void legacyNamesAreWrittenBackButPromptsUseTypedNames() throws Exception {
+        ActivityMetrics metrics = objectMapper.readValue("""
+                {"distance": 8, "heartRate": "150.5", "paceMinPerKm": 5.1, "cadence": 168}
+                """, ActivityMetrics.class);
+
+        assertThat(metrics.getDistanceKm()).isEqualTo(8.0);
+        assertThat(metrics.getAvgHeartRate()).isEqualTo(150.5);
+        assertThat(objectMapper.writeValueAsString(metrics))
+                .isEqualTo("{\"distance\":8.0,\"heartRate\":150.5,\"paceMinPerKm\":5.1,\"cadence\":168}");
+        assertThat(metrics.asMap()).containsExactly(Map.entry("distanceKm", 8.0), Map.entry("avgHeartRate", 150.5),
+                Map.entry("paceMinPerKm", 5.1), Map.entry("cadence", 168));
+    }
+}
@@ -0,0 +1,154 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.ActivityClaim;
+import com.fitness.aiservice.model.Recommendation;
+import com.fitness.aiservice.repository.RecommendationRepository;
+import com.fitness.aiservice.support.FakeGeminiServer;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ActivityIdempotencyGuardTest {
+
+    private static final int DUPLICATES = 20;
+
+    private final FakeGeminiServer gemini;
+    // Claim documents by activity id; stands in for the unique _id of activity_claims
+    private final Set<String> claims = ConcurrentHashMap.newKeySet();
+    private final ReactiveMongoTemplate mongoTemplate = mongoTemplate(claims);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RecommendationRepository repository = mock(RecommendationRepository.class);
+    private final ActivityRetryRouter retryRouter = mock(ActivityRetryRouter.class);
+
+    ActivityIdempotencyGuardTest() throws Exception {
+        gemini = new FakeGeminiServer().latency(200, 0);
+        when(repository.save(any(Recommendation.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(retryRouter.route(any(), any(), anyInt(), any())).thenReturn(Mono.empty());
+    }
+
+    @AfterEach
+    void tearDown() {
+        gemini.close();
+    }
+
+    @Test
+    void burstOfDuplicatesCallsGeminiOncePerActivity() {
+        ActivityMessageListener listener = listener(guard(mongoTemplate, meterRegistry));
+
+        StepVerifier.create(Flux.range(0, 3 * DUPLICATES)
+                        .flatMap(i -> listener.processActivity(RecommendationBatcherTest.activity("activity-" + i % 3)), 64))
+                .verifyComplete();
+
+        assertThat(gemini.calls()).isEqualTo(3);
+        assertThat(meterRegistry.counter("ai.activity.duplicates", "source", "memory").count())
+                .isEqualTo(3 * (DUPLICATES - 1));
+    }
+
+    @Test
+    void redeliveryAfterRestartIsSkippedByTheMongoClaim() {
+        listener(guard(mongoTemplate, meterRegistry)).processActivity(RecommendationBatcherTest.activity("activity-1")).block();
+
+        // A new instance has an empty in-memory set
+        ActivityMessageListener restarted = listener(guard(mongoTemplate, meterRegistry));
+        StepVerifier.create(Flux.range(0, DUPLICATES)
+                        .flatMap(i -> restarted.processActivity(RecommendationBatcherTest.activity("activity-1"))))
+                .verifyComplete();
+
+        assertThat(gemini.calls()).isEqualTo(1);
+        assertThat(meterRegistry.counter("ai.activity.duplicates", "source", "mongo").count()).isEqualTo(1);
+    }
+
+    @Test
+    void failedActivityIsReleasedForTheNextDelivery() {
+        ActivityMessageListener listener = listener(guard(mongoTemplate, meterRegistry));
+        gemini.failNext(1, 400);
+
+        StepVerifier.create(listener.processActivity(RecommendationBatcherTest.activity("activity-1")))
+                .verifyComplete();
+        verify(retryRouter).route(any(), any(), eq(0), any(WebClientResponseException.BadRequest.class));
+        assertThat(claims).isEmpty();
+
+        StepVerifier.create(listener.processActivity(RecommendationBatcherTest.activity("activity-1")))
+                .verifyComplete();
+        assertThat(gemini.calls()).isEqualTo(2);
+        assertThat(claims).containsExactly("activity-1");
+    }
+
+    static ActivityIdempotencyGuard guard(ReactiveMongoTemplate mongoTemplate, MeterRegistry meterRegistry) {
+        ActivityIdempotencyGuard guard = new ActivityIdempotencyGuard(mongoTemplate, meterRegistry);
+        ReflectionTestUtils.setField(guard, "enabled", true);
+        ReflectionTestUtils.setField(guard, "recentMaxSize", 10_000L);
+        ReflectionTestUtils.setField(guard, "recentTtl", Duration.ofHours(1));
+        ReflectionTestUtils.setField(guard, "lease", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(guard, "retention", Duration.ofDays(30));
+        guard.init();
+        return guard;
+    }
+
+    private ActivityMessageListener listener(ActivityIdempotencyGuard guard) {
+        ActivityAIService activityAIService = new ActivityAIService(gemini.client(16),
+                PromptBuilderTest.promptBuilder());
+        RecommendationBatcher batcher = new RecommendationBatcher(activityAIService, meterRegistry);
+        RecommendationCache cache = new RecommendationCache(null, meterRegistry);
+        ReflectionTestUtils.setField(cache, "maxSize", 100L);
+        ReflectionTestUtils.setField(cache, "ttl", Duration.ofDays(7));
+        cache.init();
+        RecommendationGenerator generator = new RecommendationGenerator(LocalRecommendationEngineTest.engine(meterRegistry),
+                cache, batcher, ActivityLaneSchedulerTest.scheduler(meterRegistry, 64, 16), meterRegistry);
+        return new ActivityMessageListener(guard, generator, repository, retryRouter,
+                ActivityLaneSchedulerTest.lanes(), meterRegistry);
+    }
+
+    /**
+     * A template whose claim upserts fail with a duplicate key for ids that already have a claim,
+     * which is what Mongo does when the upsert's filter does not match the existing document.
+     */
+    static ReactiveMongoTemplate mongoTemplate(Set<String> claims) {
+        ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+        ReactiveIndexOperations indexOps = mock(ReactiveIndexOperations.class);
+        when(indexOps.ensureIndex(any(IndexDefinition.class))).thenReturn(Mono.just("ttl_createdAt"));
+        when(mongoTemplate.indexOps(ActivityClaim.class)).thenReturn(indexOps);
+        when(mongoTemplate.upsert(any(Query.class), any(UpdateDefinition.class), eq(ActivityClaim.class)))
+                .thenAnswer(invocation -> Mono.defer(() -> claims.add(id(invocation.getArgument(0)))
+                        ? Mono.just(UpdateResult.acknowledged(0, 0L, null))
+                        : Mono.error(new DuplicateKeyException("E11000 duplicate key"))));
+        when(mongoTemplate.updateFirst(any(Query.class), any(UpdateDefinition.class), eq(ActivityClaim.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        when(mongoTemplate.remove(any(Query.class), eq(ActivityClaim.class)))
+                .thenAnswer(invocation -> Mono.fromSupplier(() -> {
+                    claims.remove(id(invocation.getArgument(0)));
+                    return DeleteResult.acknowledged(1);
+                }));
+        return mongoTemplate;
+    }
+
+    private static String id(Query query) {
+        return query.getQueryObject().getString("_id");
+    }
+}
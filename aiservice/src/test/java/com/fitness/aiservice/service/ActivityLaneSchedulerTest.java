@@ -0,0 +1,129 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.config.ActivityLanes;
+import com.fitness.aiservice.model.ActivityLane;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ActivityLaneSchedulerTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<ActivityLane> granted = new CopyOnWriteArrayList<>();
+
+    @Test
+    void freedSlotsAreSharedByWeight() {
+        ActivityLaneScheduler scheduler = scheduler(meterRegistry, 4, 0, List.of("LIVE:3", "BULK:1"));
+        acquire(scheduler, ActivityLane.BULK, 4);
+        acquire(scheduler, ActivityLane.BULK, 100);
+        acquire(scheduler, ActivityLane.LIVE, 100);
+        granted.clear();
+
+        for (int i = 0; i < 80; i++) {
+            scheduler.release();
+        }
+
+        // The four slots bulk already held count against it, so live is one turn ahead
+        assertThat(granted).filteredOn(lane -> lane == ActivityLane.LIVE).hasSize(61);
+        assertThat(granted).filteredOn(lane -> lane == ActivityLane.BULK).hasSize(19);
+    }
+
+    @Test
+    void reservedSlotsAreKeptForLiveActivities() {
+        ActivityLaneScheduler scheduler = scheduler(meterRegistry, 4, 2);
+
+        acquire(scheduler, ActivityLane.BULK, 4);
+        acquire(scheduler, ActivityLane.LIVE, 2);
+
+        assertThat(granted).containsExactly(ActivityLane.BULK, ActivityLane.BULK, ActivityLane.LIVE, ActivityLane.LIVE);
+        assertThat(scheduler.waiting(ActivityLane.BULK)).isEqualTo(2);
+    }
+
+    @Test
+    void idleLaneIsNotCreditedForTimeItDidNotUse() {
+        ActivityLaneScheduler scheduler = scheduler(meterRegistry, 1, 0, List.of("LIVE:1", "BULK:1"));
+        acquire(scheduler, ActivityLane.BULK, 1);
+        for (int i = 0; i < 10; i++) {
+            acquire(scheduler, ActivityLane.BULK, 1);
+            scheduler.release();
+        }
+        acquire(scheduler, ActivityLane.LIVE, 10);
+        acquire(scheduler, ActivityLane.BULK, 10);
+        granted.clear();
+
+        for (int i = 0; i < 6; i++) {
+            scheduler.release();
+        }
+
+        // Live joins at bulk's position instead of being owed the ten turns it was idle
+        assertThat(granted).containsExactly(ActivityLane.LIVE, ActivityLane.LIVE, ActivityLane.BULK,
+                ActivityLane.LIVE, ActivityLane.BULK, ActivityLane.LIVE);
+    }
+
+    @Test
+    void cancelledWaiterGivesUpItsPlace() {
+        ActivityLaneScheduler scheduler = scheduler(meterRegistry, 1, 0);
+        acquire(scheduler, ActivityLane.LIVE, 1);
+        Disposable waiting = scheduler.acquire(ActivityLane.BULK).subscribe(permit -> granted.add(ActivityLane.BULK));
+
+        waiting.dispose();
+        scheduler.release();
+
+        assertThat(granted).containsExactly(ActivityLane.LIVE);
+        assertThat(scheduler.inFlight()).isZero();
+        assertThat(meterRegistry.get("ai.activity.lane.wait").tag("lane", "live").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void streamHoldsItsSlotUntilItEnds() {
+        ActivityLaneScheduler scheduler = scheduler(meterRegistry, 1, 0);
+        Sinks.Many<String> chunks = Sinks.many().unicast().onBackpressureBuffer();
+        scheduler.runMany(ActivityLane.LIVE, chunks::asFlux).subscribe();
+        acquire(scheduler, ActivityLane.BULK, 1);
+
+        chunks.tryEmitNext("first");
+        assertThat(granted).isEmpty();
+        chunks.tryEmitComplete();
+
+        assertThat(granted).containsExactly(ActivityLane.BULK);
+    }
+
+    private void acquire(ActivityLaneScheduler scheduler, ActivityLane lane, int count) {
+        for (int i = 0; i < count; i++) {
+            scheduler.acquire(lane).subscribe(permit -> granted.add(lane));
+        }
+    }
+
+    static ActivityLaneScheduler scheduler(MeterRegistry meterRegistry, int maxInFlight, int liveReserved) {
+        return scheduler(meterRegistry, maxInFlight, liveReserved, List.of("LIVE:8", "BULK:2", "REPLAY:1"));
+    }
+
+    static ActivityLaneScheduler scheduler(MeterRegistry meterRegistry, int maxInFlight, int liveReserved,
+                                           List<String> weights) {
+        ActivityLaneScheduler scheduler = new ActivityLaneScheduler(meterRegistry);
+        ReflectionTestUtils.setField(scheduler, "maxInFlight", maxInFlight);
+        ReflectionTestUtils.setField(scheduler, "liveReserved", liveReserved);
+        ReflectionTestUtils.setField(scheduler, "weightsByLane", weights);
+        scheduler.init();
+        return scheduler;
+    }
+
+    static ActivityLanes lanes() {
+        ActivityLanes lanes = new ActivityLanes();
+        ReflectionTestUtils.setField(lanes, "liveQueue", "activity.queue");
+        ReflectionTestUtils.setField(lanes, "liveRoutingKey", "activity.tracking");
+        ReflectionTestUtils.setField(lanes, "bulkQueue", "activity.bulk.queue");
+        ReflectionTestUtils.setField(lanes, "bulkRoutingKey", "activity.tracking.bulk");
+        ReflectionTestUtils.setField(lanes, "replayQueue", "activity.replay.queue");
+        ReflectionTestUtils.setField(lanes, "replayRoutingKey", "activity.tracking.replay");
+        return lanes;
+    }
+}
@@ -0,0 +1,34 @@
+package com.fitness.aiservice.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ActivityListenerScalerTest {
+
+    @Test
+    void scalesUpWithDepthWithinBounds() {
+        ActivityListenerScaler scaler = scaler();
+
+        assertThat(scaler.desiredConsumers(0, 1)).isEqualTo(1);
+        assertThat(scaler.desiredConsumers(11, 1)).isEqualTo(3);
+        assertThat(scaler.desiredConsumers(500, 3)).isEqualTo(8);
+    }
+
+    @Test
+    void scalesDownOneConsumerAtATime() {
+        ActivityListenerScaler scaler = scaler();
+
+        assertThat(scaler.desiredConsumers(0, 8)).isEqualTo(7);
+        assertThat(scaler.desiredConsumers(0, 2)).isEqualTo(1);
+    }
+
+    private static ActivityListenerScaler scaler() {
+        ActivityListenerScaler scaler = new ActivityListenerScaler(null, null, null, null, null);
+        ReflectionTestUtils.setField(scaler, "minConsumers", 1);
+        ReflectionTestUtils.setField(scaler, "maxConsumers", 8);
+        ReflectionTestUtils.setField(scaler, "messagesPerConsumer", 5);
+        return scaler;
+    }
+}
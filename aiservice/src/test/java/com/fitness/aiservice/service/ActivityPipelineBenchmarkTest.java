@@ -0,0 +1,253 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.Recommendation;
+import com.fitness.aiservice.repository.RecommendationRepository;
+import com.fitness.aiservice.support.FakeGeminiServer;
+import com.mongodb.reactivestreams.client.MongoClients;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitAdmin;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.MethodRabbitListenerEndpoint;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.repository.support.ReactiveMongoRepositoryFactory;
+import org.springframework.messaging.handler.annotation.support.DefaultMessageHandlerMethodFactory;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.containers.RabbitMQContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pumps activities through activity.queue into {@link ActivityMessageListener}, with the
+ * listener container configured like the service (manual acks, prefetch), real RabbitMQ and
+ * Mongo, and the fake Gemini server standing in for the API with a long-tailed latency, a share
+ * of 503s and 429s. Reports end-to-end throughput, latency from publish to stored recommendation,
+ * and error rates, so capacity can be measured without spending Gemini quota.
+ * Run with {@code ./mvnw test -Pbenchmark}; requires Docker.
+ */
+@Tag("benchmark")
+@Testcontainers(disabledWithoutDocker = true)
+class ActivityPipelineBenchmarkTest {
+
+    private static final int ACTIVITIES = 2_000;
+    private static final int CONSUMERS = 2;
+    private static final int PREFETCH = 250;
+    private static final int MAX_IN_FLIGHT = 200;
+    private static final long MEDIAN_LATENCY_MS = 800;
+    private static final long P99_LATENCY_MS = 4_000;
+    private static final double ERROR_RATE = 0.01;
+    private static final double THROTTLE_RATE = 0.02;
+    private static final String QUEUE = "activity.queue";
+
+    @Container
+    static MongoDBContainer mongo = new MongoDBContainer("mongo:7-jammy");
+
+    @Container
+    static RabbitMQContainer rabbit = new RabbitMQContainer("rabbitmq:3-management-alpine");
+
+    static FakeGeminiServer gemini;
+    static RecommendationBatcher batcher;
+    static RabbitTemplate rabbitTemplate;
+    static ReactiveMongoTemplate mongoTemplate;
+    static MessageListenerContainer container;
+
+    static final Map<String, Long> published = new ConcurrentHashMap<>();
+    static final List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+    static final AtomicInteger succeeded = new AtomicInteger();
+    static final AtomicInteger failed = new AtomicInteger();
+    static final Set<String> routedToRetry = ConcurrentHashMap.newKeySet();
+    static CountDownLatch done;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        gemini = new FakeGeminiServer()
+                .latency(FakeGeminiServer.logNormal(MEDIAN_LATENCY_MS, P99_LATENCY_MS), 50)
+                .errorRate(ERROR_RATE, 503)
+                .throttleRate(THROTTLE_RATE, 1);
+
+        mongoTemplate = new ReactiveMongoTemplate(MongoClients.create(mongo.getReplicaSetUrl()), "fitnessrecommendation");
+        RecommendationRepository repository = new ReactiveMongoRepositoryFactory(mongoTemplate)
+                .getRepository(RecommendationRepository.class);
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ActivityAIService activityAIService = new ActivityAIService(gemini.client(MAX_IN_FLIGHT),
+                PromptBuilderTest.promptBuilder());
+        batcher = new RecommendationBatcher(activityAIService, meterRegistry);
+        ReflectionTestUtils.setField(batcher, "enabled", true);
+        ReflectionTestUtils.setField(batcher, "maxSize", 4);
+        ReflectionTestUtils.setField(batcher, "maxWaitMs", 200L);
+        batcher.init();
+        RecommendationCache cache = new RecommendationCache(mongoTemplate, meterRegistry);
+        ReflectionTestUtils.setField(cache, "enabled", false);
+        ReflectionTestUtils.setField(cache, "maxSize", 10_000L);
+        ReflectionTestUtils.setField(cache, "ttl", Duration.ofDays(7));
+        cache.init();
+        ActivityIdempotencyGuard idempotencyGuard = ActivityIdempotencyGuardTest.guard(mongoTemplate, meterRegistry);
+        // Counts failures instead of sending them through the retry delays
+        ActivityRetryRouter retryRouter = mock(ActivityRetryRouter.class);
+        when(retryRouter.route(any(), any(), anyInt(), any())).thenAnswer(invocation -> {
+            routedToRetry.add(invocation.<Activity>getArgument(0).getId());
+            return Mono.empty();
+        });
+        RecommendationGenerator generator = new RecommendationGenerator(LocalRecommendationEngineTest.engine(meterRegistry),
+                cache, batcher, ActivityLaneSchedulerTest.scheduler(meterRegistry, 64, 16), meterRegistry);
+        ActivityMessageListener listener = new ActivityMessageListener(idempotencyGuard, generator, repository,
+                retryRouter, ActivityLaneSchedulerTest.lanes(), meterRegistry);
+
+        CachingConnectionFactory connectionFactory = new CachingConnectionFactory(rabbit.getHost(), rabbit.getAmqpPort());
+        connectionFactory.setUsername(rabbit.getAdminUsername());
+        connectionFactory.setPassword(rabbit.getAdminPassword());
+        RabbitAdmin admin = new RabbitAdmin(connectionFactory);
+        Queue queue = new Queue(QUEUE, true);
+        DirectExchange exchange = new DirectExchange("fitness.exchange");
+        admin.declareQueue(queue);
+        admin.declareExchange(exchange);
+        admin.declareBinding(BindingBuilder.bind(queue).to(exchange).with("activity.tracking"));
+        Jackson2JsonMessageConverter converter = new Jackson2JsonMessageConverter();
+        rabbitTemplate = new RabbitTemplate(connectionFactory);
+        rabbitTemplate.setMessageConverter(converter);
+
+        // The same container settings the service gets from ai-service.yml
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(converter);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        factory.setPrefetchCount(PREFETCH);
+        factory.setConcurrentConsumers(CONSUMERS);
+        factory.setDefaultRequeueRejected(false);
+
+        Probe probe = new Probe(listener);
+        MethodRabbitListenerEndpoint endpoint = new MethodRabbitListenerEndpoint();
+        endpoint.setId(ActivityMessageListener.LISTENER_ID);
+        endpoint.setQueueNames(QUEUE);
+        endpoint.setBean(probe);
+        endpoint.setMethod(Probe.class.getMethod("processActivity", Activity.class));
+        DefaultMessageHandlerMethodFactory handlerMethodFactory = new DefaultMessageHandlerMethodFactory();
+        handlerMethodFactory.afterPropertiesSet();
+        endpoint.setMessageHandlerMethodFactory(handlerMethodFactory);
+        container = factory.createListenerContainer(endpoint);
+        container.afterPropertiesSet();
+    }
+
+    @AfterAll
+    static void tearDown() {
+        if (container != null) {
+            container.stop();
+        }
+        if (batcher != null) {
+            batcher.shutdown();
+        }
+        if (gemini != null) {
+            gemini.close();
+        }
+    }
+
+    @Test
+    void reportThroughputLatencyAndErrors() throws Exception {
+        done = new CountDownLatch(ACTIVITIES);
+        container.start();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ACTIVITIES; i++) {
+            Activity activity = RecommendationBatcherTest.activity("activity-" + i);
+            published.put(activity.getId(), System.nanoTime());
+            rabbitTemplate.convertAndSend("fitness.exchange", "activity.tracking", activity);
+        }
+        long publishNanos = System.nanoTime() - start;
+        boolean drained = done.await(10, TimeUnit.MINUTES);
+        long elapsed = System.nanoTime() - start;
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        long stored = mongoTemplate.count(new Query(), Recommendation.class)
+                .block();
+        int geminiCalls = gemini.calls();
+        System.out.printf("%d activities, %d consumers x prefetch %d, %d Gemini calls in flight, "
+                        + "latency median %d ms p99 %d ms, %.0f%% 503s, %.0f%% 429s%n",
+                ACTIVITIES, CONSUMERS, PREFETCH, MAX_IN_FLIGHT, MEDIAN_LATENCY_MS, P99_LATENCY_MS,
+                ERROR_RATE * 100, THROTTLE_RATE * 100);
+        System.out.printf("published in %d ms; processed in %d ms (%.1f activities/s)%n",
+                publishNanos / 1_000_000, elapsed / 1_000_000, ACTIVITIES * 1e9 / elapsed);
+        System.out.printf("end-to-end latency p50 %d ms, p99 %d ms, max %d ms%n",
+                percentile(sorted, 50), percentile(sorted, 99), percentile(sorted, 100));
+        System.out.printf("succeeded %d, failed %d (%.2f%%), stored %d%n",
+                succeeded.get(), failed.get(), failed.get() * 100.0 / ACTIVITIES, stored);
+        System.out.printf("Gemini: %d calls, %d ok, %d 503s, %d 429s (%.2f%% of calls failed), peak concurrency %d%n",
+                geminiCalls, gemini.responses(200), gemini.responses(503), gemini.responses(429),
+                (geminiCalls - gemini.responses(200)) * 100.0 / Math.max(1, geminiCalls), gemini.peakConcurrency());
+
+        assertThat(drained).isTrue();
+        assertThat(succeeded.get() + failed.get()).isEqualTo(ACTIVITIES);
+        assertThat(stored).isEqualTo(succeeded.get());
+    }
+
+    private static long percentile(List<Long> sorted, int percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = Math.min(sorted.size() - 1, (int) Math.ceil(sorted.size() * percentile / 100.0) - 1);
+        return sorted.get(Math.max(0, index)) / 1_000_000;
+    }
+
+    /**
+     * Sits between the container and the listener to time each message from publish until its
+     * Mono finishes, which is when the container acks or rejects it. Activities handed to the
+     * retry router count as failed.
+     */
+    public static class Probe {
+        private final ActivityMessageListener listener;
+
+        Probe(ActivityMessageListener listener) {
+            this.listener = listener;
+        }
+
+        public Mono<Void> processActivity(Activity activity) {
+            return listener.processActivity(activity)
+                    .doFinally(signal -> {
+                        Long publishedAt = published.remove(activity.getId());
+                        if (publishedAt != null) {
+                            latencies.add(System.nanoTime() - publishedAt);
+                        }
+                        if (signal == SignalType.ON_COMPLETE && !routedToRetry.remove(activity.getId())) {
+                            succeeded.incrementAndGet();
+                        } else {
+                            failed.incrementAndGet();
+                        }
+                        done.countDown();
+                    });
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.ActivityLane;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.ReturnedMessage;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class ActivityRetryRouterTest {
+
+    private final RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ActivityRetryRouter router = new ActivityRetryRouter(rabbitTemplate,
+            ActivityLaneSchedulerTest.lanes(), meterRegistry);
+    private final Activity activity = RecommendationBatcherTest.activity("activity-1");
+
+    ActivityRetryRouterTest() {
+        ReflectionTestUtils.setField(router, "retryDelays", List.of("5s", "30s", "5m"));
+        ReflectionTestUtils.setField(router, "confirmTimeoutMs", 1000L);
+        brokerAnswers(correlation -> correlation.getFuture().complete(new CorrelationData.Confirm(true, null)));
+    }
+
+    @Test
+    void eachAttemptWaitsInTheNextDelayQueue() {
+        router.route(activity, ActivityLane.LIVE, 0, new TimeoutException("slow")).block();
+        router.route(activity, ActivityLane.LIVE, 2, new TimeoutException("slow")).block();
+
+        assertThat(sent("activity.queue.retry.5s").getHeaders()).containsEntry(ActivityRetryRouter.RETRY_COUNT, 1);
+        assertThat(sent("activity.queue.retry.5m").getHeaders())
+                .containsEntry(ActivityRetryRouter.RETRY_COUNT, 3)
+                .containsEntry(ActivityRetryRouter.LAST_ERROR, "slow");
+        assertThat(meterRegistry.counter("ai.activity.retries", "delay", "5m").count()).isEqualTo(1);
+    }
+
+    @Test
+    void retriesStayInTheirLane() {
+        router.route(activity, ActivityLane.BULK, 0, new TimeoutException("slow")).block();
+
+        assertThat(sent("activity.bulk.queue.retry.5s").getHeaders()).containsEntry(ActivityRetryRouter.RETRY_COUNT, 1);
+    }
+
+    @Test
+    void exhaustedOrPermanentFailuresAreDeadLettered() {
+        router.route(activity, ActivityLane.LIVE, 3, new TimeoutException("slow")).block();
+        router.route(activity, ActivityLane.LIVE, 0, WebClientResponseException.create(HttpStatus.BAD_REQUEST.value(), "Bad Request",
+                null, null, null)).block();
+
+        assertThat(meterRegistry.counter("ai.activity.dead.lettered").count()).isEqualTo(2);
+        assertThat(ActivityRetryRouter.isRetryable(WebClientResponseException.create(429, "Too Many Requests",
+                null, null, null))).isTrue();
+    }
+
+    @Test
+    void nackedPublishFailsTheRoute() {
+        brokerAnswers(correlation -> correlation.getFuture().complete(new CorrelationData.Confirm(false, "disk alarm")));
+
+        assertThatThrownBy(() -> router.route(activity, ActivityLane.LIVE, 0, new TimeoutException("slow")).block())
+                .isInstanceOf(AmqpException.class)
+                .hasMessageContaining("disk alarm");
+        assertThat(meterRegistry.find("ai.activity.retries").counter()).isNull();
+    }
+
+    @Test
+    void unroutablePublishFailsTheRouteEvenThoughItIsAcked() {
+        brokerAnswers(correlation -> {
+            correlation.setReturned(new ReturnedMessage(new Message(new byte[0]), 312, "NO_ROUTE", "",
+                    "activity.queue.dlq"));
+            correlation.getFuture().complete(new CorrelationData.Confirm(true, null));
+        });
+
+        assertThatThrownBy(() -> router.route(activity, ActivityLane.LIVE, 3, new TimeoutException("slow")).block())
+                .isInstanceOf(AmqpException.class)
+                .hasMessageContaining("NO_ROUTE");
+        assertThat(meterRegistry.find("ai.activity.dead.lettered").counter()).isNull();
+    }
+
+    @Test
+    void unconfirmedPublishFailsTheRoute() {
+        ReflectionTestUtils.setField(router, "confirmTimeoutMs", 50L);
+        brokerAnswers(correlation -> { });
+
+        assertThatThrownBy(() -> router.route(activity, ActivityLane.LIVE, 0, new TimeoutException("slow")).block())
+                .isInstanceOf(AmqpException.class)
+                .hasMessageContaining("No publisher confirm");
+    }
+
+    private void brokerAnswers(Consumer<CorrelationData> broker) {
+        doAnswer(invocation -> {
+            broker.accept(invocation.getArgument(4));
+            return null;
+        }).when(rabbitTemplate).convertAndSend(eq(""), anyString(), any(), any(MessagePostProcessor.class),
+                any(CorrelationData.class));
+    }
+
+    private MessageProperties sent(String queue) {
+        ArgumentCaptor<MessagePostProcessor> headers = ArgumentCaptor.forClass(MessagePostProcessor.class);
+        verify(rabbitTemplate).convertAndSend(eq(""), eq(queue), eq(activity), headers.capture(), any(CorrelationData.class));
+        return headers.getValue().postProcessMessage(new Message(new byte[0])).getMessageProperties();
+    }
+}
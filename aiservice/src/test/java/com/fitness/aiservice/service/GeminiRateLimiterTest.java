@@ -0,0 +1,76 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.support.FakeGeminiServer;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GeminiRateLimiterTest {
+
+    @Test
+    void bucketMakesCallersWaitForRefill() {
+        AtomicLong clock = new AtomicLong();
+        TokenBucket bucket = new TokenBucket(60, clock::get);
+
+        assertThat(bucket.reserve(60)).isZero();
+        assertThat(bucket.reserve(1)).isEqualTo(Duration.ofSeconds(1));
+        assertThat(bucket.reserve(1)).isEqualTo(Duration.ofSeconds(2));
+
+        clock.addAndGet(Duration.ofSeconds(2).toNanos());
+        assertThat(bucket.available()).isEqualTo(0.0);
+        bucket.adjust(-30);
+        assertThat(bucket.reserve(30)).isZero();
+    }
+
+    @Test
+    void rateLimitedCallHalvesConcurrencyAndHonorsRetryAfter() throws Exception {
+        try (FakeGeminiServer gemini = new FakeGeminiServer().failNext(1, 429)) {
+            GeminiRateLimiter rateLimiter = FakeGeminiServer.rateLimiter(8);
+            long start = System.nanoTime();
+
+            StepVerifier.create(gemini.client(rateLimiter).generate("prompt"))
+                    .expectNextCount(1)
+                    .verifyComplete();
+
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofSeconds(1));
+            assertThat(gemini.calls()).isEqualTo(2);
+            assertThat(rateLimiter.concurrencyLimit()).isEqualTo(4);
+        }
+    }
+
+    @Test
+    void readsRetryDelayFromHeaderOrBody() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.RETRY_AFTER, "7");
+        assertThat(GeminiRateLimiter.retryAfter(tooManyRequests(headers, "")))
+                .isEqualTo(Duration.ofSeconds(7));
+
+        String body = """
+                {"error": {"code": 429, "details": [{"@type": "type.googleapis.com/google.rpc.RetryInfo", "retryDelay": "13.5s"}]}}
+                """;
+        assertThat(GeminiRateLimiter.retryAfter(tooManyRequests(new HttpHeaders(), body)))
+                .isEqualTo(Duration.ofMillis(13_500));
+        assertThat(GeminiRateLimiter.retryAfter(tooManyRequests(new HttpHeaders(), "{}"))).isNull();
+    }
+
+    @Test
+    void readsTokenUsage() {
+        assertThat(GeminiRateLimiter.totalTokens("""
+                {"candidates": [], "usageMetadata": {"promptTokenCount": 120, "totalTokenCount": 845}}
+                """)).isEqualTo(845);
+        assertThat(GeminiRateLimiter.totalTokens("{\"candidates\": []}")).isEqualTo(-1);
+    }
+
+    private static WebClientResponseException tooManyRequests(HttpHeaders headers, String body) {
+        return WebClientResponseException.create(HttpStatus.TOO_MANY_REQUESTS.value(), "Too Many Requests",
+                headers, body.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+    }
+}
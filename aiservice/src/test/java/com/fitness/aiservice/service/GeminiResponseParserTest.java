@@ -0,0 +1,78 @@
+package com.fitness.aiservice.service;
+
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.fitness.aiservice.dto.GeminiAnalysis;
+import com.fitness.aiservice.model.Recommendation;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GeminiResponseParserTest {
+
+    @Test
+    void readsTextOfFirstCandidateAndSkipsTheRest() throws Exception {
+        String response = """
+                {"promptFeedback": {"blockReason": null},
+                 "candidates": [
+                   {"safetyRatings": [{"category": "HARM_CATEGORY_HARASSMENT", "probability": "NEGLIGIBLE"}],
+                    "content": {"role": "model", "parts": [
+                      {"text": "thinking...", "thought": true},
+                      {"text": "{\\"a\\": "},
+                      {"text": "1}"}]},
+                    "finishReason": "STOP"},
+                   {"content": {"parts": [{"text": "second candidate"}]}}],
+                 "usageMetadata": {"totalTokenCount": 42}}
+                """;
+
+        assertThat(GeminiResponseParser.text(response)).isEqualTo("{\"a\": 1}");
+        assertThat(GeminiResponseParser.text("{\"candidates\": []}")).isEmpty();
+        assertThat(GeminiResponseParser.text("{\"usageMetadata\": {}}")).isEmpty();
+    }
+
+    @Test
+    void stripsCodeFences() {
+        assertThat(GeminiResponseParser.stripFences("```json\n{\"a\": 1}\n```\n")).isEqualTo("{\"a\": 1}");
+        assertThat(GeminiResponseParser.stripFences("  ```\n[]```")).isEqualTo("[]");
+        assertThat(GeminiResponseParser.stripFences(" {\"a\": \"```\"} ")).isEqualTo("{\"a\": \"```\"}");
+        String plain = "{\"a\": 1}";
+        assertThat(GeminiResponseParser.stripFences(plain)).isSameAs(plain);
+    }
+
+    @Test
+    void bindsAnalysisIgnoringUnknownFields() throws Exception {
+        GeminiAnalysis analysis = GeminiResponseParser.analysis("""
+                ```json
+                {"analysis": {"overall": "Solid run", "pace": "Even"},
+                 "improvements": [{"area": "Cadence", "recommendation": "Shorter strides"}],
+                 "safety": ["Hydrate"], "confidence": 0.9}
+                ```""");
+
+        assertThat(analysis.analysis().overall()).isEqualTo("Solid run");
+        assertThat(analysis.analysis().heartRate()).isNull();
+        assertThat(analysis.improvements()).containsExactly(new GeminiAnalysis.Improvement("Cadence", "Shorter strides"));
+        assertThat(analysis.suggestions()).isNull();
+        assertThat(analysis.safety()).containsExactly("Hydrate");
+    }
+
+    @Test
+    void processesBatchResponseByActivityId() throws Exception {
+        String text = """
+                [{"activityId": "a1", "analysis": {"overall": "Good"}, "safety": ["Rest"]},
+                 {"activityId": "unknown", "analysis": {"overall": "Ignored"}},
+                 {"activityId": "a2"}]""";
+        String response = "{\"candidates\": [{\"content\": {\"parts\": [{\"text\": "
+                + TextNode.valueOf(text) + "}]}}]}";
+
+        Map<String, Recommendation> recommendations = new ActivityAIService(null, null).processBatchResponse(
+                List.of(RecommendationBatcherTest.activity("a1"), RecommendationBatcherTest.activity("a2")), response);
+
+        assertThat(recommendations).containsOnlyKeys("a1");
+        Recommendation recommendation = recommendations.get("a1");
+        assertThat(recommendation.getRecommendation()).isEqualTo("Overall:Good");
+        assertThat(recommendation.getSafety()).containsExactly("Rest");
+        assertThat(recommendation.getImprovements()).containsExactly("No specific improvements provided");
+    }
+}
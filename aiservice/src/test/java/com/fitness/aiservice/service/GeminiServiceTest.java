@@ -0,0 +1,132 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.dto.GeminiPrompt;
+import com.fitness.aiservice.support.FakeGeminiServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GeminiServiceTest {
+
+    private final FakeGeminiServer gemini;
+
+    GeminiServiceTest() throws Exception {
+        gemini = new FakeGeminiServer().latency(200, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        gemini.close();
+    }
+
+    @Test
+    void hundredsOfCallsAreInFlightAtOnce() {
+        gemini.latency(1_000, 0);
+        GeminiService client = gemini.client(200);
+
+        StepVerifier.create(Flux.range(0, 200).flatMap(i -> client.generate("prompt " + i), 200).count())
+                .expectNext(200L)
+                .expectComplete()
+                .verify(Duration.ofSeconds(20));
+
+        System.out.printf("peak concurrent Gemini calls: %d%n", gemini.peakConcurrency());
+        assertThat(gemini.peakConcurrency()).isGreaterThan(50);
+    }
+
+    @Test
+    void callsBeyondTheLimitWaitForASlot() {
+        GeminiService client = gemini.client(5);
+
+        StepVerifier.create(Flux.range(0, 20).flatMap(i -> client.generate("prompt " + i), 20).count())
+                .expectNext(20L)
+                .verifyComplete();
+
+        assertThat(gemini.peakConcurrency()).isEqualTo(5);
+    }
+
+    @Test
+    void serverErrorsAreRetried() {
+        gemini.failNext(2, 503);
+
+        StepVerifier.create(gemini.client(4).generate("prompt"))
+                .assertNext(response -> assertThat(response).contains("candidates"))
+                .verifyComplete();
+
+        assertThat(gemini.calls()).isEqualTo(3);
+    }
+
+    @Test
+    void clientErrorsAreNotRetried() {
+        gemini.failNext(1, 400);
+
+        StepVerifier.create(gemini.client(4).generate("prompt"))
+                .expectError(WebClientResponseException.BadRequest.class)
+                .verify();
+
+        assertThat(gemini.calls()).isEqualTo(1);
+    }
+
+    @Test
+    void errorsAreInjectedAtTheConfiguredRate() {
+        gemini.latency(0, 0).errorRate(1.0, 500).responseText(prompt -> "unused");
+
+        StepVerifier.create(gemini.client(4).generate("prompt"))
+                .expectError(WebClientResponseException.InternalServerError.class)
+                .verify();
+
+        assertThat(gemini.responses(500)).isEqualTo(3);
+        assertThat(gemini.responses(200)).isZero();
+    }
+
+    @Test
+    void customResponseTextIsSentAsIs() {
+        gemini.latency(0, 0).responseText(prompt -> "echo: " + prompt);
+
+        StepVerifier.create(gemini.client(4).generate("hello").map(GeminiServiceTest::text))
+                .expectNext("echo: hello")
+                .verifyComplete();
+    }
+
+    private static String text(String response) {
+        try {
+            return GeminiResponseParser.text(response);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Test
+    void cachedInstructionsAreCreatedOnceAndReferenced() {
+        GeminiService client = gemini.latency(0, 0)
+                .client(FakeGeminiServer.rateLimiter(8), gemini.contextCache(true, 0));
+        GeminiPrompt prompt = new GeminiPrompt("Instructions\n", "Activity Type: RUNNING\n");
+
+        StepVerifier.create(Flux.range(0, 10).flatMap(i -> client.generate(prompt), 8).count())
+                .expectNext(10L)
+                .verifyComplete();
+
+        assertThat(gemini.cachesCreated()).isEqualTo(1);
+        assertThat(gemini.cachedCalls()).isEqualTo(10);
+    }
+
+    @Test
+    void instructionsBelowTheCacheMinimumAreSentInline() {
+        GeminiService client = gemini.latency(0, 0)
+                .client(FakeGeminiServer.rateLimiter(4), gemini.contextCache(true, 1024));
+
+        StepVerifier.create(client.generate(new GeminiPrompt("Instructions\n", "Activity Type: RUNNING\n")))
+                .assertNext(response -> assertThat(response).contains("candidates"))
+                .verifyComplete();
+
+        assertThat(gemini.cachesCreated()).isZero();
+        assertThat(gemini.cachedCalls()).isZero();
+    }
+}
@@ -0,0 +1,98 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.ActivityMetrics;
+import com.fitness.aiservice.model.Recommendation;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalRecommendationEngineTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final LocalRecommendationEngine engine = engine(meterRegistry);
+
+    @Test
+    void shortSessionIsAnsweredLocally() {
+        Activity activity = activity("a1", "STRETCHING", 10);
+
+        Optional<Recommendation> recommendation = engine.recommend(activity);
+
+        assertThat(recommendation).hasValueSatisfying(local -> {
+            assertThat(local.getActivityId()).isEqualTo("a1");
+            assertThat(local.getUserId()).isEqualTo("user-1");
+            assertThat(local.getActivityType()).isEqualTo("STRETCHING");
+            assertThat(local.getCreatedAt()).isNotNull();
+            assertThat(local.getRecommendation()).startsWith("Overall:A short stretching session");
+            assertThat(local.getSafety()).isNotEmpty();
+        });
+        assertThat(meterRegistry.get(LocalRecommendationEngine.LATENCY).tag("source", "local").timer().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void activityWithoutDataIsAnsweredLocally() {
+        Activity activity = activity("a1", "RUNNING", null);
+        activity.setCaloriesBurned(null);
+
+        assertThat(engine.recommend(activity)).hasValueSatisfying(local ->
+                assertThat(local.getRecommendation()).contains("not enough data"));
+    }
+
+    @Test
+    void longOrDetailedActivitiesAreEscalated() {
+        Activity detailed = activity("a3", "STRETCHING", 10);
+        ActivityMetrics metrics = new ActivityMetrics();
+        metrics.setAvgHeartRate(95.0);
+        metrics.setMaxHeartRate(120.0);
+        metrics.set("hrvMs", 55);
+        detailed.setAdditionalMetrics(metrics);
+
+        assertThat(engine.recommend(activity("a1", "RUNNING", 10))).isEmpty();
+        assertThat(engine.recommend(activity("a2", "STRETCHING", 45))).isEmpty();
+        assertThat(engine.recommend(detailed)).isEmpty();
+    }
+
+    @Test
+    void reportsTheAbsorbedShare() {
+        List.of(activity("a1", "YOGA", 10), activity("a2", "RUNNING", 30), activity("a3", "RUNNING", 40),
+                activity("a4", "WALKING", 5)).forEach(engine::recommend);
+
+        assertThat(meterRegistry.get("ai.recommendation.local").tag("result", "absorbed").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("ai.recommendation.local.absorbed.ratio").gauge().value()).isEqualTo(0.5);
+    }
+
+    @Test
+    void disabledEngineAnswersNothing() {
+        ReflectionTestUtils.setField(engine, "enabled", false);
+
+        assertThat(engine.recommend(activity("a1", "STRETCHING", 10))).isEmpty();
+    }
+
+    static LocalRecommendationEngine engine(MeterRegistry meterRegistry) {
+        ShortSessionRule shortSessionRule = new ShortSessionRule();
+        ReflectionTestUtils.setField(shortSessionRule, "maxMinutesByType",
+                List.of("STRETCHING:20", "YOGA:15", "WALKING:15", "CARDIO:10", "OTHER:10"));
+        shortSessionRule.init();
+        LocalRecommendationEngine engine = new LocalRecommendationEngine(
+                List.of(new MissingDataRule(), shortSessionRule), meterRegistry);
+        ReflectionTestUtils.setField(engine, "enabled", true);
+        ReflectionTestUtils.setField(engine, "maxMetrics", 2);
+        ReflectionTestUtils.setField(engine, "maxDuration", 60);
+        engine.init();
+        return engine;
+    }
+
+    static Activity activity(String id, String type, Integer duration) {
+        Activity activity = RecommendationBatcherTest.activity(id);
+        activity.setType(type);
+        activity.setDuration(duration);
+        return activity;
+    }
+}
@@ -0,0 +1,102 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.dto.GeminiPrompt;
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.ActivityMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PromptBuilderTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PromptBuilder promptBuilder = promptBuilder(meterRegistry);
+
+    @Test
+    void instructionsComeFirstAndAreSharedByActivitiesOfAType() {
+        GeminiPrompt first = promptBuilder.single(RecommendationBatcherTest.activity("a1"));
+        Activity other = RecommendationBatcherTest.activity("a2");
+        other.setDuration(90);
+        GeminiPrompt second = promptBuilder.single(other);
+
+        assertThat(first.instructions()).isSameAs(second.instructions())
+                .contains("running activity", "cadence");
+        assertThat(first.text()).startsWith(first.instructions()).endsWith(first.content());
+        assertThat(second.content()).contains("Duration: 90 minutes");
+    }
+
+    @Test
+    void unknownTypesUseTheGenericTemplate() {
+        Activity activity = RecommendationBatcherTest.activity("a1");
+        activity.setType("ROWING");
+
+        assertThat(promptBuilder.single(activity).instructions()).contains("other activity");
+    }
+
+    @Test
+    void longSeriesAreSummarized() {
+        Activity activity = RecommendationBatcherTest.activity("a1");
+        activity.setAdditionalMetrics(metrics(Map.of(
+                "heartRateSeries", IntStream.rangeClosed(100, 199).boxed().toList(),
+                "splits", List.of(5.5, 5.25, 5.0),
+                "laps", List.of(Map.of("lap", 1, "seconds", 95.5), Map.of("lap", 2, "seconds", 91)))));
+
+        String content = promptBuilder.single(activity).content();
+
+        assertThat(content)
+                .contains("- heartRateSeries: series of 100 values, min 100, mean 149.5, max 199, first 100, last 199")
+                .contains("- splits: [5.5, 5.25, 5]")
+                .contains("- laps: 2 points, lap 1..2, seconds 91..95.5");
+    }
+
+    @Test
+    void largestExtraMetricsAreOmittedBeyondTheBudget() {
+        ReflectionTestUtils.setField(promptBuilder, "activityTokenBudget", 40);
+        Activity activity = RecommendationBatcherTest.activity("a1");
+        ActivityMetrics metrics = metrics(Map.of("notes", "x".repeat(100), "device", "watch"));
+        metrics.setDistanceKm(10.0);
+        activity.setAdditionalMetrics(metrics);
+
+        String content = promptBuilder.single(activity).content();
+
+        assertThat(content).contains("- distanceKm: 10", "- device: watch", "- (1 more metrics omitted)")
+                .doesNotContain("notes");
+        assertThat(meterRegistry.get("ai.prompt.metrics.omitted").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void recordsPromptSizes() {
+        GeminiPrompt prompt = promptBuilder.batch(List.of(
+                RecommendationBatcherTest.activity("a1"), RecommendationBatcherTest.activity("a2")));
+
+        assertThat(prompt.content()).contains("Activity ID: a1", "Activity ID: a2");
+        assertThat(meterRegistry.get("ai.prompt.size").tag("kind", "batch").summary().totalAmount())
+                .isEqualTo(prompt.text().length());
+        assertThat(meterRegistry.get("ai.prompt.tokens").tag("kind", "batch").summary().count()).isEqualTo(1);
+    }
+
+    static PromptBuilder promptBuilder() {
+        return promptBuilder(new SimpleMeterRegistry());
+    }
+
+    static PromptBuilder promptBuilder(MeterRegistry meterRegistry) {
+        PromptBuilder promptBuilder = new PromptBuilder(meterRegistry);
+        ReflectionTestUtils.setField(promptBuilder, "activityTokenBudget", 400);
+        ReflectionTestUtils.setField(promptBuilder, "maxSeriesLength", 12);
+        promptBuilder.init();
+        return promptBuilder;
+    }
+
+    private static ActivityMetrics metrics(Map<String, Object> values) {
+        ActivityMetrics metrics = new ActivityMetrics();
+        values.forEach(metrics::set);
+        return metrics;
+    }
+}
@@ -0,0 +1,189 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.dto.ActivityScanPage;
+import com.fitness.aiservice.dto.BackfillProgress;
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.ActivityLane;
+import com.fitness.aiservice.model.BackfillCheckpoint;
+import com.fitness.aiservice.model.BackfillStatus;
+import com.fitness.aiservice.model.Recommendation;
+import com.fitness.aiservice.repository.RecommendationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RecommendationBackfillTest {
+
+    // a1..a5, two per page
+    private static final List<String> ACTIVITY_IDS = List.of("a1", "a2", "a3", "a4", "a5");
+
+    private final ActivityServiceClient activityServiceClient = mock(ActivityServiceClient.class);
+    private final RecommendationGenerator generator = mock(RecommendationGenerator.class);
+    private final RecommendationRepository repository = mock(RecommendationRepository.class);
+    private final ReactiveMongoTemplate mongoTemplate = mock(ReactiveMongoTemplate.class);
+    private final AtomicReference<BackfillCheckpoint> stored = new AtomicReference<>();
+    private final List<String> checkpointedCursors = new CopyOnWriteArrayList<>();
+    private final List<Recommendation> saved = new CopyOnWriteArrayList<>();
+    private final List<Recommendation> existing = new ArrayList<>();
+    private final RecommendationBackfill backfill;
+
+    RecommendationBackfillTest() {
+        when(activityServiceClient.count()).thenReturn(Mono.just(5L));
+        when(activityServiceClient.scan(any(), anyInt())).thenAnswer(invocation -> Mono.just(page(invocation.getArgument(0))));
+        when(generator.version()).thenReturn("2");
+        when(generator.generate(any(), eq(ActivityLane.REPLAY))).thenAnswer(invocation -> {
+            Activity activity = invocation.getArgument(0);
+            return Mono.just(Recommendation.builder().activityId(activity.getId()).recommendation("New").version("2").build());
+        });
+        when(repository.save(any(Recommendation.class))).thenAnswer(invocation -> {
+            saved.add(invocation.getArgument(0));
+            return Mono.just(invocation.getArgument(0));
+        });
+        when(mongoTemplate.find(any(Query.class), eq(Recommendation.class))).thenAnswer(invocation -> Flux.fromIterable(existing));
+        when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class), any(FindAndModifyOptions.class),
+                eq(BackfillCheckpoint.class))).thenAnswer(invocation -> {
+                    BackfillCheckpoint checkpoint = stored.get() != null ? stored.get()
+                            : BackfillCheckpoint.builder().id(RecommendationBackfill.JOB_ID).build();
+                    checkpoint.setStatus(BackfillStatus.RUNNING);
+                    stored.set(checkpoint);
+                    return Mono.just(checkpoint);
+                });
+        when(mongoTemplate.findAndReplace(any(Query.class), any(BackfillCheckpoint.class))).thenAnswer(invocation -> {
+            BackfillCheckpoint checkpoint = invocation.getArgument(1);
+            checkpointedCursors.add(String.valueOf(checkpoint.getCursor()));
+            stored.set(checkpoint);
+            return Mono.just(checkpoint);
+        });
+        when(mongoTemplate.findById(RecommendationBackfill.JOB_ID, BackfillCheckpoint.class))
+                .thenAnswer(invocation -> Mono.justOrEmpty(stored.get()));
+
+        backfill = new RecommendationBackfill(activityServiceClient, generator, repository, mongoTemplate,
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(backfill, "pageSize", 2);
+        ReflectionTestUtils.setField(backfill, "parallelism", 4);
+        ReflectionTestUtils.setField(backfill, "lease", Duration.ofMinutes(10));
+        backfill.init();
+    }
+
+    @Test
+    void regeneratesOutdatedRecommendationsAndCheckpointsEveryPage() {
+        existing.add(Recommendation.builder().id("r1").activityId("a1").recommendation("Current").version("2").build());
+        LocalDateTime createdAt = LocalDateTime.of(2024, 3, 1, 8, 30);
+        existing.add(Recommendation.builder().id("r3").activityId("a3").recommendation("Old").version("1")
+                .createdAt(createdAt).build());
+        existing.add(Recommendation.builder().id("r5").activityId("a5")
+                .recommendation(ActivityAIService.DEFAULT_ANALYSIS).version("2").build());
+
+        assertThat(backfill.start(false).block()).isTrue();
+
+        assertThat(saved).extracting(Recommendation::getActivityId).containsExactlyInAnyOrder("a2", "a3", "a4", "a5");
+        // Replaces the old documents rather than adding a second recommendation per activity
+        assertThat(saved).filteredOn(recommendation -> recommendation.getActivityId().equals("a3"))
+                .extracting(Recommendation::getId, Recommendation::getCreatedAt)
+                .containsExactly(tuple("r3", createdAt));
+        assertThat(checkpointedCursors).containsSubsequence("a2", "a4", "a5");
+        BackfillProgress progress = backfill.progress().block();
+        assertThat(progress.status()).isEqualTo(BackfillStatus.COMPLETED);
+        assertThat(progress.scanned()).isEqualTo(5);
+        assertThat(progress.regenerated()).isEqualTo(4);
+        assertThat(progress.skipped()).isEqualTo(1);
+        assertThat(progress.percent()).isEqualTo(100.0);
+    }
+
+    @Test
+    void resumesAfterTheLastCheckpointedPage() {
+        stored.set(BackfillCheckpoint.builder().id(RecommendationBackfill.JOB_ID).status(BackfillStatus.RUNNING)
+                .version("2").cursor("a4").scanned(4).regenerated(4).owner("crashed-instance")
+                .leaseUntil(LocalDateTime.now().minusMinutes(1)).build());
+
+        assertThat(backfill.start(false).block()).isTrue();
+
+        verify(activityServiceClient).scan("a4", 2);
+        verify(activityServiceClient, never()).scan(isNull(), anyInt());
+        assertThat(saved).extracting(Recommendation::getActivityId).containsExactly("a5");
+        assertThat(stored.get().getScanned()).isEqualTo(5);
+        assertThat(stored.get().getRegenerated()).isEqualTo(5);
+    }
+
+    @Test
+    void newVersionStartsFromTheBeginning() {
+        stored.set(BackfillCheckpoint.builder().id(RecommendationBackfill.JOB_ID).status(BackfillStatus.COMPLETED)
+                .version("1").cursor("a5").scanned(5).build());
+
+        assertThat(backfill.start(false).block()).isTrue();
+
+        verify(activityServiceClient).scan(null, 2);
+        assertThat(saved).hasSize(5);
+        assertThat(stored.get().getVersion()).isEqualTo("2");
+    }
+
+    @Test
+    void failedActivitiesAreCountedWithoutStoppingTheRun() {
+        when(generator.generate(argThatId("a2"), eq(ActivityLane.REPLAY)))
+                .thenReturn(Mono.error(new RuntimeException("Gemini unavailable")));
+
+        backfill.start(false).block();
+
+        assertThat(stored.get().getStatus()).isEqualTo(BackfillStatus.COMPLETED);
+        assertThat(stored.get().getFailed()).isEqualTo(1);
+        assertThat(stored.get().getRegenerated()).isEqualTo(4);
+    }
+
+    @Test
+    void doesNotStartWhileAnotherInstanceHoldsTheLease() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(UpdateDefinition.class), any(FindAndModifyOptions.class),
+                eq(BackfillCheckpoint.class))).thenReturn(Mono.error(new DuplicateKeyException("E11000 duplicate key")));
+
+        assertThat(backfill.start(false).block()).isFalse();
+        verify(activityServiceClient, never()).scan(any(), anyInt());
+    }
+
+    @Test
+    void etaFollowsTheScanRate() {
+        BackfillCheckpoint checkpoint = BackfillCheckpoint.builder().status(BackfillStatus.RUNNING)
+                .total(1_000).scanned(250).build();
+
+        BackfillProgress progress = RecommendationBackfill.progress(checkpoint, 50);
+
+        assertThat(progress.percent()).isEqualTo(25.0);
+        assertThat(progress.etaSeconds()).isEqualTo(15);
+        assertThat(RecommendationBackfill.progress(checkpoint, 0).etaSeconds()).isNull();
+    }
+
+    private static ActivityScanPage page(String after) {
+        int start = after == null ? 0 : ACTIVITY_IDS.indexOf(after) + 1;
+        int end = Math.min(start + 2, ACTIVITY_IDS.size());
+        List<Activity> items = ACTIVITY_IDS.subList(start, end).stream().map(RecommendationBatcherTest::activity).toList();
+        return new ActivityScanPage(items, end < ACTIVITY_IDS.size() ? ACTIVITY_IDS.get(end - 1) : null);
+    }
+
+    private static Activity argThatId(String id) {
+        return argThat(activity -> activity != null && id.equals(activity.getId()));
+    }
+}
@@ -0,0 +1,121 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.Recommendation;
+import com.fitness.aiservice.support.FakeGeminiServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecommendationBatcherTest {
+
+    private final FakeGeminiServer gemini;
+    private RecommendationBatcher batcher;
+
+    RecommendationBatcherTest() throws Exception {
+        gemini = new FakeGeminiServer().latency(20, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        batcher.shutdown();
+        gemini.close();
+    }
+
+    @Test
+    void concurrentActivitiesShareOneCall() {
+        batcher = batcher(4, 5_000);
+
+        List<Recommendation> recommendations = recommendAll(4);
+
+        assertThat(gemini.calls()).isEqualTo(1);
+        assertThat(recommendations).allSatisfy(recommendation -> assertThat(recommendation.getRecommendation())
+                .startsWith("Overall:Overall for " + recommendation.getActivityId()));
+    }
+
+    @Test
+    void partialBatchIsSentAfterMaxWait() {
+        batcher = batcher(8, 50);
+
+        List<Recommendation> recommendations = recommendAll(3);
+
+        assertThat(gemini.calls()).isEqualTo(1);
+        assertThat(recommendations).hasSize(3);
+    }
+
+    @Test
+    void activitiesMissingFromTheAnswerFallBackToSingleCalls() {
+        // Batch prompts list several activity ids; answer only the first one
+        gemini.responseText(prompt -> prompt.contains("Activity ID:")
+                ? "[{\"activityId\": \"activity-0\", \"analysis\": {\"overall\": \"Batched\"}}]"
+                : "{\"analysis\": {\"overall\": \"Single\"}}");
+        batcher = batcher(3, 5_000);
+
+        List<Recommendation> recommendations = recommendAll(3);
+
+        assertThat(gemini.calls()).isEqualTo(1 + 2);
+        assertThat(recommendations).extracting(Recommendation::getRecommendation)
+                .containsExactly("Overall:Batched", "Overall:Single", "Overall:Single");
+    }
+
+    @Test
+    void failedBatchFailsEveryActivityWithoutSingleCalls() {
+        // The first call and both of its retries are throttled
+        gemini.failNext(3, 429);
+        batcher = batcher(3, 5_000);
+
+        List<CompletableFuture<Recommendation>> futures = submitAll(3);
+
+        assertThat(futures).allSatisfy(future -> assertThat(future).failsWithin(Duration.ofSeconds(10)));
+        assertThat(gemini.calls()).isEqualTo(3);
+    }
+
+    @Test
+    void unparseableBatchFailsEveryActivity() {
+        gemini.malformedBatches(true);
+        batcher = batcher(3, 5_000);
+
+        List<CompletableFuture<Recommendation>> futures = submitAll(3);
+
+        assertThat(futures).allSatisfy(future -> assertThat(future).failsWithin(Duration.ofSeconds(10)));
+        assertThat(gemini.calls()).isEqualTo(1);
+    }
+
+    private List<Recommendation> recommendAll(int count) {
+        return submitAll(count).stream().map(CompletableFuture::join).toList();
+    }
+
+    private List<CompletableFuture<Recommendation>> submitAll(int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> batcher.submit(activity("activity-" + i)))
+                .toList();
+    }
+
+    private RecommendationBatcher batcher(int maxSize, long maxWaitMs) {
+        RecommendationBatcher batcher = new RecommendationBatcher(
+                new ActivityAIService(gemini.client(4), PromptBuilderTest.promptBuilder()), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(batcher, "enabled", true);
+        ReflectionTestUtils.setField(batcher, "maxSize", maxSize);
+        ReflectionTestUtils.setField(batcher, "maxWaitMs", maxWaitMs);
+        batcher.init();
+        return batcher;
+    }
+
+    static Activity activity(String id) {
+        Activity activity = new Activity();
+        activity.setId(id);
+        activity.setUserId("user-1");
+        activity.setType("RUNNING");
+        activity.setDuration(45);
+        activity.setCaloriesBurned(450);
+        return activity;
+    }
+}
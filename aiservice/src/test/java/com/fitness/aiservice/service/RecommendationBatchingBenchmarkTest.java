@@ -0,0 +1,87 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Recommendation;
+import com.fitness.aiservice.support.FakeGeminiServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Measures throughput and per-activity latency for several batch sizes against the fake Gemini
+ * server. Its latency model is a fixed cost per call plus a smaller cost per activity, which is
+ * the shape that makes batching pay off.
+ * Run with {@code ./mvnw test -Pbenchmark}.
+ */
+@Tag("benchmark")
+class RecommendationBatchingBenchmarkTest {
+
+    private static final int ACTIVITIES = 96;
+    private static final int CONSUMERS = 16;
+    private static final int MAX_IN_FLIGHT = 4;
+    private static final long BASE_LATENCY_MS = 400;
+    private static final long PER_ACTIVITY_LATENCY_MS = 30;
+    private static final long MAX_WAIT_MS = 100;
+
+    @Test
+    void compareBatchSizes() throws Exception {
+        try (FakeGeminiServer gemini = new FakeGeminiServer().latency(BASE_LATENCY_MS, PER_ACTIVITY_LATENCY_MS)) {
+            ActivityAIService activityAIService = new ActivityAIService(gemini.client(MAX_IN_FLIGHT),
+                    PromptBuilderTest.promptBuilder());
+            System.out.printf("%d activities, %d consumers, %d calls in flight, latency %d ms + %d ms/activity%n",
+                    ACTIVITIES, CONSUMERS, MAX_IN_FLIGHT, BASE_LATENCY_MS, PER_ACTIVITY_LATENCY_MS);
+            for (int batchSize : new int[]{1, 2, 4, 8, 16}) {
+                gemini.resetCalls();
+                RecommendationBatcher batcher = new RecommendationBatcher(activityAIService, new SimpleMeterRegistry());
+                ReflectionTestUtils.setField(batcher, "enabled", true);
+                ReflectionTestUtils.setField(batcher, "maxSize", batchSize);
+                ReflectionTestUtils.setField(batcher, "maxWaitMs", MAX_WAIT_MS);
+                batcher.init();
+                try {
+                    run(batcher, batchSize, gemini);
+                } finally {
+                    batcher.shutdown();
+                }
+            }
+        }
+    }
+
+    private void run(RecommendationBatcher batcher, int batchSize, FakeGeminiServer gemini) throws Exception {
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        long start = System.nanoTime();
+        // Each consumer handles its share of the messages one at a time, like a listener thread
+        try (ExecutorService consumers = Executors.newFixedThreadPool(CONSUMERS)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int consumer = 0; consumer < CONSUMERS; consumer++) {
+                int offset = consumer;
+                futures.add(consumers.submit(() -> {
+                    for (int i = offset; i < ACTIVITIES; i += CONSUMERS) {
+                        long itemStart = System.nanoTime();
+                        Recommendation recommendation = batcher.recommend(RecommendationBatcherTest.activity("activity-" + i)).block();
+                        latencies.add(System.nanoTime() - itemStart);
+                        assertThat(recommendation.getActivityId()).isEqualTo("activity-" + i);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        System.out.printf("batch size %2d: %5d ms, %5.1f activities/s, %3d Gemini calls, latency p50 %4d ms p95 %4d ms%n",
+                batchSize, elapsed / 1_000_000, ACTIVITIES * 1e9 / elapsed, gemini.calls(),
+                sorted.get(sorted.size() / 2) / 1_000_000, sorted.get(sorted.size() * 95 / 100) / 1_000_000);
+    }
+}
@@ -0,0 +1,115 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.ActivityMetrics;
+import com.fitness.aiservice.model.Recommendation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RecommendationCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Function<Activity, Mono<Recommendation>> loader = activity -> {
+        loads.incrementAndGet();
+        return Mono.just(Recommendation.builder()
+                .activityId(activity.getId())
+                .userId(activity.getUserId())
+                .activityType(activity.getType())
+                .recommendation("Steady effort")
+                .improvements(new ArrayList<>(List.of("Add intervals")))
+                .suggestions(List.of("Tempo run"))
+                .safety(List.of("Hydrate"))
+                .build());
+    };
+
+    private RecommendationCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new RecommendationCache(null, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxSize", 100L);
+        ReflectionTestUtils.setField(cache, "ttl", Duration.ofDays(7));
+        cache.init();
+    }
+
+    @Test
+    void fingerprintIgnoresDifferencesWithinABucket() {
+        assertThat(ActivityFingerprint.of(activity("a", 31, 301, 5.1, 151)))
+                .isEqualTo(ActivityFingerprint.of(activity("b", 32, 305, 5.2, 149)));
+        assertThat(ActivityFingerprint.of(activity("a", 31, 301, 5.1, 151)))
+                .isNotEqualTo(ActivityFingerprint.of(activity("b", 31, 301, 8.0, 151)));
+    }
+
+    @Test
+    void overflowMetricsAreSummarizedBeforeTheyAreHashed() {
+        Activity first = activity("a", 31, 301, 5.1, 151);
+        first.getAdditionalMetrics().set("heartRateSeries", IntStream.range(0, 5_000).map(i -> 140 + i % 20).boxed().toList());
+        first.getAdditionalMetrics().set("laps", List.of(Map.of("lap", 1, "seconds", 301.2), Map.of("lap", 2, "seconds", 298.7)));
+        Activity second = activity("b", 31, 301, 5.1, 151);
+        second.getAdditionalMetrics().set("heartRateSeries", IntStream.range(0, 5_000).map(i -> 140 + (i + 7) % 20).boxed().toList());
+        second.getAdditionalMetrics().set("laps", List.of(Map.of("seconds", 301.4, "lap", 1), Map.of("seconds", 298.9, "lap", 2)));
+        Activity harder = activity("c", 31, 301, 5.1, 151);
+        harder.getAdditionalMetrics().set("heartRateSeries", IntStream.range(0, 5_000).map(i -> 170 + i % 20).boxed().toList());
+        harder.getAdditionalMetrics().set("laps", List.of(Map.of("lap", 1, "seconds", 301.2), Map.of("lap", 2, "seconds", 298.7)));
+
+        String key = ActivityFingerprint.of(first);
+
+        assertThat(key).isEqualTo(ActivityFingerprint.of(second)).hasSizeLessThan(96);
+        assertThat(key).isNotEqualTo(ActivityFingerprint.of(harder));
+    }
+
+    @Test
+    void hitIsCopiedOntoTheNewActivity() {
+        Recommendation first = cache.recommend(activity("a", 31, 301, 5.1, 151), loader).block();
+        first.getImprovements().add("mutated after caching");
+
+        Recommendation second = cache.recommend(activity("b", 32, 305, 5.2, 149), loader).block();
+
+        assertThat(loads).hasValue(1);
+        assertThat(second.getActivityId()).isEqualTo("b");
+        assertThat(second.getRecommendation()).isEqualTo("Steady effort");
+        assertThat(second.getImprovements()).containsExactly("Add intervals");
+        assertThat(cache.hitRatio()).isEqualTo(0.5);
+    }
+
+    @Test
+    void fallbackRecommendationIsNotCached() {
+        Function<Activity, Mono<Recommendation>> failing = activity -> {
+            loads.incrementAndGet();
+            return Mono.just(Recommendation.builder().recommendation(ActivityAIService.DEFAULT_ANALYSIS).build());
+        };
+
+        cache.recommend(activity("a", 31, 301, 5.1, 151), failing).block();
+        cache.recommend(activity("b", 31, 301, 5.1, 151), failing).block();
+
+        assertThat(loads).hasValue(2);
+    }
+
+    private static Activity activity(String id, int duration, int calories, double distanceKm, double heartRate) {
+        Activity activity = new Activity();
+        activity.setId(id);
+        activity.setUserId("user-" + id);
+        activity.setType("RUNNING");
+        activity.setDuration(duration);
+        activity.setCaloriesBurned(calories);
+        activity.setAdditionalMetrics(ActivityMetrics.builder()
+                .distanceKm(distanceKm)
+                .avgHeartRate(heartRate)
+                .build());
+        return activity;
+    }
+}
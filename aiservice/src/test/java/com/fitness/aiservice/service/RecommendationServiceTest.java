@@ -0,0 +1,80 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.dto.RecommendationSummary;
+import com.fitness.aiservice.model.Recommendation;
+import com.fitness.aiservice.repository.RecommendationCursor;
+import com.fitness.aiservice.repository.RecommendationRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RecommendationServiceTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 5, 1, 7, 30, 15);
+
+    private final RecommendationRepository repository = mock(RecommendationRepository.class);
+    private final RecommendationService service = new RecommendationService(repository);
+
+    RecommendationServiceTest() {
+        ReflectionTestUtils.setField(service, "defaultPageSize", 2);
+        ReflectionTestUtils.setField(service, "maxPageSize", 3);
+    }
+
+    @Test
+    void fullPageReturnsCursorOfItsLastItem() {
+        when(repository.findPage(eq("user-1"), any(), eq(3), eq(false)))
+                .thenReturn(Flux.just(recommendation("r1", 0), recommendation("r2", 1), recommendation("r3", 2)));
+
+        StepVerifier.create(service.getUserRecommendations("user-1", null, null))
+                .assertNext(page -> {
+                    assertThat(page.getItems()).extracting(Recommendation::getId).containsExactly("r1", "r2");
+                    assertThat(RecommendationCursor.decode(page.getNextCursor()))
+                            .isEqualTo(new RecommendationCursor(NOW.minusMinutes(1), "r2"));
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void lastPageHasNoCursorAndLimitIsCapped() {
+        RecommendationCursor after = new RecommendationCursor(NOW, "r0");
+        when(repository.findPage(eq("user-1"), eq(after), anyInt(), anyBoolean()))
+                .thenReturn(Flux.just(recommendation("r1", 0)));
+
+        StepVerifier.create(service.getUserRecommendationSummaries("user-1", after.encode(), 500))
+                .assertNext(page -> {
+                    assertThat(page.getItems()).extracting(RecommendationSummary::getActivityId).containsExactly("activity-r1");
+                    assertThat(page.getNextCursor()).isNull();
+                })
+                .verifyComplete();
+        verify(repository).findPage("user-1", after, 4, true);
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        assertThatThrownBy(() -> service.getUserRecommendations("user-1", "not-a-cursor", null))
+                .hasMessageContaining("Invalid cursor");
+    }
+
+    private static Recommendation recommendation(String id, int minutesAgo) {
+        return Recommendation.builder()
+                .id(id)
+                .activityId("activity-" + id)
+                .userId("user-1")
+                .activityType("RUNNING")
+                .createdAt(NOW.minusMinutes(minutesAgo))
+                .build();
+    }
+}
@@ -0,0 +1,154 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.Recommendation;
+import com.fitness.aiservice.repository.RecommendationRepository;
+import com.fitness.aiservice.support.FakeGeminiServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class RecommendationStreamServiceTest {
+
+    private final FakeGeminiServer gemini;
+    private final ActivityServiceClient activityServiceClient = mock(ActivityServiceClient.class);
+    private final RecommendationRepository repository = mock(RecommendationRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ActivityIdempotencyGuard guard = ActivityIdempotencyGuardTest.guard(
+            ActivityIdempotencyGuardTest.mongoTemplate(ConcurrentHashMap.newKeySet()), meterRegistry);
+    private final ActivityLaneScheduler scheduler = ActivityLaneSchedulerTest.scheduler(meterRegistry, 64, 16);
+    private final RecommendationStreamService streamService;
+
+    RecommendationStreamServiceTest() throws Exception {
+        gemini = new FakeGeminiServer().latency(50, 0).streaming(4, 300);
+        RecommendationCache cache = new RecommendationCache(null, meterRegistry);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxSize", 100L);
+        ReflectionTestUtils.setField(cache, "ttl", Duration.ofDays(7));
+        cache.init();
+        streamService = new RecommendationStreamService(activityServiceClient,
+                new ActivityAIService(gemini.client(4), PromptBuilderTest.promptBuilder()),
+                LocalRecommendationEngineTest.engine(meterRegistry), repository, guard, cache, scheduler);
+        ReflectionTestUtils.setField(streamService, "awaitInterval", Duration.ofMillis(10));
+        ReflectionTestUtils.setField(streamService, "awaitTimeout", Duration.ofSeconds(5));
+        when(repository.save(any(Recommendation.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        gemini.close();
+    }
+
+    @Test
+    void deltasArriveBeforeTheSavedRecommendation() {
+        when(repository.findByActivityId(any())).thenReturn(Mono.empty());
+        when(activityServiceClient.getActivity(any()))
+                .thenAnswer(invocation -> Mono.just(RecommendationBatcherTest.activity(invocation.getArgument(0))));
+        Activity warmUp = RecommendationBatcherTest.activity("warm-up");
+        // Longer, so the next activity is not answered from the cache
+        warmUp.setDuration(90);
+        when(activityServiceClient.getActivity("warm-up")).thenReturn(Mono.just(warmUp));
+        // The first stream pays for connecting and class loading, which would bunch up its early chunks
+        streamService.stream("warm-up").blockLast();
+
+        long start = System.nanoTime();
+        List<Long> arrivals = new ArrayList<>();
+        List<ServerSentEvent<Object>> events = streamService.stream("activity-1")
+                .doOnNext(event -> arrivals.add(System.nanoTime() - start))
+                .collectList()
+                .block();
+
+        assertThat(events).extracting(ServerSentEvent::event)
+                .containsExactly("delta", "delta", "delta", "delta", "recommendation");
+        Recommendation recommendation = (Recommendation) events.get(4).data();
+        assertThat(recommendation.getActivityId()).isEqualTo("activity-1");
+        assertThat(recommendation.getRecommendation()).startsWith("Overall:Overall for single");
+        // The first text shows up one chunk in, not once the whole answer has been generated
+        assertThat(arrivals.get(4) - arrivals.get(0)).isGreaterThan(600_000_000L);
+        verify(repository).save(recommendation);
+        assertThat(scheduler.inFlight()).isZero();
+    }
+
+    @Test
+    void activityWithTheSameFingerprintIsAnsweredFromTheCache() {
+        when(repository.findByActivityId(any())).thenReturn(Mono.empty());
+        when(activityServiceClient.getActivity(any()))
+                .thenAnswer(invocation -> Mono.just(RecommendationBatcherTest.activity(invocation.getArgument(0))));
+        streamService.stream("activity-4").blockLast();
+        int calls = gemini.calls();
+
+        StepVerifier.create(streamService.stream("activity-5"))
+                .assertNext(event -> {
+                    assertThat(event.event()).isEqualTo("recommendation");
+                    assertThat(((Recommendation) event.data()).getActivityId()).isEqualTo("activity-5");
+                })
+                .verifyComplete();
+
+        assertThat(gemini.calls()).isEqualTo(calls);
+    }
+
+    @Test
+    void activityClaimedByTheListenerWaitsForItsRecommendation() {
+        Recommendation stored = Recommendation.builder().activityId("activity-6").recommendation("From listener").build();
+        AtomicInteger lookups = new AtomicInteger();
+        // Missing when the stream starts, then saved by the listener that holds the claim
+        when(repository.findByActivityId("activity-6"))
+                .thenReturn(Mono.fromSupplier(() -> lookups.incrementAndGet() < 4 ? null : stored));
+        when(activityServiceClient.getActivity("activity-6"))
+                .thenReturn(Mono.just(RecommendationBatcherTest.activity("activity-6")));
+        assertThat(guard.claim("activity-6").block()).isTrue();
+
+        StepVerifier.create(streamService.stream("activity-6"))
+                .assertNext(event -> assertThat(event.data()).isSameAs(stored))
+                .verifyComplete();
+
+        assertThat(gemini.calls()).isZero();
+        verify(repository, never()).save(any(Recommendation.class));
+    }
+
+    @Test
+    void existingRecommendationIsSentWithoutCallingGemini() {
+        Recommendation existing = Recommendation.builder().activityId("activity-2").recommendation("Done").build();
+        when(repository.findByActivityId("activity-2")).thenReturn(Mono.just(existing));
+
+        StepVerifier.create(streamService.stream("activity-2"))
+                .assertNext(event -> assertThat(event.data()).isSameAs(existing))
+                .verifyComplete();
+
+        assertThat(gemini.calls()).isZero();
+        verify(activityServiceClient, never()).getActivity(any());
+    }
+
+    @Test
+    void locallyAnsweredActivityIsSentWithoutCallingGemini() {
+        when(repository.findByActivityId("activity-3")).thenReturn(Mono.empty());
+        when(activityServiceClient.getActivity("activity-3"))
+                .thenReturn(Mono.just(LocalRecommendationEngineTest.activity("activity-3", "STRETCHING", 10)));
+
+        StepVerifier.create(streamService.stream("activity-3"))
+                .assertNext(event -> {
+                    assertThat(event.event()).isEqualTo("recommendation");
+                    assertThat(((Recommendation) event.data()).getActivityId()).isEqualTo("activity-3");
+                })
+                .verifyComplete();
+
+        assertThat(gemini.calls()).isZero();
+    }
+}
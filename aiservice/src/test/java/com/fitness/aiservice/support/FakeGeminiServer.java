@@ -0,0 +1,399 @@
+package com.fitness.aiservice.support;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fitness.aiservice.config.WebClientConfig;
+import com.fitness.aiservice.service.GeminiContextCache;
+import com.fitness.aiservice.service.GeminiRateLimiter;
+import com.fitness.aiservice.service.GeminiService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A local stand-in for the Gemini generateContent endpoint. It answers single-activity prompts
+ * with one recommendation and batch prompts with a JSON array keyed by the activity ids found
+ * in the prompt, after a latency of base plus per-activity milliseconds; the base can be drawn
+ * from a distribution such as {@link #logNormal}. Failures injected with {@link #failNext},
+ * {@link #errorRate} or {@link #throttleRate} carry a Retry-After when they are 429s, and
+ * {@link #responseText} replaces the generated answer. The streamGenerateContent endpoint sends
+ * the same answer as server-sent events, split into {@link #streaming} chunks. The cachedContents
+ * endpoint accepts every cache and answers with a new name.
+ */
+public class FakeGeminiServer implements AutoCloseable {
+    private static final Pattern ACTIVITY_ID = Pattern.compile("Activity ID: (\\S+)");
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpServer server;
+    private final AtomicInteger calls = new AtomicInteger();
+    private final AtomicInteger concurrent = new AtomicInteger();
+    private final AtomicInteger peakConcurrency = new AtomicInteger();
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private final AtomicInteger cachesCreated = new AtomicInteger();
+    private final AtomicInteger cachedCalls = new AtomicInteger();
+    private final Map<Integer, AtomicInteger> responses = new ConcurrentHashMap<>();
+
+    private volatile LongSupplier baseLatencyMs = () -> 0;
+    private volatile long perActivityLatencyMs;
+    private volatile boolean malformedBatches;
+    private volatile int failureStatus;
+    private volatile double errorRate;
+    private volatile int errorStatus = 503;
+    private volatile double throttleRate;
+    private volatile long retryAfterSeconds = 1;
+    private volatile Function<String, String> responseText;
+    private volatile int streamChunks = 4;
+    private volatile long streamChunkDelayMs = 50;
+
+    public FakeGeminiServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+        server.createContext("/v1beta/models/fake:generateContent", this::handle);
+        server.createContext("/v1beta/models/fake:streamGenerateContent", this::handle);
+        server.createContext("/v1beta/cachedContents", this::createCache);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    public FakeGeminiServer latency(long baseMs, long perActivityMs) {
+        return latency(() -> baseMs, perActivityMs);
+    }
+
+    /**
+     * Draws the base latency of every call from the supplier, in milliseconds.
+     */
+    public FakeGeminiServer latency(LongSupplier baseMs, long perActivityMs) {
+        this.baseLatencyMs = baseMs;
+        this.perActivityLatencyMs = perActivityMs;
+        return this;
+    }
+
+    /**
+     * A log-normal latency distribution with the given median and 99th percentile, the long-tailed
+     * shape model latencies usually have.
+     */
+    public static LongSupplier logNormal(long medianMs, long p99Ms) {
+        double mu = Math.log(medianMs);
+        double sigma = Math.log((double) p99Ms / medianMs) / 2.326;
+        return () -> Math.round(Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian()));
+    }
+
+    /**
+     * How streamGenerateContent splits its answer: the first chunk comes after the usual latency,
+     * each further one after delayMs.
+     */
+    public FakeGeminiServer streaming(int chunks, long delayMs) {
+        this.streamChunks = chunks;
+        this.streamChunkDelayMs = delayMs;
+        return this;
+    }
+
+    public FakeGeminiServer malformedBatches(boolean malformed) {
+        this.malformedBatches = malformed;
+        return this;
+    }
+
+    /**
+     * Answers the next count calls with the given status instead of a recommendation.
+     */
+    public FakeGeminiServer failNext(int count, int status) {
+        this.failureStatus = status;
+        this.failuresLeft.set(count);
+        return this;
+    }
+
+    /**
+     * Answers the given share of calls, chosen at random, with the status instead of a recommendation.
+     */
+    public FakeGeminiServer errorRate(double rate, int status) {
+        this.errorRate = rate;
+        this.errorStatus = status;
+        return this;
+    }
+
+    /**
+     * Answers the given share of calls, chosen at random, with a 429 and a Retry-After of the given seconds.
+     */
+    public FakeGeminiServer throttleRate(double rate, long retryAfterSeconds) {
+        this.throttleRate = rate;
+        this.retryAfterSeconds = retryAfterSeconds;
+        return this;
+    }
+
+    /**
+     * Replaces the generated answer with the text the function returns for the prompt, which is
+     * sent as is, without code fences.
+     */
+    public FakeGeminiServer responseText(Function<String, String> responseText) {
+        this.responseText = responseText;
+        return this;
+    }
+
+    public String url() {
+        return "http://localhost:" + server.getAddress().getPort() + "/v1beta/models/fake:generateContent";
+    }
+
+    public int calls() {
+        return calls.get();
+    }
+
+    /**
+     * How many cachedContents were created.
+     */
+    public int cachesCreated() {
+        return cachesCreated.get();
+    }
+
+    /**
+     * How many calls referred to cached content.
+     */
+    public int cachedCalls() {
+        return cachedCalls.get();
+    }
+
+    public void resetCalls() {
+        calls.set(0);
+        cachedCalls.set(0);
+        peakConcurrency.set(0);
+        responses.clear();
+    }
+
+    /**
+     * How many calls were answered with the status.
+     */
+    public int responses(int status) {
+        AtomicInteger count = responses.get(status);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * The most calls the server was answering at the same time.
+     */
+    public int peakConcurrency() {
+        return peakConcurrency.get();
+    }
+
+    /**
+     * A GeminiService pointed at this server, starting at and limited to maxInFlight concurrent calls.
+     */
+    public GeminiService client(int maxInFlight) {
+        return client(rateLimiter(maxInFlight));
+    }
+
+    public GeminiService client(GeminiRateLimiter rateLimiter) {
+        return client(rateLimiter, contextCache(false, 0));
+    }
+
+    public GeminiService client(GeminiRateLimiter rateLimiter, GeminiContextCache contextCache) {
+        GeminiService geminiService = new GeminiService(webClient(), rateLimiter, contextCache);
+        ReflectionTestUtils.setField(geminiService, "geminiApiUrl", url());
+        ReflectionTestUtils.setField(geminiService, "geminiApiKey", "test-key");
+        ReflectionTestUtils.setField(geminiService, "maxRetries", 2);
+        ReflectionTestUtils.setField(geminiService, "retryBackoff", Duration.ofMillis(10));
+        ReflectionTestUtils.setField(geminiService, "retryMaxBackoff", Duration.ofMillis(50));
+        return geminiService;
+    }
+
+    /**
+     * A context cache pointed at this server, caching instruction blocks of at least minTokens.
+     */
+    public GeminiContextCache contextCache(boolean enabled, int minTokens) {
+        GeminiContextCache contextCache = new GeminiContextCache(webClient());
+        ReflectionTestUtils.setField(contextCache, "geminiApiUrl", url());
+        ReflectionTestUtils.setField(contextCache, "geminiApiKey", "test-key");
+        ReflectionTestUtils.setField(contextCache, "enabled", enabled);
+        ReflectionTestUtils.setField(contextCache, "ttl", Duration.ofHours(1));
+        ReflectionTestUtils.setField(contextCache, "minTokens", minTokens);
+        ReflectionTestUtils.setField(contextCache, "retryAfter", Duration.ofMinutes(10));
+        return contextCache;
+    }
+
+    private static WebClient webClient() {
+        return new WebClientConfig().geminiWebClient(WebClient.builder(),
+                512, Duration.ofSeconds(5), Duration.ofSeconds(30), Duration.ofSeconds(30));
+    }
+
+    /**
+     * A rate limiter with budgets the tests never exhaust.
+     */
+    public static GeminiRateLimiter rateLimiter(int maxInFlight) {
+        GeminiRateLimiter rateLimiter = new GeminiRateLimiter(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(rateLimiter, "requestsPerMinute", 1_000_000L);
+        ReflectionTestUtils.setField(rateLimiter, "tokensPerMinute", 1_000_000_000L);
+        ReflectionTestUtils.setField(rateLimiter, "expectedOutputTokens", 800);
+        ReflectionTestUtils.setField(rateLimiter, "maxConcurrency", maxInFlight);
+        ReflectionTestUtils.setField(rateLimiter, "initialConcurrency", maxInFlight);
+        ReflectionTestUtils.setField(rateLimiter, "minConcurrency", 1);
+        ReflectionTestUtils.setField(rateLimiter, "latencyThreshold", Duration.ofSeconds(30));
+        ReflectionTestUtils.setField(rateLimiter, "decreaseRatio", 0.5);
+        ReflectionTestUtils.invokeMethod(rateLimiter, "init");
+        return rateLimiter;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        calls.incrementAndGet();
+        peakConcurrency.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+        try {
+            respond(exchange);
+        } finally {
+            concurrent.decrementAndGet();
+        }
+    }
+
+    private void createCache(HttpExchange exchange) throws IOException {
+        mapper.readTree(exchange.getRequestBody());
+        byte[] body = mapper.writeValueAsBytes(Map.of("name", "cachedContents/" + cachesCreated.incrementAndGet()));
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        JsonNode request = mapper.readTree(exchange.getRequestBody());
+        if (request.hasNonNull("cachedContent")) {
+            cachedCalls.incrementAndGet();
+        }
+        String prompt = request.path("contents").path(0).path("parts").path(0).path("text").asText();
+
+        List<String> activityIds = new ArrayList<>();
+        Matcher matcher = ACTIVITY_ID.matcher(prompt);
+        while (matcher.find()) {
+            activityIds.add(matcher.group(1));
+        }
+        sleep(baseLatencyMs.getAsLong() + perActivityLatencyMs * Math.max(1, activityIds.size()));
+        int failure = failure();
+        if (failure != 0) {
+            if (failure == 429) {
+                exchange.getResponseHeaders().add("Retry-After", String.valueOf(retryAfterSeconds));
+            }
+            count(failure);
+            exchange.sendResponseHeaders(failure, -1);
+            exchange.close();
+            return;
+        }
+        count(200);
+
+        String text;
+        Function<String, String> custom = responseText;
+        if (custom != null) {
+            text = custom.apply(prompt);
+        } else if (activityIds.isEmpty()) {
+            text = mapper.writeValueAsString(recommendation("single"));
+        } else if (malformedBatches) {
+            text = "[{\"activityId\": \"" + activityIds.get(0) + "\", \"analysis\": ";
+        } else {
+            ArrayNode items = mapper.createArrayNode();
+            activityIds.forEach(id -> items.add(recommendation(id).put("activityId", id)));
+            text = mapper.writeValueAsString(items);
+        }
+
+        if (custom == null) {
+            text = "```json\n" + text + "\n```";
+        }
+        if (exchange.getRequestURI().getPath().endsWith(":streamGenerateContent")) {
+            stream(exchange, text);
+            return;
+        }
+        byte[] body = mapper.writeValueAsBytes(chunk(text, true));
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * The status to fail this call with, or 0 to answer it.
+     */
+    private int failure() {
+        if (failuresLeft.getAndUpdate(left -> Math.max(0, left - 1)) > 0) {
+            return failureStatus;
+        }
+        double roll = ThreadLocalRandom.current().nextDouble();
+        if (roll < throttleRate) {
+            return 429;
+        }
+        return roll < throttleRate + errorRate ? errorStatus : 0;
+    }
+
+    private void count(int status) {
+        responses.computeIfAbsent(status, key -> new AtomicInteger()).incrementAndGet();
+    }
+
+    private void stream(HttpExchange exchange, String text) throws IOException {
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        int size = (text.length() + streamChunks - 1) / streamChunks;
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (int start = 0; start < text.length(); start += size) {
+                if (start > 0) {
+                    sleep(streamChunkDelayMs);
+                }
+                int end = Math.min(text.length(), start + size);
+                out.write(("data: " + mapper.writeValueAsString(chunk(text.substring(start, end), end == text.length()))
+                        + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+        }
+    }
+
+    private ObjectNode chunk(String text, boolean last) {
+        ObjectNode response = mapper.createObjectNode();
+        ObjectNode candidate = response.putArray("candidates").addObject();
+        if (last) {
+            candidate.put("finishReason", "STOP");
+        }
+        candidate.putObject("content").put("role", "model")
+                .putArray("parts").addObject().put("text", text);
+        response.putObject("usageMetadata").put("totalTokenCount", 100 + text.length() / 4);
+        return response;
+    }
+
+    private ObjectNode recommendation(String key) {
+        ObjectNode recommendation = mapper.createObjectNode();
+        recommendation.putObject("analysis")
+                .put("overall", "Overall for " + key)
+                .put("pace", "Steady pace")
+                .put("heartRate", "Aerobic zone")
+                .put("caloriesBurned", "As expected");
+        recommendation.putArray("improvements").addObject().put("area", "Cadence").put("recommendation", "Shorter strides");
+        recommendation.putArray("suggestions").addObject().put("workout", "Intervals").put("description", "6 x 400 m");
+        recommendation.putArray("safety").add("Warm up first");
+        return recommendation;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
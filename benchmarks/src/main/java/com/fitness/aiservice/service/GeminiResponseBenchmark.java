@@ -0,0 +1,52 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.Recommendation;
+import com.fitness.benchmarks.Fixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a Gemini generateContent response into a Recommendation, run once per activity message.
+ * {@code treeModel} is the previous JsonNode-based parsing, kept for comparison.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GeminiResponseBenchmark {
+
+    private final ActivityAIService activityAIService = new ActivityAIService(null, null);
+    private final Activity activity = new Activity();
+    private String response;
+
+    @Setup
+    public void setUp() {
+        activity.setId("6631f0c2a1b2c3d4e5f60718");
+        activity.setUserId("8d3c2a8e-7f4b-4a36-9a53-0c5d1e2f3a4b");
+        activity.setType("RUNNING");
+        response = Fixtures.resource("gemini/recommendation-response.json");
+    }
+
+    @Benchmark
+    public Recommendation processAiResponse() {
+        return activityAIService.processAiResponse(activity, response);
+    }
+
+    @Benchmark
+    public Recommendation treeModel() throws Exception {
+        return TreeModelResponseParser.parse(activity, response);
+    }
+}
@@ -0,0 +1,71 @@
+package com.fitness.aiservice.service;
+
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.Recommendation;
+import com.fitness.benchmarks.Fixtures;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The local rule engine, run once per activity message before any Gemini call. {@code absorbed}
+ * is a short stretching session the rules answer; {@code escalated} is a run they pass on to Gemini.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LocalRecommendationBenchmark {
+
+    private LocalRecommendationEngine engine;
+    private final Activity stretching = new Activity();
+    private final Activity running = new Activity();
+
+    @Setup
+    public void setUp() {
+        ShortSessionRule shortSessionRule = new ShortSessionRule();
+        Fixtures.setField(shortSessionRule, "maxMinutesByType",
+                List.of("STRETCHING:20", "YOGA:15", "WALKING:15", "CARDIO:10", "OTHER:10"));
+        shortSessionRule.init();
+        engine = new LocalRecommendationEngine(List.of(new MissingDataRule(), shortSessionRule), new SimpleMeterRegistry());
+        Fixtures.setField(engine, "enabled", true);
+        Fixtures.setField(engine, "maxMetrics", 2);
+        Fixtures.setField(engine, "maxDuration", 60);
+        engine.init();
+
+        stretching.setId("6631f0c2a1b2c3d4e5f60718");
+        stretching.setUserId("8d3c2a8e-7f4b-4a36-9a53-0c5d1e2f3a4b");
+        stretching.setType("STRETCHING");
+        stretching.setDuration(10);
+        stretching.setCaloriesBurned(30);
+        running.setId("6631f0c2a1b2c3d4e5f60719");
+        running.setUserId("8d3c2a8e-7f4b-4a36-9a53-0c5d1e2f3a4b");
+        running.setType("RUNNING");
+        running.setDuration(45);
+        running.setCaloriesBurned(450);
+    }
+
+    @Benchmark
+    public Optional<Recommendation> absorbed() {
+        return engine.recommend(stretching);
+    }
+
+    @Benchmark
+    public Optional<Recommendation> escalated() {
+        return engine.recommend(running);
+    }
+}
@@ -0,0 +1,81 @@
+package com.fitness.aiservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fitness.aiservice.model.Activity;
+import com.fitness.aiservice.model.Recommendation;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The tree-model parsing {@link ActivityAIService} used before {@link GeminiResponseParser}: the
+ * envelope and the generated text are each read into a JsonNode tree, and code fences are
+ * stripped with regular expressions. Kept so the benchmark can compare both approaches.
+ */
+final class TreeModelResponseParser {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private TreeModelResponseParser() {
+    }
+
+    static Recommendation parse(Activity activity, String aiResponse) throws Exception {
+        String text = MAPPER.readTree(aiResponse).path("candidates")
+                .get(0)
+                .path("content")
+                .path("parts")
+                .get(0)
+                .path("text")
+                .asText();
+        String jsonContent = text.replaceAll("```json\\n", "")
+                .replaceAll("\n```", "")
+                .trim();
+        JsonNode analysisJson = MAPPER.readTree(jsonContent);
+
+        JsonNode analysisNode = analysisJson.path("analysis");
+        StringBuilder fullAnalysis = new StringBuilder();
+        addAnalysisSection(fullAnalysis, analysisNode, "overall", "Overall:");
+        addAnalysisSection(fullAnalysis, analysisNode, "pace", "Pace:");
+        addAnalysisSection(fullAnalysis, analysisNode, "heartRate", "Heart Rate:");
+        addAnalysisSection(fullAnalysis, analysisNode, "caloriesBurned", "Calories:");
+
+        return Recommendation.builder()
+                .activityId(activity.getId())
+                .userId(activity.getUserId())
+                .activityType(activity.getType())
+                .recommendation(fullAnalysis.toString().trim())
+                .improvements(pairs(analysisJson.path("improvements"), "area", "recommendation",
+                        "No specific improvements provided"))
+                .suggestions(pairs(analysisJson.path("suggestions"), "workout", "description",
+                        "No specific suggestions provided"))
+                .safety(safety(analysisJson.path("safety")))
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    private static List<String> safety(JsonNode safetyNode) {
+        List<String> safety = new ArrayList<>();
+        if (safetyNode.isArray()) {
+            safetyNode.forEach(item -> safety.add(item.asText()));
+        }
+        return safety.isEmpty() ? Collections.singletonList("Follow general safety guidelines") : safety;
+    }
+
+    private static List<String> pairs(JsonNode node, String key, String value, String fallback) {
+        List<String> pairs = new ArrayList<>();
+        if (node.isArray()) {
+            node.forEach(item -> pairs.add(String.format("%s: %s", item.path(key).asText(), item.path(value).asText())));
+        }
+        return pairs.isEmpty() ? Collections.singletonList(fallback) : pairs;
+    }
+
+    private static void addAnalysisSection(StringBuilder fullAnalysis, JsonNode analysisNode, String key, String prefix) {
+        if (!analysisNode.path(key).isMissingNode()) {
+            fullAnalysis.append(prefix)
+                    .append(analysisNode.path(key).asText())
+                    .append("\n\n");
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.fitness.benchmarks;
+
+import com.fitness.activityservice.model.Activity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The activity.queue message path: the activity service serializes its Activity with the
+ * Jackson converter, and the AI service reads it into its own Activity type, which the listener
+ * container supplies as the inferred argument type.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ActivityMessageBenchmark {
+
+    private final Jackson2JsonMessageConverter converter = new Jackson2JsonMessageConverter();
+    private final Activity activity = Fixtures.activity();
+    private Message message;
+
+    @Setup
+    public void setUp() {
+        message = toMessage();
+    }
+
+    @Benchmark
+    public Message publish() {
+        return toMessage();
+    }
+
+    @Benchmark
+    public Object consume() {
+        return fromMessage(message);
+    }
+
+    @Benchmark
+    public Object roundTrip() {
+        return fromMessage(toMessage());
+    }
+
+    private Message toMessage() {
+        return converter.toMessage(activity, new MessageProperties());
+    }
+
+    private Object fromMessage(Message message) {
+        message.getMessageProperties().setInferredArgumentType(com.fitness.aiservice.model.Activity.class);
+        return converter.fromMessage(message);
+    }
+}
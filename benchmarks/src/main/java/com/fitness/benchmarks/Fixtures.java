@@ -0,0 +1,67 @@
+package com.fitness.benchmarks;
+
+import com.fitness.activityservice.model.Activity;
+import com.fitness.activityservice.model.ActivityMetrics;
+import com.fitness.activityservice.model.ActivityType;
+import org.springframework.util.ReflectionUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+/**
+ * Realistic inputs shared by the benchmarks.
+ */
+public final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    public static Activity activity() {
+        ActivityMetrics metrics = ActivityMetrics.builder()
+                .distanceKm(10.4)
+                .avgHeartRate(148.0)
+                .maxHeartRate(176.0)
+                .paceMinPerKm(5.35)
+                .elevationGainM(86.0)
+                .build();
+        metrics.set("cadence", 172);
+        return Activity.builder()
+                .id("6631f0c2a1b2c3d4e5f60718")
+                .userId("8d3c2a8e-7f4b-4a36-9a53-0c5d1e2f3a4b")
+                .type(ActivityType.RUNNING)
+                .duration(56)
+                .caloriesBurned(640)
+                .startTime(LocalDateTime.of(2024, 5, 1, 7, 30))
+                .additionalMetrics(metrics)
+                .createdAt(LocalDateTime.of(2024, 5, 1, 8, 30, 12))
+                .updatedAt(LocalDateTime.of(2024, 5, 1, 8, 30, 12))
+                .build();
+    }
+
+    public static String resource(String name) {
+        try (InputStream in = Fixtures.class.getResourceAsStream("/" + name)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Missing fixture " + name);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Sets a field that Spring would inject from configuration.
+     */
+    public static void setField(Object target, String name, Object value) {
+        Field field = ReflectionUtils.findField(target.getClass(), name);
+        if (field == null) {
+            throw new IllegalArgumentException("No field " + name + " on " + target.getClass().getName());
+        }
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, target, value);
+    }
+}
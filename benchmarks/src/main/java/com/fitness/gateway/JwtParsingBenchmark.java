@@ -0,0 +1,84 @@
+package com.fitness.gateway;
+
+import com.fitness.gateway.user.RegisterRequest;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.interfaces.RSAPrivateKey;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading the user details out of the bearer token, done by the gateway on every request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtParsingBenchmark {
+
+    private final KeycloakUserSyncFilter filter = new KeycloakUserSyncFilter(null);
+    private String authorization;
+
+    @Setup
+    public void setUp() throws NoSuchAlgorithmException, JOSEException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        RSAPrivateKey privateKey = (RSAPrivateKey) generator.generateKeyPair().getPrivate();
+
+        // Claims as issued by the fitness-oauth2 Keycloak realm
+        Instant now = Instant.now();
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .jwtID(UUID.randomUUID().toString())
+                .issuer("http://keycloak:8080/auth/realms/fitness-oauth2")
+                .audience("account")
+                .subject("8d3c2a8e-7f4b-4a36-9a53-0c5d1e2f3a4b")
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plusSeconds(300)))
+                .claim("typ", "Bearer")
+                .claim("azp", "oauth2-pkce-client")
+                .claim("sid", UUID.randomUUID().toString())
+                .claim("acr", "1")
+                .claim("allowed-origins", List.of("http://localhost:5173"))
+                .claim("realm_access", Map.of("roles", List.of("offline_access", "uma_authorization", "default-roles-fitness-oauth2")))
+                .claim("resource_access", Map.of("account", Map.of("roles", List.of("manage-account", "view-profile"))))
+                .claim("scope", "openid email profile")
+                .claim("email_verified", true)
+                .claim("name", "Jane Runner")
+                .claim("preferred_username", "jane")
+                .claim("given_name", "Jane")
+                .claim("family_name", "Runner")
+                .claim("email", "jane.runner@example.com")
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID("k1").build(), claims);
+        jwt.sign(new RSASSASigner(privateKey));
+        authorization = "Bearer " + jwt.serialize();
+    }
+
+    @Benchmark
+    public RegisterRequest getUserDetails() {
+        return filter.getUserDetails(authorization);
+    }
+}
@@ -1,4 +1,4 @@
-import { Card, CardContent, Typography, Box, Chip, CircularProgress, IconButton, Tooltip } from '@mui/material';
+import { Button, Card, CardContent, Typography, Box, Chip, CircularProgress, IconButton, Tooltip } from '@mui/material';
 import { useEffect, useState } from 'react';
 import { useNavigate } from 'react-router';
 import { getActivities } from '../services/api';
@@ -18,15 +18,17 @@ const activityColors = {
 const ActivityList = () => {
   const [activities, setActivities] = useState([]);
   const [loading, setLoading] = useState(true);
+  const [loadingMore, setLoadingMore] = useState(false);
+  const [nextCursor, setNextCursor] = useState(null);
   const [sortNewestFirst, setSortNewestFirst] = useState(true);
   const navigate = useNavigate();
 
   const fetchActivities = async () => {
     try {
       setLoading(true);
-      const response = await getActivities();
-      const sorted = sortActivities(response.data, sortNewestFirst);
-      setActivities(sorted);
+      const page = await getActivities();
+      setActivities(sortActivities(page.items, sortNewestFirst));
+      setNextCursor(page.nextCursor);
     } catch (error) {
       console.error(error);
     } finally {
@@ -34,6 +36,19 @@ const ActivityList = () => {
     }
   };
 
+  const loadMore = async () => {
+    try {
+      setLoadingMore(true);
+      const page = await getActivities(nextCursor);
+      setActivities(prevActivities => sortActivities([...prevActivities, ...page.items], sortNewestFirst));
+      setNextCursor(page.nextCursor);
+    } catch (error) {
+      console.error(error);
+    } finally {
+      setLoadingMore(false);
+    }
+  };
+
   const sortActivities = (data, newestFirst) => {
     return [...data].sort((a, b) => {
       const dateA = new Date(a.createdAt);
@@ -254,6 +269,26 @@ const ActivityList = () => {
           );
         })}
       </Box>
+      {nextCursor && (
+        <Box sx={{ display: "flex", justifyContent: "center", mt: 4 }}>
+          <Button
+            onClick={loadMore}
+            disabled={loadingMore}
+            sx={{
+              background: "rgba(102, 126, 234, 0.2)",
+              color: "white",
+              border: "1px solid rgba(102, 126, 234, 0.3)",
+              borderRadius: 2,
+              px: 4,
+              "&:hover": {
+                background: "rgba(102, 126, 234, 0.3)",
+              },
+            }}
+          >
+            {loadingMore ? <CircularProgress size={22} sx={{ color: "white" }} /> : "Load more"}
+          </Button>
+        </Box>
+      )}
     </Box>
   );
 };
@@ -26,7 +26,11 @@ api.interceptors.request.use((config) => {
 
 export const registerUser = (userData) => publicApi.post('/users/signup', userData);
 
-export const getActivities = () => api.get('/activities');
+// Activities come a page at a time, newest first; pass the returned nextCursor for the next page
+export const getActivities = async (cursor) => {
+    const response = await api.get('/activities', { params: cursor ? { cursor } : {} });
+    return { items: response.data, nextCursor: response.headers['x-next-cursor'] || null };
+};
 export const addActivity = (activity) => api.post('/activities', activity);
 export const getActivity = (id) => api.get(`/activities/${id}`);
 export const getActivityRecommendation = (id) => api.get(`/recommendations/activity/${id}`);
\ No newline at end of file
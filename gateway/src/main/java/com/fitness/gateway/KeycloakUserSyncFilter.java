@@ -70,7 +70,7 @@ public class KeycloakUserSyncFilter implements WebFilter {
                 .then(chain.filter(mutatedExchange));
     }
 
-    private RegisterRequest getUserDetails(String token) {
+    RegisterRequest getUserDetails(String token) {
         try {
             String tokenWithoutBearer = token.replace("Bearer ", "").trim();
             SignedJWT signedJWT = SignedJWT.parse(tokenWithoutBearer);